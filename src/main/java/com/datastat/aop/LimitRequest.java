@@ -20,5 +20,10 @@ public @interface LimitRequest {
      * @return 返回结果
      */
     int callCount() default 10;
+    /**
+     * 允许在callCount之外额外突发的请求次数.
+     * @return 返回结果
+     */
+    int burst() default 0;
 }
 
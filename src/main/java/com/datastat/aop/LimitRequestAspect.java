@@ -1,13 +1,13 @@
 package com.datastat.aop;
 
-import java.time.Duration;
-import java.time.Instant;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 
 import org.aspectj.lang.ProceedingJoinPoint;
 import org.aspectj.lang.annotation.Around;
 import org.aspectj.lang.annotation.Aspect;
 import org.aspectj.lang.annotation.Pointcut;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpStatus;
@@ -16,11 +16,15 @@ import org.springframework.web.context.request.RequestAttributes;
 import org.springframework.web.context.request.RequestContextHolder;
 import org.springframework.web.context.request.ServletRequestAttributes;
 
+import com.datastat.constant.Constant;
 import com.datastat.dao.RedisDao;
 import com.datastat.result.ResultData;
 import com.datastat.util.ClientUtil;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 
+import jakarta.annotation.PostConstruct;
 import jakarta.servlet.http.HttpServletRequest;
 
 @Aspect
@@ -31,19 +35,44 @@ public class LimitRequestAspect {
      */
     @Value("${requestInterval:60000}")
     private String requestInterval;
+    /**
+     * Redis不可用时的处理方式：local按本机记录限制，allow直接放行，deny直接拒绝.
+     */
+    @Value("${rate.limit.fallback:local}")
+    private String rateLimitFallback;
+    /**
+     * 日志.
+     */
+    private static final Logger logger = LoggerFactory.getLogger(LimitRequestAspect.class);
+    /**
+     * Redis不可用时本机的IP访问记录，写入后经过请求间隔时间自动过期.
+     */
+    private Cache<String, Long> localAccessRecord;
     /**
      * Redis操作的DAO实例.
      */
     @Autowired
     private RedisDao redisDao;
     /**
-     * 请求限制的配置值.
+     * 按接口和客户端限流的令牌桶.
      */
-    private final ConcurrentHashMap<String, CallMark> callMarkMap = new ConcurrentHashMap<>();
+    @Autowired
+    private RequestLimiter requestLimiter;
     /**
      * ObjectMapper实例，用于将对象转换为JSON字符串.
      */
     private ObjectMapper objectMapper = new ObjectMapper();
+    /**
+     * 初始化本机IP访问记录.
+     */
+    @PostConstruct
+    public void init() {
+        localAccessRecord = CacheBuilder.newBuilder()
+                .maximumSize(100000)
+                .expireAfterWrite(Long.parseLong(requestInterval), TimeUnit.MILLISECONDS)
+                .build();
+    }
+
     /**
      * 切点定义，匹配带有{@link LimitRequest}注解的方法.
      * @param limitRequest 限制请求注解
@@ -61,7 +90,9 @@ public class LimitRequestAspect {
       */
     @Around(value = "exudeService(limitRequest)", argNames = "joinPoint,limitRequest")
     public Object before(ProceedingJoinPoint joinPoint, LimitRequest limitRequest) throws Throwable {
-        if (!isAllowed(joinPoint.getSignature().getName(), limitRequest)) {
+        String endpoint = joinPoint.getSignature().getDeclaringType().getSimpleName()
+                + "." + joinPoint.getSignature().getName();
+        if (!isAllowed(endpoint, getClientKey(), limitRequest)) {
             ResultData resultData = ResultData.fail(HttpStatus.TOO_MANY_REQUESTS.value(), "Too Many Requests");
             return objectMapper.writeValueAsString(resultData);
         }
@@ -70,35 +101,34 @@ public class LimitRequestAspect {
     }
 
     /**
-     * 检查给定的方法名称是否在指定的时间窗口内超过了限制请求的次数.
+     * 检查客户端在指定的时间窗口内调用该接口是否超过了限制请求的次数.
      *
-     * @param methodName 方法名称
+     * @param endpoint 接口名称
+     * @param client 客户端标识
      * @param limitRequest 限制请求的配置
      * @return 如果超过了限制，则返回false；否则，返回true
      */
-    public boolean isAllowed(String methodName, LimitRequest limitRequest) {
-        Duration timeWindow = Duration.ofSeconds(limitRequest.callTime());
-        Instant now = Instant.now();
-        if (callMarkMap.containsKey(methodName)) {
-            CallMark callMark = callMarkMap.get(methodName);
-            if (Duration.between(callMark.getLastCallTime(), now).compareTo(timeWindow) > 0) {
-                callMark.setLastCallTime(now);
-                callMark.setCallCount(0);
-            }
+    public boolean isAllowed(String endpoint, String client, LimitRequest limitRequest) {
+        return requestLimiter.tryAcquire(endpoint, client, limitRequest);
+    }
 
-            if (callMark.getCallCount() < limitRequest.callCount()) {
-                callMark.setCallCount(callMark.getCallCount() + 1);
-                callMarkMap.put(methodName, callMark);
-                return true;
-            }
-            return false;
-        } else {
-            CallMark callMark = new CallMark();
-            callMark.setLastCallTime(now);
-            callMark.setCallCount(1);
-            callMarkMap.put(methodName, callMark);
-            return true;
+    /**
+     * 获取当前请求的客户端标识，鉴权拦截器校验通过的请求按用户区分，否则按IP区分.
+     * 未经校验的token可以随意伪造，不作为限流依据.
+     *
+     * @return 客户端标识
+     */
+    private String getClientKey() {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if (!(attributes instanceof ServletRequestAttributes)) {
+            return "local";
+        }
+        HttpServletRequest request = ((ServletRequestAttributes) attributes).getRequest();
+        Object user = request.getAttribute(Constant.VERIFIED_USER_ATTR);
+        if (user != null && !user.toString().isEmpty()) {
+            return "user:" + user;
         }
+        return "ip:" + ClientUtil.getClientIpAddress(request);
     }
     /**
      * 限制IP地址访问频率的切面方法.
@@ -118,15 +148,35 @@ public class LimitRequestAspect {
         HttpServletRequest request = ((ServletRequestAttributes) attributes).getRequest();
         String ip = ClientUtil.getClientIpAddress(request);
         String key = "ip_access_record" + ip;
-        String lastAccessTime = (String) redisDao.get(key);
-        if (lastAccessTime != null
-            && System.currentTimeMillis() - Long.valueOf(lastAccessTime) < Long.parseLong(requestInterval)) {
+        if (!tryAccess(key)) {
             ResultData resultData = ResultData.fail(HttpStatus.TOO_MANY_REQUESTS.value(),
               "Submit too frequently, please try again later");
             return objectMapper.writeValueAsString(resultData);
         }
-        redisDao.set(key,  Long.toString(System.currentTimeMillis()), Long.parseLong(requestInterval));
         return joinPoint.proceed();
     }
 
+    /**
+     * 记录一次访问，请求间隔时间内已有记录则返回false.
+     * 通过一次SET NX PX原子地检查并写入原始时间戳，Redis不可用时按rate.limit.fallback处理.
+     *
+     * @param key IP访问记录的key
+     * @return 允许访问返回true，否则返回false
+     */
+    private boolean tryAccess(String key) {
+        long now = System.currentTimeMillis();
+        Boolean ok = redisDao.setIfAbsent(key, Long.toString(now), Long.parseLong(requestInterval));
+        if (ok != null) {
+            return ok;
+        }
+        logger.warn("redis unavailable, rate limit fallback to {}", rateLimitFallback);
+        if ("allow".equalsIgnoreCase(rateLimitFallback)) {
+            return true;
+        }
+        if ("deny".equalsIgnoreCase(rateLimitFallback)) {
+            return false;
+        }
+        return localAccessRecord.asMap().putIfAbsent(key, now) == null;
+    }
+
 }
@@ -0,0 +1,18 @@
+package com.datastat.aop;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+@Documented
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface QueryCache {
+    /**
+     * 缓存过期时间(秒)，小于1时使用redis.keyExpire，可通过cache.expire.方法名覆盖.
+     * @return 返回结果
+     */
+    long expire() default 0;
+}
@@ -0,0 +1,123 @@
+package com.datastat.aop;
+
+import java.nio.charset.StandardCharsets;
+import java.util.StringJoiner;
+
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.annotation.Pointcut;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import com.datastat.dao.RedisDao;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.hash.Hashing;
+
+import jakarta.servlet.ServletRequest;
+import jakarta.servlet.ServletResponse;
+
+@Aspect
+@Component
+public class QueryCacheAspect {
+    /**
+     * 缓存key前缀.
+     */
+    private static final String KEY_PREFIX = "query_cache:";
+    /**
+     * 参数部分超过该长度时使用摘要.
+     */
+    private static final int MAX_ARGS_LENGTH = 200;
+    /**
+     * 日志.
+     */
+    private static final Logger logger = LoggerFactory.getLogger(QueryCacheAspect.class);
+    /**
+     * 配置.
+     */
+    @Autowired
+    private Environment env;
+    /**
+     * Redis操作的DAO实例.
+     */
+    @Autowired
+    private RedisDao redisDao;
+    /**
+     * ObjectMapper实例，用于将参数对象转换为JSON字符串.
+     */
+    private ObjectMapper objectMapper = new ObjectMapper();
+
+    /**
+     * 切点定义，匹配带有{@link QueryCache}注解的方法.
+     * @param queryCache 缓存注解
+     */
+    @Pointcut("@annotation(queryCache)")
+    public void cachedQuery(QueryCache queryCache) { }
+
+    /**
+     * 先读缓存，未命中时执行方法并写回缓存(仅缓存code为200的结果).
+     *
+     * @param joinPoint 连接点，用于获取方法签名和参数
+     * @param queryCache 缓存注解
+     * @return 缓存或方法执行结果
+     * @throws Throwable 抛出异常，如果方法执行过程中出现异常
+     */
+    @Around(value = "cachedQuery(queryCache)", argNames = "joinPoint,queryCache")
+    public Object around(ProceedingJoinPoint joinPoint, QueryCache queryCache) throws Throwable {
+        String methodName = joinPoint.getSignature().getName();
+        String key = getKey(methodName, joinPoint.getArgs());
+        if (key == null) {
+            return joinPoint.proceed();
+        }
+        Object cached = redisDao.get(key);
+        if (cached != null) {
+            return cached;
+        }
+        Object result = joinPoint.proceed();
+        if (result instanceof String) {
+            redisDao.set(key, (String) result, getExpire(methodName, queryCache));
+        }
+        return result;
+    }
+
+    /**
+     * 由方法名和参数生成缓存key，请求、响应对象不参与.
+     *
+     * @param methodName 方法名
+     * @param args 方法参数
+     * @return 缓存key，参数无法序列化时返回null
+     */
+    public String getKey(String methodName, Object[] args) {
+        StringJoiner joiner = new StringJoiner(":");
+        try {
+            for (Object arg : args) {
+                if (arg instanceof ServletRequest || arg instanceof ServletResponse) {
+                    continue;
+                }
+                if (arg == null || arg instanceof CharSequence || arg instanceof Number
+                        || arg instanceof Boolean || arg instanceof Enum) {
+                    joiner.add(String.valueOf(arg).toLowerCase());
+                } else {
+                    joiner.add(objectMapper.writeValueAsString(arg));
+                }
+            }
+        } catch (Exception e) {
+            logger.error("query cache key exception - {}", e.getMessage());
+            return null;
+        }
+        String argsKey = joiner.toString();
+        if (argsKey.length() > MAX_ARGS_LENGTH) {
+            argsKey = Hashing.sha256().hashString(argsKey, StandardCharsets.UTF_8).toString();
+        }
+        return KEY_PREFIX + methodName + ":" + argsKey;
+    }
+
+    private long getExpire(String methodName, QueryCache queryCache) {
+        long expire = queryCache.expire() > 0 ? queryCache.expire()
+                : Long.parseLong(env.getProperty("redis.keyExpire", "60"));
+        return Long.parseLong(env.getProperty("cache.expire." + methodName, String.valueOf(expire)));
+    }
+}
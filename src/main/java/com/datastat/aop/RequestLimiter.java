@@ -0,0 +1,178 @@
+package com.datastat.aop;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import com.datastat.dao.RedisDao;
+import com.datastat.util.StatsLogger;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+import jakarta.annotation.PostConstruct;
+
+/**
+ * 按接口和客户端分别限流的令牌桶.
+ * 默认在本机内存中计数，开启limit.request.redis后通过Redis脚本在多个节点间共享，Redis不可用时退回本机计数.
+ */
+@Component
+public class RequestLimiter {
+    /**
+     * Redis中令牌桶key的前缀.
+     */
+    private static final String KEY_PREFIX = "limit_request:";
+    /**
+     * 日志.
+     */
+    private static final Logger logger = LoggerFactory.getLogger(RequestLimiter.class);
+    /**
+     * 配置.
+     */
+    @Autowired
+    private Environment env;
+    /**
+     * Redis操作的DAO实例.
+     */
+    @Autowired
+    private RedisDao redisDao;
+    /**
+     * 统计日志.
+     */
+    @Autowired
+    private StatsLogger statsLogger;
+    /**
+     * 本机令牌桶，长时间未访问的客户端自动清理.
+     */
+    private Cache<String, TokenBucket> buckets;
+    /**
+     * 各接口被拒绝的次数.
+     */
+    private final ConcurrentHashMap<String, LongAdder> rejected = new ConcurrentHashMap<>();
+    /**
+     * 放行的次数.
+     */
+    private final LongAdder allowed = new LongAdder();
+    /**
+     * Redis不可用而退回本机计数的次数.
+     */
+    private final LongAdder fallbacks = new LongAdder();
+    /**
+     * 是否通过Redis共享令牌桶.
+     */
+    private boolean useRedis;
+
+    /**
+     * 初始化令牌桶缓存，注册统计日志.
+     */
+    @PostConstruct
+    public void init() {
+        useRedis = Boolean.parseBoolean(env.getProperty("limit.request.redis", "false"));
+        buckets = CacheBuilder.newBuilder()
+                .maximumSize(Long.parseLong(env.getProperty("limit.request.bucket.size", "100000")))
+                .expireAfterAccess(10, TimeUnit.MINUTES)
+                .build();
+        statsLogger.register("limit request", this::getStats);
+    }
+
+    /**
+     * 从客户端在该接口的令牌桶中取一个令牌.
+     * 桶容量为callCount + burst，每callTime秒补充callCount个令牌.
+     *
+     * @param endpoint 接口名
+     * @param client 客户端标识(IP或token摘要)
+     * @param limitRequest 限流配置
+     * @return 取到令牌返回true，否则返回false
+     */
+    public boolean tryAcquire(String endpoint, String client, LimitRequest limitRequest) {
+        long capacity = (long) limitRequest.callCount() + Math.max(0, limitRequest.burst());
+        double tokensPerMilli = limitRequest.callCount() / (Math.max(1, limitRequest.callTime()) * 1000.0);
+        String key = endpoint + ":" + client;
+        boolean ok = useRedis ? acquireShared(key, capacity, tokensPerMilli) : acquireLocal(key, capacity, tokensPerMilli);
+        if (ok) {
+            allowed.increment();
+        } else {
+            rejected.computeIfAbsent(endpoint, k -> new LongAdder()).increment();
+        }
+        return ok;
+    }
+
+    /**
+     * 限流统计.
+     *
+     * @return 放行、退回本机计数以及各接口被拒绝的次数
+     */
+    public Map<String, Long> getStats() {
+        Map<String, Long> stats = new LinkedHashMap<>();
+        stats.put("allowed", allowed.sum());
+        stats.put("fallbacks", fallbacks.sum());
+        stats.put("buckets", buckets.size());
+        rejected.forEach((endpoint, count) -> stats.put("rejected." + endpoint, count.sum()));
+        return stats;
+    }
+
+    private boolean acquireShared(String key, long capacity, double tokensPerMilli) {
+        // 桶补满所需时间之后即可过期
+        long ttl = (long) Math.ceil(capacity / tokensPerMilli) + 1000L;
+        Boolean ok = redisDao.acquireToken(KEY_PREFIX + key, capacity, tokensPerMilli, ttl);
+        if (ok != null) {
+            return ok;
+        }
+        fallbacks.increment();
+        return acquireLocal(key, capacity, tokensPerMilli);
+    }
+
+    private boolean acquireLocal(String key, long capacity, double tokensPerMilli) {
+        try {
+            return buckets.get(key, () -> new TokenBucket(capacity))
+                    .tryAcquire(capacity, tokensPerMilli, System.currentTimeMillis());
+        } catch (ExecutionException e) {
+            logger.error("exception", e);
+            return true;
+        }
+    }
+
+    /**
+     * 无锁令牌桶，令牌数和补充时间作为一个不可变状态整体CAS替换.
+     */
+    static final class TokenBucket {
+        private final AtomicReference<State> state;
+
+        TokenBucket(long capacity) {
+            state = new AtomicReference<>(new State(capacity, System.currentTimeMillis()));
+        }
+
+        boolean tryAcquire(long capacity, double tokensPerMilli, long now) {
+            while (true) {
+                State current = state.get();
+                long time = Math.max(now, current.time);
+                double tokens = Math.min(capacity, current.tokens + (time - current.time) * tokensPerMilli);
+                if (tokens < 1) {
+                    return false;
+                }
+                if (state.compareAndSet(current, new State(tokens - 1, time))) {
+                    return true;
+                }
+            }
+        }
+    }
+
+    private static final class State {
+        private final double tokens;
+        private final long time;
+
+        State(double tokens, long time) {
+            this.tokens = tokens;
+            this.time = time;
+        }
+    }
+}
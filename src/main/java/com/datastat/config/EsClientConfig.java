@@ -0,0 +1,113 @@
+/* This project is licensed under the Mulan PSL v2.
+ You can use this software according to the terms and conditions of the Mulan PSL v2.
+ You may obtain a copy of Mulan PSL v2 at:
+     http://license.coscl.org.cn/MulanPSL2
+ THIS SOFTWARE IS PROVIDED ON AN "AS IS" BASIS, WITHOUT WARRANTIES OF ANY KIND, EITHER EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO NON-INFRINGEMENT, MERCHANTABILITY OR FIT FOR A PARTICULAR
+ PURPOSE.
+ See the Mulan PSL v2 for more details.
+ Create: 2024
+*/
+
+package com.datastat.config;
+
+import java.security.KeyManagementException;
+import java.security.NoSuchAlgorithmException;
+
+import javax.net.ssl.SSLContext;
+
+import org.apache.http.HttpHost;
+import org.apache.http.auth.AuthScope;
+import org.apache.http.auth.UsernamePasswordCredentials;
+import org.apache.http.conn.ssl.NoopHostnameVerifier;
+import org.apache.http.impl.client.BasicCredentialsProvider;
+import org.apache.http.impl.nio.reactor.IOReactorConfig;
+import org.elasticsearch.client.RestClient;
+import org.elasticsearch.client.RestClientBuilder;
+import org.elasticsearch.client.RestHighLevelClient;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.env.Environment;
+
+import com.datastat.util.HttpClientUtils;
+
+/**
+ * Shared Elasticsearch RestHighLevelClient beans, pooled for the application lifetime and closed on shutdown.
+ */
+@Configuration
+public class EsClientConfig {
+    @Autowired
+    Environment env;
+
+    private static final Logger logger = LoggerFactory.getLogger(EsClientConfig.class);
+
+    /**
+     * Client of the main cluster, configured by es.*.
+     *
+     * @return RestHighLevelClient.
+     */
+    @Primary
+    @Bean(name = "restHighLevelClient", destroyMethod = "close")
+    public RestHighLevelClient restHighLevelClient() {
+        return buildClient(env.getProperty("es.host", "0.0.0.0"),
+                Integer.parseInt(env.getProperty("es.port", "9200")),
+                env.getProperty("es.scheme", "https"),
+                env.getProperty("es.user", ""),
+                env.getProperty("es.password", ""));
+    }
+
+    /**
+     * Client of the private cluster, configured by es.private.* and falling back to es.*.
+     *
+     * @return RestHighLevelClient.
+     */
+    @Bean(name = "privateRestHighLevelClient", destroyMethod = "close")
+    public RestHighLevelClient privateRestHighLevelClient() {
+        return buildClient(env.getProperty("es.private.host", env.getProperty("es.host", "0.0.0.0")),
+                Integer.parseInt(env.getProperty("es.private.port", env.getProperty("es.port", "9200"))),
+                env.getProperty("es.private.scheme", env.getProperty("es.scheme", "https")),
+                env.getProperty("es.private.user", env.getProperty("es.user", "")),
+                env.getProperty("es.private.password", env.getProperty("es.password", "")));
+    }
+
+    private RestHighLevelClient buildClient(String host, int port, String scheme, String user, String password) {
+        int maxConnTotal = Integer.parseInt(env.getProperty("es.client.max.conn.total", "200"));
+        int maxConnPerRoute = Integer.parseInt(env.getProperty("es.client.max.conn.per.route", "100"));
+        long keepAlive = Long.parseLong(env.getProperty("es.client.keep.alive.ms", "60000"));
+        int connectTimeout = Integer.parseInt(env.getProperty("es.client.connect.timeout.ms", "5000"));
+        int socketTimeout = Integer.parseInt(env.getProperty("es.client.socket.timeout.ms", "60000"));
+        int requestTimeout = Integer.parseInt(env.getProperty("es.client.request.timeout.ms", "5000"));
+
+        BasicCredentialsProvider credentialsProvider = new BasicCredentialsProvider();
+        credentialsProvider.setCredentials(AuthScope.ANY, new UsernamePasswordCredentials(user, password));
+
+        // one SSLContext shared by every pooled connection
+        SSLContext sc = null;
+        try {
+            sc = HttpClientUtils.skipSsl();
+        } catch (NoSuchAlgorithmException | KeyManagementException e) {
+            logger.error("exception", e);
+        }
+        final SSLContext sslContext = sc;
+
+        RestClientBuilder builder = RestClient.builder(new HttpHost(host, port, scheme));
+        builder.setHttpClientConfigCallback(httpAsyncClientBuilder -> httpAsyncClientBuilder
+                .setDefaultCredentialsProvider(credentialsProvider)
+                .setSSLContext(sslContext)
+                .setSSLHostnameVerifier(NoopHostnameVerifier.INSTANCE)
+                .setMaxConnTotal(maxConnTotal)
+                .setMaxConnPerRoute(maxConnPerRoute)
+                .setKeepAliveStrategy((response, context) -> keepAlive)
+                .setDefaultIOReactorConfig(IOReactorConfig.custom().setSoKeepAlive(true).build()));
+        builder.setRequestConfigCallback(requestConfigBuilder -> requestConfigBuilder
+                .setConnectTimeout(connectTimeout)
+                .setSocketTimeout(socketTimeout)
+                .setConnectionRequestTimeout(requestTimeout));
+        logger.info("init es client {}://{}:{}", scheme, host, port);
+        return new RestHighLevelClient(builder);
+    }
+}
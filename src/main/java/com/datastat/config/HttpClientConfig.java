@@ -0,0 +1,45 @@
+/* This project is licensed under the Mulan PSL v2.
+ You can use this software according to the terms and conditions of the Mulan PSL v2.
+ You may obtain a copy of Mulan PSL v2 at:
+     http://license.coscl.org.cn/MulanPSL2
+ THIS SOFTWARE IS PROVIDED ON AN "AS IS" BASIS, WITHOUT WARRANTIES OF ANY KIND, EITHER EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO NON-INFRINGEMENT, MERCHANTABILITY OR FIT FOR A PARTICULAR
+ PURPOSE.
+ See the Mulan PSL v2 for more details.
+ Create: 2024
+*/
+
+package com.datastat.config;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+
+import com.datastat.util.HttpClientUtils;
+import com.datastat.util.StatsLogger;
+
+import jakarta.annotation.PostConstruct;
+
+/**
+ * Applies the http.client.* settings to the shared outbound client of HttpClientUtils
+ * and logs its pool stats.
+ */
+@Configuration
+public class HttpClientConfig {
+    @Autowired
+    Environment env;
+
+    @Autowired
+    StatsLogger statsLogger;
+
+    @PostConstruct
+    public void init() {
+        HttpClientUtils.configure(
+                Integer.parseInt(env.getProperty("http.client.max.total", "200")),
+                Integer.parseInt(env.getProperty("http.client.max.per.route", "20")),
+                Integer.parseInt(env.getProperty("http.client.connect.timeout", "5000")),
+                Integer.parseInt(env.getProperty("http.client.socket.timeout", "30000")),
+                Integer.parseInt(env.getProperty("http.client.pool.timeout", "5000")));
+        statsLogger.register("http client", HttpClientUtils::getStats);
+    }
+}
@@ -0,0 +1,46 @@
+/* This project is licensed under the Mulan PSL v2.
+ You can use this software according to the terms and conditions of the Mulan PSL v2.
+ You may obtain a copy of Mulan PSL v2 at:
+     http://license.coscl.org.cn/MulanPSL2
+ THIS SOFTWARE IS PROVIDED ON AN "AS IS" BASIS, WITHOUT WARRANTIES OF ANY KIND, EITHER EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO NON-INFRINGEMENT, MERCHANTABILITY OR FIT FOR A PARTICULAR
+ PURPOSE.
+ See the Mulan PSL v2 for more details.
+ Create: 2024
+*/
+
+package com.datastat.config;
+
+import java.nio.charset.StandardCharsets;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+
+import com.datastat.dao.RedisDao;
+
+/**
+ * Subscribes RedisDao to near cache invalidations published by every node.
+ */
+@Configuration
+public class RedisCacheConfig {
+    /**
+     * Listener container of the invalidation channel.
+     *
+     * @param connectionFactory redis connection factory.
+     * @param redisDao redis dao owning the near cache.
+     * @return RedisMessageListenerContainer.
+     */
+    @Bean
+    public RedisMessageListenerContainer redisMessageListenerContainer(RedisConnectionFactory connectionFactory,
+                                                                       RedisDao redisDao) {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(connectionFactory);
+        container.addMessageListener((message, pattern) ->
+                        redisDao.onInvalidate(new String(message.getBody(), StandardCharsets.UTF_8)),
+                new ChannelTopic(RedisDao.INVALIDATE_CHANNEL));
+        return container;
+    }
+}
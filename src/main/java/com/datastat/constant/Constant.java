@@ -51,6 +51,11 @@ public final class Constant {
      */
     public static final String OPENMIND_COMMUNITY = "openmind";
 
+    /**
+     * 请求属性名，保存鉴权拦截器校验通过的用户.
+     */
+    public static final String VERIFIED_USER_ATTR = "datastat.verifiedUser";
+
     /**
      * The name of github platform.
      */
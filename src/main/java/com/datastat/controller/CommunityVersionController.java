@@ -46,6 +46,7 @@ public class CommunityVersionController {
      * @param branch:
      * @param pageSize:
      * @param currentPage:
+     * @param cursor: cursor of the next page returned by the previous one
      * @return: com.om.Result.Result
      * @Author: xiazhonghai
      * @Date: 2021/3/22 10:00
@@ -55,10 +56,11 @@ public class CommunityVersionController {
             @RequestParam(required = false) String repo,
             @RequestParam(required = false) String branch,
             @RequestParam(required = false, defaultValue = "0") int pageSize,
-            @RequestParam(required = false, defaultValue = "0") int currentPage) throws InterruptedException,
+            @RequestParam(required = false, defaultValue = "0") int currentPage,
+            @RequestParam(required = false) String cursor) throws InterruptedException,
             ExecutionException, NoSuchAlgorithmException, KeyManagementException, JsonProcessingException {
         String serviceType = community == null ? "queryConf" : community.toLowerCase() + "Conf";
         CustomPropertiesConfig queryConf = queryConfContext.getQueryConfig(serviceType);
-        return versionService.getVersionByRepoBranch(queryConf, community, repo, pageSize, currentPage);
+        return versionService.getVersionByRepoBranch(queryConf, community, repo, pageSize, currentPage, cursor);
     }
 }
@@ -31,12 +31,15 @@ import com.datastat.model.meetup.MeetupApplyForm;
 import com.datastat.model.vo.*;
 import com.datastat.service.QueryService;
 import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.IOException;
+
 @RestController
 @RequestMapping(value = "/query")
 public class QueryController {
@@ -149,6 +152,16 @@ public class QueryController {
         return queryService.queryCveDetails(request, community, lastCursor, pageSize);
     }
 
+    @UserLoginToken
+    @LimitRequest(callTime = 60, callCount = 10)
+    @RequestMapping(value = "/cveDetails/export", method = RequestMethod.GET)
+    public void exportCveDetails(HttpServletRequest request, HttpServletResponse response,
+                                 @RequestParam(value = "community") String community,
+                                 @RequestParam(value = "format", required = false, defaultValue = "ndjson") String format,
+                                 @RequestParam(value = "lastCursor", required = false) String lastCursor) throws IOException {
+        queryService.exportCveDetails(request, response, community, format, lastCursor);
+    }
+
     @RequestMapping("/newYear/report")
     public String queryNewYear(HttpServletRequest request,
                                @CookieValue(value = "_oauth2_proxy", required = true) String oauth2_proxy) {
@@ -175,6 +188,16 @@ public class QueryController {
         return queryService.queryBugQuestionnaire(request, community, lastCursor, pageSize);
     }
 
+    @UserLoginToken
+    @LimitRequest(callTime = 60, callCount = 10)
+    @RequestMapping(value = "/bugQuestionnaires/export", method = RequestMethod.GET)
+    public void exportBugQuestionnaires(HttpServletRequest request, HttpServletResponse response,
+                                        @RequestParam(value = "community") String community,
+                                        @RequestParam(value = "format", required = false, defaultValue = "ndjson") String format,
+                                        @RequestParam(value = "lastCursor", required = false) String lastCursor) throws IOException {
+        queryService.exportBugQuestionnaire(request, response, community, format, lastCursor);
+    }
+
     @LimitRequest(callTime = 1, callCount = 1000)
     @RequestMapping(value = "add/bugquestionnaire", method = RequestMethod.POST)
     public String addBugQuestionnaire(HttpServletRequest request,
@@ -263,8 +286,9 @@ public class QueryController {
                                @RequestParam(value = "user", required = false) String user,
                                @RequestParam(value = "search", required = false) String search,
                                @RequestParam(value = "page", required = false) String page,
-                               @RequestParam(value = "pageSize", required = false) String pageSize) throws Exception {
-        return queryService.querySigInfo(request, community, sig, repo, user, search, page, pageSize);
+                               @RequestParam(value = "pageSize", required = false) String pageSize,
+                               @RequestParam(value = "cursor", required = false) String cursor) throws Exception {
+        return queryService.querySigInfo(request, community, sig, repo, user, search, page, pageSize, cursor);
     }
 
     @RequestMapping("/sig/repo")
@@ -272,8 +296,9 @@ public class QueryController {
                                @RequestParam(value = "community") String community,
                                @RequestParam(value = "sig", required = false) String sig,
                                @RequestParam(value = "page", required = false) String page,
-                               @RequestParam(value = "pageSize", required = false) String pageSize) throws Exception {
-        return queryService.querySigRepo(request, community, sig, page, pageSize);
+                               @RequestParam(value = "pageSize", required = false) String pageSize,
+                               @RequestParam(value = "cursor", required = false) String cursor) throws Exception {
+        return queryService.querySigRepo(request, community, sig, page, pageSize, cursor);
     }
 
     @RequestMapping("sig/company/contribute")
@@ -0,0 +1,166 @@
+/* This project is licensed under the Mulan PSL v2.
+ You can use this software according to the terms and conditions of the Mulan PSL v2.
+ You may obtain a copy of Mulan PSL v2 at:
+     http://license.coscl.org.cn/MulanPSL2
+ THIS SOFTWARE IS PROVIDED ON AN "AS IS" BASIS, WITHOUT WARRANTIES OF ANY KIND, EITHER EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO NON-INFRINGEMENT, MERCHANTABILITY OR FIT FOR A PARTICULAR
+ PURPOSE.
+ See the Mulan PSL v2 for more details.
+ Create: 2024
+*/
+
+package com.datastat.dao;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.commons.lang3.StringUtils;
+import org.asynchttpclient.ListenableFuture;
+import org.asynchttpclient.Response;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Repository;
+
+import com.datastat.model.CustomPropertiesConfig;
+import com.datastat.util.EsAsyncHttpUtil;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.ImmutableSet;
+
+import jakarta.annotation.PostConstruct;
+
+/**
+ * Snapshot of the CLA corporation names per index, refreshed periodically and
+ * incrementally by timestamp between two full loads.
+ */
+@Repository
+public class ClaCompanyDao {
+    @Autowired
+    Environment env;
+
+    @Autowired
+    ObjectMapper objectMapper;
+
+    @Autowired
+    EsAsyncHttpUtil esAsyncHttpUtil;
+
+    private static final Logger logger = LoggerFactory.getLogger(ClaCompanyDao.class);
+    private static final String FULL_QUERY = "{\"size\": 10000}";
+    private final ConcurrentHashMap<String, Snapshot> snapshots = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, AtomicBoolean> refreshing = new ConcurrentHashMap<>();
+    private String esUrl;
+    private long refreshInterval;
+    private long fullRefreshInterval;
+
+    @PostConstruct
+    public void init() {
+        esUrl = String.format("%s://%s:%s/", env.getProperty("es.scheme"), env.getProperty("es.host"), env.getProperty("es.port"));
+        refreshInterval = Long.parseLong(env.getProperty("cla.company.refresh.interval", "600000"));
+        fullRefreshInterval = Long.parseLong(env.getProperty("cla.company.full.refresh.interval", "3600000"));
+    }
+
+    /**
+     * Get the CLA companies of the community, loading them on first use.
+     * A stale snapshot is served to everyone while a single caller refreshes it.
+     *
+     * @param queryConf community config.
+     * @return immutable set of corporation names in index order.
+     * @throws Exception if the first load fails.
+     */
+    public Set<String> getCompanies(CustomPropertiesConfig queryConf) throws Exception {
+        String index = queryConf.getClaCorporationIndex();
+        Snapshot snapshot = snapshots.get(index);
+        if (snapshot == null) {
+            synchronized (this) {
+                snapshot = snapshots.get(index);
+                if (snapshot == null) {
+                    snapshot = fullLoad(index, 1L);
+                    snapshots.put(index, snapshot);
+                }
+            }
+            return snapshot.companies;
+        }
+        long now = System.currentTimeMillis();
+        if (now - snapshot.refreshedAt >= refreshInterval) {
+            AtomicBoolean flag = refreshing.computeIfAbsent(index, k -> new AtomicBoolean());
+            if (flag.compareAndSet(false, true)) {
+                try {
+                    snapshots.put(index, refresh(queryConf, snapshot, now));
+                } catch (Exception e) {
+                    logger.error("cla company refresh exception", e);
+                } finally {
+                    flag.set(false);
+                }
+            }
+        }
+        return snapshots.get(index).companies;
+    }
+
+    /**
+     * Version of the snapshot of an index, increased whenever its content changes.
+     *
+     * @param index cla corporation index.
+     * @return version, 0 if not loaded.
+     */
+    public long getVersion(String index) {
+        Snapshot snapshot = snapshots.get(index);
+        return snapshot == null ? 0L : snapshot.version;
+    }
+
+    private Snapshot refresh(CustomPropertiesConfig queryConf, Snapshot snapshot, long now) throws Exception {
+        String index = queryConf.getClaCorporationIndex();
+        String incrementalQuery = queryConf.getClaNameQuery();
+        if (StringUtils.isBlank(incrementalQuery) || now - snapshot.fullLoadedAt >= fullRefreshInterval) {
+            Snapshot loaded = fullLoad(index, snapshot.version);
+            return loaded.companies.equals(snapshot.companies)
+                    ? new Snapshot(snapshot.companies, snapshot.version, loaded.fullLoadedAt, loaded.refreshedAt)
+                    : new Snapshot(loaded.companies, snapshot.version + 1, loaded.fullLoadedAt, loaded.refreshedAt);
+        }
+        // only the companies signed since the last refresh
+        ImmutableSet.Builder<String> added = ImmutableSet.builder();
+        fetch(index, String.format(incrementalQuery, snapshot.refreshedAt), added);
+        Set<String> merged = ImmutableSet.<String>builder().addAll(snapshot.companies).addAll(added.build()).build();
+        long version = merged.size() == snapshot.companies.size() ? snapshot.version : snapshot.version + 1;
+        return new Snapshot(merged, version, snapshot.fullLoadedAt, now);
+    }
+
+    private Snapshot fullLoad(String index, long version) throws Exception {
+        long now = System.currentTimeMillis();
+        ImmutableSet.Builder<String> companies = ImmutableSet.builder();
+        fetch(index, FULL_QUERY, companies);
+        Snapshot snapshot = new Snapshot(companies.build(), version, now, now);
+        logger.info("cla company loaded from {}, size {}", index, snapshot.companies.size());
+        return snapshot;
+    }
+
+    private void fetch(String index, String query, ImmutableSet.Builder<String> companies) throws Exception {
+        ListenableFuture<Response> future = esAsyncHttpUtil.executeSearch(esUrl, index, query, "queryClaCompanies");
+        String responseBody = future.get().getResponseBody(UTF_8);
+        JsonNode dataNode = objectMapper.readTree(responseBody);
+        Iterator<JsonNode> hits = dataNode.get("hits").get("hits").elements();
+        while (hits.hasNext()) {
+            JsonNode source = hits.next().get("_source");
+            companies.add(source.get("corporation_name").asText());
+        }
+    }
+
+    private static final class Snapshot {
+        private final Set<String> companies;
+        private final long version;
+        private final long fullLoadedAt;
+        private final long refreshedAt;
+
+        Snapshot(Set<String> companies, long version, long fullLoadedAt, long refreshedAt) {
+            this.companies = companies;
+            this.version = version;
+            this.fullLoadedAt = fullLoadedAt;
+            this.refreshedAt = refreshedAt;
+        }
+    }
+}
@@ -0,0 +1,156 @@
+/* This project is licensed under the Mulan PSL v2.
+ You can use this software according to the terms and conditions of the Mulan PSL v2.
+ You may obtain a copy of Mulan PSL v2 at:
+     http://license.coscl.org.cn/MulanPSL2
+ THIS SOFTWARE IS PROVIDED ON AN "AS IS" BASIS, WITHOUT WARRANTIES OF ANY KIND, EITHER EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO NON-INFRINGEMENT, MERCHANTABILITY OR FIT FOR A PARTICULAR
+ PURPOSE.
+ See the Mulan PSL v2 for more details.
+ Create: 2024
+*/
+
+package com.datastat.dao;
+
+import java.io.File;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Objects;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Repository;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.maxmind.db.CHMCache;
+import com.maxmind.db.Reader;
+import com.maxmind.geoip2.DatabaseReader;
+import com.maxmind.geoip2.model.CityResponse;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Shared GeoIP database reader, memory mapped from a local copy of the OBS object
+ * and swapped atomically when OBS holds a new version.
+ */
+@Repository
+public class GeoIpDao {
+    @Autowired
+    Environment env;
+
+    @Autowired
+    ObsDao obsDao;
+
+    private static final Logger logger = LoggerFactory.getLogger(GeoIpDao.class);
+    private final AtomicReference<GeoIpDatabase> current = new AtomicReference<>();
+    private ScheduledExecutorService service;
+    private int cacheSize;
+
+    @PostConstruct
+    public void init() {
+        cacheSize = Integer.parseInt(env.getProperty("ip.database.cache.size", "4096"));
+        long interval = Long.parseLong(env.getProperty("ip.database.refresh.interval", "3600"));
+        long retryInterval = Long.parseLong(env.getProperty("ip.database.retry.interval", "60"));
+        service = Executors.newSingleThreadScheduledExecutor(
+                new ThreadFactoryBuilder().setNameFormat("geoip-refresh-%d").setDaemon(true).build());
+        service.scheduleWithFixedDelay(this::refresh, 0, interval, TimeUnit.SECONDS);
+        // until the first download succeeds, retry sooner than the refresh interval
+        service.scheduleWithFixedDelay(() -> {
+            if (current.get() == null) {
+                refresh();
+            }
+        }, retryInterval, retryInterval, TimeUnit.SECONDS);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        service.shutdownNow();
+        GeoIpDatabase database = current.getAndSet(null);
+        if (database != null) {
+            database.close();
+        }
+    }
+
+    /**
+     * Look up the city of an ip address.
+     *
+     * @param ipAddress ip address.
+     * @return CityResponse.
+     * @throws Exception if the database is not loaded yet or the lookup fails. Requests never wait
+     *         for the download, the scheduled refresh retries it.
+     */
+    public CityResponse city(InetAddress ipAddress) throws Exception {
+        GeoIpDatabase database = current.get();
+        if (database == null) {
+            throw new IllegalStateException("ip database is not loaded");
+        }
+        return database.reader.city(ipAddress);
+    }
+
+    /**
+     * Download the database again if its version in OBS changed.
+     */
+    public synchronized void refresh() {
+        File file = null;
+        try {
+            GeoIpDatabase old = current.get();
+            String version = obsDao.getDataVersion();
+            if (old != null && Objects.equals(old.version, version)) {
+                return;
+            }
+            try (InputStream data = obsDao.getData()) {
+                if (data == null) {
+                    return;
+                }
+                file = File.createTempFile("geoip", ".mmdb");
+                Files.copy(data, file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+            DatabaseReader reader = new DatabaseReader.Builder(file)
+                    .fileMode(Reader.FileMode.MEMORY_MAPPED)
+                    .withCache(new CHMCache(cacheSize))
+                    .build();
+            current.set(new GeoIpDatabase(reader, file, version));
+            file = null;
+            logger.info("ip database loaded, version {}", version);
+            if (old != null) {
+                // let in-flight lookups on the old reader finish before unmapping it
+                service.schedule(old::close, 60, TimeUnit.SECONDS);
+            }
+        } catch (Exception e) {
+            logger.error("ip database refresh exception", e);
+        } finally {
+            if (file != null) {
+                file.delete();
+            }
+        }
+    }
+
+    private static class GeoIpDatabase {
+        private final DatabaseReader reader;
+        private final File file;
+        private final String version;
+
+        GeoIpDatabase(DatabaseReader reader, File file, String version) {
+            this.reader = reader;
+            this.file = file;
+            this.version = version;
+        }
+
+        void close() {
+            try {
+                reader.close();
+                Files.deleteIfExists(file.toPath());
+            } catch (Exception e) {
+                logger.error("ip database close exception", e);
+            }
+        }
+    }
+}
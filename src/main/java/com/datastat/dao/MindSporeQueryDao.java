@@ -12,26 +12,27 @@
 package com.datastat.dao;
 
 import com.datastat.model.CustomPropertiesConfig;
+import com.datastat.util.EsBucketReader;
+import com.datastat.util.HttpClientUtils;
 import com.datastat.util.ResultUtil;
 import com.datastat.util.YamlUtil;
 import com.fasterxml.jackson.databind.JsonNode;
 import lombok.SneakyThrows;
+import org.apache.commons.lang3.ArrayUtils;
 import org.asynchttpclient.ListenableFuture;
+import org.apache.http.client.methods.HttpGet;
 import org.asynchttpclient.Response;
 import org.springframework.stereotype.Repository;
 
 import java.text.SimpleDateFormat;
 import static java.nio.charset.StandardCharsets.UTF_8;
 
-import java.io.BufferedReader;
-import java.io.InputStreamReader;
-import java.net.HttpURLConnection;
-import java.net.URL;
-import java.net.URLConnection;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
 
 @Repository("mindsporeDao")
 public class MindSporeQueryDao extends QueryDao {
@@ -117,7 +118,7 @@ public class MindSporeQueryDao extends QueryDao {
         String index = queryConf.getEcosystemRepoIndex();
         String queryJson = queryConf.getEcosystemRepoQuery();
         String queryStr = String.format(queryJson, ecosystemType, lang, sortOrder);
-        ListenableFuture<Response> future = esAsyncHttpUtil.executeSearch(esUrl, index, queryStr);
+        ListenableFuture<Response> future = esAsyncHttpUtil.executeSearch(esUrl, index, queryStr, "getEcosystemRepoInfo");
         String responseBody = future.get().getResponseBody(UTF_8);
         JsonNode dataNode = objectMapper.readTree(responseBody);
         Iterator<JsonNode> buckets = dataNode.get("hits").get("hits").elements();
@@ -151,19 +152,11 @@ public class MindSporeQueryDao extends QueryDao {
                 urlStr = siginfo.get("links").replace("/blob/", "/raw/").replace("/tree/", "/raw/");
             }
         }
-        URL url = new URL(urlStr);
-        URLConnection urlConnection = url.openConnection();
-        HttpURLConnection connection = null;
-        if (urlConnection instanceof HttpURLConnection) {
-            connection = (HttpURLConnection) urlConnection;
-            connection.setConnectTimeout(0);
-        }
-        BufferedReader in = new BufferedReader(new InputStreamReader(connection.getInputStream(), "UTF-8"));
-        String res = "";
-        String current;
-        while ((current = in.readLine()) != null) {
-            res += current + '\n';
+        HttpClientUtils.HttpResult response = HttpClientUtils.execute(new HttpGet(urlStr));
+        if (response.getStatus() != 200) {
+            throw new Exception("sig readme request error - " + response.getStatus());
         }
+        String res = response.getBody();
         return ResultUtil.resultJsonStr(200, objectMapper.valueToTree(res), "ok");
     }
 
@@ -181,7 +174,8 @@ public class MindSporeQueryDao extends QueryDao {
         String[] indexes = queryConf.getAggContributorsIndex().split(";");
         String[] queries = queryConf.getAggContributorsQueryStr().split(";");
         String[] codeQueries = queryConf.getAggCodeContributorsQueryStr().split(";");
-        count = queryCountContributors(indexes, queries) + queryCountContributors(indexes, codeQueries);
+        // 贡献者和代码贡献者的查询合并为一次msearch
+        count = queryCountContributors(ArrayUtils.addAll(indexes, indexes), ArrayUtils.addAll(queries, codeQueries));
         return ResultUtil.resultJsonStr(200, item, count, "ok");
     }
     /**
@@ -194,13 +188,11 @@ public class MindSporeQueryDao extends QueryDao {
     @SneakyThrows
     public int queryCountContributors(String[] indexes, String[] queries) {
         int count = 0;
-        for (int i = 0; i < indexes.length; i++) {
-            ListenableFuture<Response> future = esAsyncHttpUtil.executeSearch(esUrl, indexes[i], queries[i]);
-            String resBody = future.get().getResponseBody(UTF_8);
-            JsonNode dataNode = objectMapper.readTree(resBody);
-            JsonNode buckets = dataNode.get("aggregations").get("group_field").get("buckets");
-            if (buckets.elements().hasNext()) {
-                count +=  buckets.get(0).get("users").get("value").asInt();
+        List<JsonNode> responses = esAsyncHttpUtil.multiSearch(esUrl, Arrays.asList(indexes), Arrays.asList(queries), 0L, "queryCountContributors");
+        for (JsonNode response : responses) {
+            Iterator<JsonNode> buckets = EsBucketReader.groupFieldBuckets(response);
+            if (buckets.hasNext()) {
+                count +=  buckets.next().get("users").get("value").asInt();
             }
         }
         return count;
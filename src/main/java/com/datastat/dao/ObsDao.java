@@ -12,6 +12,7 @@
 package com.datastat.dao;
 
 import com.obs.services.ObsClient;
+import com.obs.services.model.ObjectMetadata;
 import com.obs.services.model.ObsObject;
 import com.obs.services.model.PutObjectRequest;
 
@@ -78,6 +79,16 @@ public class ObsDao {
         return res;
     }
 
+    /**
+     * Get the etag of the ip database object, used to detect a new version.
+     *
+     * @return etag.
+     */
+    public String getDataVersion() {
+        ObjectMetadata metadata = obsClient.getObjectMetadata(obsBucketName, IPObjectKey);
+        return metadata.getEtag();
+    }
+
     public List<HashMap<String, Object>> getReportData() {
         ObsObject object = obsClient.getObject(obsBucketName, reportObjectKey);
         InputStream content = object.getObjectContent();
@@ -13,17 +13,14 @@ package com.datastat.dao;
 
 import com.datastat.model.CustomPropertiesConfig;
 import com.datastat.result.ReturnCode;
+import com.datastat.util.HttpClientUtils;
 import com.datastat.util.ResultUtil;
 import com.fasterxml.jackson.databind.JsonNode;
 import lombok.SneakyThrows;
 
-import java.io.BufferedReader;
-import java.io.InputStreamReader;
-import java.net.HttpURLConnection;
-import java.net.URL;
-import java.net.URLConnection;
 import java.net.URLEncoder;
 
+import org.apache.http.client.methods.HttpGet;
 import org.asynchttpclient.ListenableFuture;
 import org.asynchttpclient.Response;
 import org.slf4j.Logger;
@@ -45,7 +42,7 @@ public class OpenEulerQueryDao extends QueryDao {
         String statusText = ReturnCode.RC400.getMessage();
         for (String queryJson : queryJsons) {
             //获取执行结果
-            ListenableFuture<Response> future = esAsyncHttpUtil.executeSearch(esUrl, index, queryJson);
+            ListenableFuture<Response> future = esAsyncHttpUtil.executeSearch(esUrl, index, queryJson, "queryUsers");
             String users = getSumBucketValue(future, item);
             JsonNode dataNode = objectMapper.readTree(users);
             statusCode = dataNode.get("code").intValue();
@@ -62,23 +59,15 @@ public class OpenEulerQueryDao extends QueryDao {
 
     @Override
     public String getRepoReadme(CustomPropertiesConfig queryConf, String name) {
-        String res = "";
         try {
             String path = env.getProperty("TC.oEEP.url");
             String urlStr = path + URLEncoder.encode(name, "utf-8") + ".md";
             urlStr = urlStr.replaceAll("\\+", "%20");
-            URL url = new URL(urlStr);
-            URLConnection urlConnection = url.openConnection();
-            HttpURLConnection connection = null;
-            if (urlConnection instanceof HttpURLConnection) {
-                connection = (HttpURLConnection) urlConnection;
-                connection.setConnectTimeout(0);
-            }
-            BufferedReader in = new BufferedReader(new InputStreamReader(connection.getInputStream(), "UTF-8"));
-            String current;
-            while ((current = in.readLine()) != null) {
-                res += current + '\n';
+            HttpClientUtils.HttpResult response = HttpClientUtils.execute(new HttpGet(urlStr));
+            if (response.getStatus() != 200) {
+                throw new Exception("readme request error - " + response.getStatus());
             }
+            String res = response.getBody();
             return ResultUtil.resultJsonStr(200, objectMapper.valueToTree(res), "ok");
         } catch (Exception e) {
             logger.error("exception", e);
@@ -90,7 +79,7 @@ public class OpenEulerQueryDao extends QueryDao {
     @SneakyThrows
     public String queryIsvCount(CustomPropertiesConfig queryConf, String item) {
         String query = queryConf.getIsvCountQuery();
-        ListenableFuture<Response> future = esAsyncHttpUtil.executeSearch(esUrl, queryConf.getIsvCountIndex(), query);
+        ListenableFuture<Response> future = esAsyncHttpUtil.executeSearch(esUrl, queryConf.getIsvCountIndex(), query, "queryIsvCount");
         Response response = future.get();
         long count;
         int statusCode = response.getStatusCode();
@@ -12,6 +12,7 @@
 package com.datastat.dao;
 
 import com.datastat.model.CustomPropertiesConfig;
+import com.datastat.util.EsBucketReader;
 import com.datastat.util.ResultUtil;
 import com.fasterxml.jackson.databind.JsonNode;
 import lombok.SneakyThrows;
@@ -49,7 +50,7 @@ public class OpenGaussQueryDao extends QueryDao {
     @SneakyThrows
     public int getDownloadRes(String index, String queryJson) {
         int count = 0;
-        ListenableFuture<Response> future = esAsyncHttpUtil.executeSearch(esUrl, index, queryJson);
+        ListenableFuture<Response> future = esAsyncHttpUtil.executeSearch(esUrl, index, queryJson, "getDownloadRes");
         Response response = future.get();
         String responseBody = response.getResponseBody(UTF_8);
         JsonNode dataNode = objectMapper.readTree(responseBody);
@@ -75,10 +76,8 @@ public class OpenGaussQueryDao extends QueryDao {
         sigLabels.put("No-SIG", "No-Sig");
 
         try {
-            ListenableFuture<Response> future = esAsyncHttpUtil.executeSearch(esUrl, index, queryJson);
-            String responseBody = future.get().getResponseBody(UTF_8);
-            JsonNode dataNode = objectMapper.readTree(responseBody);
-            Iterator<JsonNode> buckets = dataNode.get("aggregations").get("group_field").get("buckets").elements();
+            ListenableFuture<Response> future = esAsyncHttpUtil.executeSearch(esUrl, index, queryJson, "querySigLabel");
+            Iterator<JsonNode> buckets = EsBucketReader.groupFieldBuckets(future.get());
             while (buckets.hasNext()) {
                 JsonNode bucket = buckets.next();
                 String sig = bucket.get("key").asText();
@@ -97,18 +96,18 @@ public class OpenGaussQueryDao extends QueryDao {
     @SneakyThrows
     @Override
     public String queryUsers(CustomPropertiesConfig queryConf, String item) {
-        ListenableFuture<Response> future = esAsyncHttpUtil.executeSearch(esUrl, queryConf.getUsersIndex(), queryConf.getUsersQueryStr());
+        ListenableFuture<Response> future = esAsyncHttpUtil.executeSearch(esUrl, queryConf.getUsersIndex(), queryConf.getUsersQueryStr(), "queryUsers");
         return getSumBucketValue(future, item);
     }
 
     @SneakyThrows
     @Override
     public String querySigScoreAll(CustomPropertiesConfig queryConf) {
-        HashMap<String, HashMap<String, String>> sigFeatures = getCommunityFeature(queryConf);
+        Map<String, Map<String, String>> sigFeatures = getCommunityFeature(queryConf);
         ArrayList<HashMap<String, String>> sigList = new ArrayList<>();
         Set<String> keys = sigFeatures.keySet();
         for (String key : keys) {
-            HashMap<String, String> sigFeature = sigFeatures.get(key);
+            HashMap<String, String> sigFeature = new HashMap<>(sigFeatures.get(key));
             sigFeature.put("sig_names", key);
             sigList.add(sigFeature);
         }
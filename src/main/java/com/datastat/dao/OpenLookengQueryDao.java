@@ -37,7 +37,7 @@ public class OpenLookengQueryDao extends QueryDao {
         int statusCode = 500;
         String statusText = ReturnCode.RC400.getMessage();
         for (String index : indexes) {
-            ListenableFuture<Response> future = esAsyncHttpUtil.executeSearch(esUrl, index, queryJson);
+            ListenableFuture<Response> future = esAsyncHttpUtil.executeSearch(esUrl, index, queryJson, "queryContributors");
             String users = getBucketCount(future, item);
             JsonNode dataNode = objectMapper.readTree(users);
             statusCode = dataNode.get("code").intValue();
@@ -50,7 +50,7 @@ public class OpenLookengQueryDao extends QueryDao {
     @SneakyThrows
     @Override
     public String queryUsers(CustomPropertiesConfig queryConf, String item) {
-        ListenableFuture<Response> future = esAsyncHttpUtil.executeSearch(esUrl, queryConf.getUsersIndex(), queryConf.getUsersQueryStr());
+        ListenableFuture<Response> future = esAsyncHttpUtil.executeSearch(esUrl, queryConf.getUsersIndex(), queryConf.getUsersQueryStr(), "queryUsers");
         return getCountResult(future, item);
     }
 
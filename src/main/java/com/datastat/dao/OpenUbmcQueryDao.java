@@ -43,10 +43,9 @@ public class OpenUbmcQueryDao extends QueryDao {
         String index = queryConf.getSigIndex();
         String queryStr = queryConf.getAllUserOwnerTypeQueryStr();
         ListenableFuture<Response> future = this.esAsyncHttpUtil.executeElasticSearch(queryConf.getEsBaseUrl(),
-                queryConf.getEsAuth(), index, queryStr);
+                queryConf.getEsAuth(), index, queryStr, "queryUserOwnerType");
 
-        String responseBody = future.get().getResponseBody(UTF_8);
-        HashMap<String, ArrayList<Object>> userData = parseOwnerInfo(responseBody, userName);
+        HashMap<String, ArrayList<Object>> userData = parseOwnerInfo(future.get(), userName);
 
         ArrayList<Object> ownerInfo = userData.get(userName.toLowerCase());
         return ResultUtil.resultJsonStr(200, objectMapper.valueToTree(ownerInfo), "success");
@@ -65,7 +64,7 @@ public class OpenUbmcQueryDao extends QueryDao {
         sig = sig == null ? "*" : sig;
         String queryJson = String.format(queryConf.getSigInfoQueryStr(), sig);
         ListenableFuture<Response> future = esAsyncHttpUtil.executeElasticSearch(queryConf.getEsBaseUrl(),
-                queryConf.getEsAuth(), queryConf.getSigIndex(), queryJson);
+                queryConf.getEsAuth(), queryConf.getSigIndex(), queryJson, "querySigInfo");
         String responseBody = future.get().getResponseBody(UTF_8);
         JsonNode dataNode = objectMapper.readTree(responseBody);
 
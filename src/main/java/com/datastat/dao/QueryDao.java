@@ -33,14 +33,13 @@ import com.datastat.model.vo.*;
 import com.datastat.model.yaml.*;
 import com.datastat.result.ReturnCode;
 import com.datastat.util.*;
+import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ArrayNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
-import com.mashape.unirest.http.HttpResponse;
-import com.mashape.unirest.http.Unirest;
-import com.maxmind.geoip2.DatabaseReader;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.maxmind.geoip2.model.CityResponse;
 
 import io.netty.util.internal.StringUtil;
@@ -49,12 +48,17 @@ import jakarta.servlet.http.Cookie;
 import jakarta.servlet.http.HttpServletRequest;
 import lombok.SneakyThrows;
 import org.apache.commons.lang3.StringUtils;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.StringEntity;
 import org.asynchttpclient.*;
 import org.elasticsearch.action.bulk.BulkRequest;
 import org.elasticsearch.action.bulk.BulkResponse;
 import org.elasticsearch.action.index.IndexRequest;
 import org.elasticsearch.client.RequestOptions;
 import org.elasticsearch.client.RestHighLevelClient;
+import org.elasticsearch.common.unit.TimeValue;
 import org.elasticsearch.common.xcontent.XContentType;
 import org.elasticsearch.index.query.BoolQueryBuilder;
 import org.elasticsearch.index.query.QueryBuilders;
@@ -68,6 +72,7 @@ import org.json.JSONObject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.context.annotation.Primary;
 import org.springframework.core.env.Environment;
 import org.springframework.http.HttpStatus;
@@ -84,18 +89,18 @@ import java.time.ZoneOffset;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import static java.nio.charset.StandardCharsets.UTF_8;
 
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.io.OutputStreamWriter;
-import java.net.HttpURLConnection;
 import java.net.InetAddress;
-import java.net.URL;
 import java.security.SecureRandom;
 
 @Primary
@@ -116,9 +121,22 @@ public class QueryDao {
     @Autowired
     ObsDao obsDao;
 
+    @Autowired
+    GeoIpDao geoIpDao;
+
+    @Autowired
+    ClaCompanyDao claCompanyDao;
+
     @Autowired
     UserIdDao userIdDao;
 
+    @Autowired
+    RestHighLevelClient restClient;
+
+    @Autowired
+    @Qualifier("privateRestHighLevelClient")
+    RestHighLevelClient privateRestClient;
+
     protected static String esUrl;
     protected EsQueryUtils esQueryUtils;
     protected List<String> robotUsers;
@@ -126,35 +144,37 @@ public class QueryDao {
     private static final Logger logger = LoggerFactory.getLogger(QueryDao.class);
     private static List<Map<String, Object>> giteeWebhookList = new ArrayList<>();
     private static final int EXTRA_ISV = 235;
+    private static volatile ExecutorService queryAllExecutor;
+    private static volatile ExecutorService scrollExecutor;
     @PostConstruct
     public void init() {
         esUrl = String.format("%s://%s:%s/", env.getProperty("es.scheme"), env.getProperty("es.host"), env.getProperty("es.port"));
-        esQueryUtils = new EsQueryUtils();
+        esQueryUtils = new EsQueryUtils(getScrollExecutor(), Integer.parseInt(env.getProperty("es.scroll.slices", "4")),
+                Long.parseLong(env.getProperty("es.scroll.slice.docs", "50000")),
+                TimeValue.timeValueSeconds(Long.parseLong(env.getProperty("es.scroll.keep.alive", "120"))));
         robotUsers = Arrays.asList(Objects.requireNonNull(env.getProperty("skip.robot.user", "robot")).split(","));
         domain_ids = Arrays.asList(Objects.requireNonNull(env.getProperty("qa.domain.ids", "qa.domain.ids")).split(","));
     }
 
     @SneakyThrows
     public String queryContributors(CustomPropertiesConfig queryConf, String item) {
-        ListenableFuture<Response> future = esAsyncHttpUtil.executeSearch(esUrl, queryConf.getGiteeAllIndex(), queryConf.getContributorsQueryStr());
+        ListenableFuture<Response> future = esAsyncHttpUtil.executeSearch(esUrl, queryConf.getGiteeAllIndex(), queryConf.getContributorsQueryStr(), "queryContributors");
         return getBucketCount(future, item);
     }
 
     @SneakyThrows
     public String queryDurationAggFromProjectHostArchPackage(CustomPropertiesConfig queryConf, String item) {
-        ListenableFuture<Response> future = esAsyncHttpUtil.executeSearch(esUrl, queryConf.getDurationAggIndex(), queryConf.getDurationAggQueryStr());
+        ListenableFuture<Response> future = esAsyncHttpUtil.executeSearch(esUrl, queryConf.getDurationAggIndex(), queryConf.getDurationAggQueryStr(), "queryDurationAggFromProjectHostArchPackage");
         return parseDurationAggFromProjectHostArchPackageResult(future, item);
     }
 
     @SneakyThrows
     public String querySigs(CustomPropertiesConfig queryConf, String item) {
-        ListenableFuture<Response> future = esAsyncHttpUtil.executeSearch(esUrl, queryConf.getSigIndex(), queryConf.getSigQueryStr());
+        ListenableFuture<Response> future = esAsyncHttpUtil.executeSearch(esUrl, queryConf.getSigIndex(), queryConf.getSigQueryStr(), "querySigs");
         Response response = future.get();
         int statusCode = response.getStatusCode();
         String statusText = response.getStatusText();
-        String responseBody = response.getResponseBody(UTF_8);
-        JsonNode dataNode = objectMapper.readTree(responseBody);
-        Iterator<JsonNode> buckets = dataNode.get("aggregations").get("2").get("buckets").elements();
+        Iterator<JsonNode> buckets = EsBucketReader.buckets(response, "aggregations.2.buckets");
         long count = 0;
         while (buckets.hasNext()) {
             JsonNode bucket = buckets.next();
@@ -196,20 +216,18 @@ public class QueryDao {
 
     @SneakyThrows
     public String queryCommunityMembers(CustomPropertiesConfig queryConf, String item) {
-        ListenableFuture<Response> future = esAsyncHttpUtil.executeSearch(esUrl, queryConf.getGiteeAllIndex(), queryConf.getCommunityMembersQueryStr());
+        ListenableFuture<Response> future = esAsyncHttpUtil.executeSearch(esUrl, queryConf.getGiteeAllIndex(), queryConf.getCommunityMembersQueryStr(), "queryCommunityMembers");
         return getSumBucketValue(future, item);
     }
 
     @SneakyThrows
     public String queryDownload(CustomPropertiesConfig queryConf, String item) {
-        ListenableFuture<Response> future = esAsyncHttpUtil.executeSearch(esUrl, queryConf.getDownloadIndex(), queryConf.getDownloadQueryStr());
+        ListenableFuture<Response> future = esAsyncHttpUtil.executeSearch(esUrl, queryConf.getDownloadIndex(), queryConf.getDownloadQueryStr(), "queryDownload");
         Response response = future.get();
         int count = 0;
         int statusCode = response.getStatusCode();
         String statusText = response.getStatusText();
-        String responseBody = response.getResponseBody(UTF_8);
-        JsonNode dataNode = objectMapper.readTree(responseBody);
-        Iterator<JsonNode> buckets = dataNode.get("aggregations").get("group_by_field").get("buckets").elements();
+        Iterator<JsonNode> buckets = EsBucketReader.buckets(response, "aggregations.group_by_field.buckets");
         if (buckets.hasNext()) {
             JsonNode bucket = buckets.next();
             count = bucket.get("count").get("value").asInt();
@@ -219,7 +237,7 @@ public class QueryDao {
 
     @SneakyThrows
     public String queryCount(CustomPropertiesConfig queryConf, String item) {
-        ListenableFuture<Response> future = esAsyncHttpUtil.executeCount(esUrl, queryConf.getGiteeAllIndex(), queryConf.getCountQueryStr(item));
+        ListenableFuture<Response> future = esAsyncHttpUtil.executeCount(esUrl, queryConf.getGiteeAllIndex(), queryConf.getCountQueryStr(item), "queryCount");
         Response response = future.get();
         long count;
         int statusCode = response.getStatusCode();
@@ -237,37 +255,44 @@ public class QueryDao {
 
     @SneakyThrows
     public String queryAll(CustomPropertiesConfig queryConf, String community) {
-        Map<String, Object> contributes = queryContributes(queryConf, community);
-        JsonNode contributorsNode = objectMapper.readTree(this.queryContributors(queryConf, "contributors")).get("data").get("contributors");
-        JsonNode usersNode = objectMapper.readTree(this.queryUsers(queryConf, "users")).get("data").get("users");
-        Object users = usersNode == null ? null : usersNode.intValue();
-        JsonNode noticeusersNode = objectMapper.readTree(this.queryNoticeUsers(queryConf, "noticeusers")).get("data").get("noticeusers");
-        Object noticeusers = noticeusersNode == null ? null : noticeusersNode.intValue();
-        JsonNode sigsNode = objectMapper.readTree(this.querySigs(queryConf, "sigs")).get("data").get("sigs");
-        Object sigs = sigsNode == null ? null : sigsNode.intValue();
-        JsonNode modulenumsNode = objectMapper.readTree(this.queryModuleNums(queryConf, "modulenums")).get("data").get("modulenums");
-        Object modulenums = modulenumsNode == null ? null : modulenumsNode.intValue();
-        JsonNode businessOsvNode = objectMapper.readTree(this.queryBusinessOsv(queryConf, "businessOsv")).get("data").get("businessOsv");
-        Object businessOsv = businessOsvNode == null ? null : businessOsvNode.intValue();
-        JsonNode communityMembersNode = objectMapper.readTree(this.queryCommunityMembers(queryConf, "communitymembers")).get("data").get("communitymembers");
-        Object communityMembers = businessOsvNode == null ? null : communityMembersNode.intValue();
-        JsonNode downloadNode = objectMapper.readTree(this.queryDownload(queryConf, "download")).get("data").get("download");
-        Object downloads = downloadNode == null ? null : downloadNode.intValue();
+        // fan out every item at once, all of them bounded by the same deadline
+        long deadline = System.currentTimeMillis() + Long.parseLong(env.getProperty("query.all.item.timeout", "10000"));
+        CompletableFuture<Map<String, Object>> contributesFuture = queryAllTask(() -> queryContributes(queryConf, community), "contributes", deadline);
+        CompletableFuture<Integer> contributorsFuture = queryAllItem(() -> this.queryContributors(queryConf, "contributors"), "contributors", deadline);
+        CompletableFuture<Integer> usersFuture = queryAllItem(() -> this.queryUsers(queryConf, "users"), "users", deadline);
+        CompletableFuture<Integer> noticeusersFuture = queryAllItem(() -> this.queryNoticeUsers(queryConf, "noticeusers"), "noticeusers", deadline);
+        CompletableFuture<Integer> sigsFuture = queryAllItem(() -> this.querySigs(queryConf, "sigs"), "sigs", deadline);
+        CompletableFuture<Integer> modulenumsFuture = queryAllItem(() -> this.queryModuleNums(queryConf, "modulenums"), "modulenums", deadline);
+        CompletableFuture<Integer> businessOsvFuture = queryAllItem(() -> this.queryBusinessOsv(queryConf, "businessOsv"), "businessOsv", deadline);
+        CompletableFuture<Integer> communityMembersFuture = queryAllItem(() -> this.queryCommunityMembers(queryConf, "communitymembers"), "communitymembers", deadline);
+        CompletableFuture<Integer> downloadFuture = queryAllItem(() -> this.queryDownload(queryConf, "download"), "download", deadline);
+        CompletableFuture<Integer> isvFuture = queryAllItem(() -> this.queryIsvCount(queryConf, "isv"), "isv", deadline);
+        boolean partial = Stream.of(contributesFuture, contributorsFuture, usersFuture, noticeusersFuture, sigsFuture,
+                modulenumsFuture, businessOsvFuture, communityMembersFuture, downloadFuture, isvFuture)
+                .map(CompletableFuture::join)
+                .anyMatch(Objects::isNull);
+
+        Map<String, Object> contributes = contributesFuture.join();
+        if (contributes == null) {
+            contributes = new HashMap<>();
+        }
+        Object users = usersFuture.join();
+        Object downloads = downloadFuture.join();
         Object downloadUser = 0;
         if (community.equalsIgnoreCase("mindspore") || community.equalsIgnoreCase("opengauss")) {
             downloadUser = users;
             users = downloads;
         }
-        JsonNode isvNode = objectMapper.readTree(this.queryIsvCount(queryConf, "isv")).get("data").get("isv");
-        Object isv = isvNode == null ? null : isvNode.intValue() + EXTRA_ISV;
+        Integer isvCount = isvFuture.join();
+        Object isv = isvCount == null ? null : isvCount + EXTRA_ISV;
         contributes.put("downloads", downloads);
-        contributes.put("contributors", contributorsNode.intValue());
+        contributes.put("contributors", contributorsFuture.join());
         contributes.put("users", users);
-        contributes.put("noticeusers", noticeusers);
-        contributes.put("sigs", sigs);
-        contributes.put("modulenums", modulenums);
-        contributes.put("businessosv", businessOsv);
-        contributes.put("communitymembers", communityMembers);
+        contributes.put("noticeusers", noticeusersFuture.join());
+        contributes.put("sigs", sigsFuture.join());
+        contributes.put("modulenums", modulenumsFuture.join());
+        contributes.put("businessosv", businessOsvFuture.join());
+        contributes.put("communitymembers", communityMembersFuture.join());
         contributes.put("downloaduser", downloadUser);
         contributes.put("isv", isv);
 
@@ -276,12 +301,102 @@ public class QueryDao {
         resMap.put("data", contributes);
         resMap.put("msg", "success");
         resMap.put("update_at", (new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ssXXX")).format(new Date()));
+        if (partial) {
+            resMap.put("partial", true);
+        }
         return objectMapper.valueToTree(resMap).toString();
     }
 
+    /**
+     * Run one queryAll item asynchronously, yielding null when it fails or misses the deadline.
+     *
+     * @param query the item query returning a result json string.
+     * @param item the item name under data.
+     * @param deadline epoch milliseconds the item must finish by.
+     * @return future of the item value.
+     */
+    private CompletableFuture<Integer> queryAllItem(Supplier<String> query, String item, long deadline) {
+        return queryAllTask(() -> {
+            try {
+                JsonNode node = objectMapper.readTree(query.get()).get("data").get(item);
+                return node == null ? null : Integer.valueOf(node.intValue());
+            } catch (JsonProcessingException e) {
+                throw new IllegalStateException(e);
+            }
+        }, item, deadline);
+    }
+
+    /**
+     * Run one queryAll task on the shared executor, yielding null when it fails or misses the deadline.
+     * Its es requests time out at the deadline, and a task still running then is interrupted so
+     * that it does not hold an executor thread past it.
+     *
+     * @param query the task.
+     * @param item the item name used in logs.
+     * @param deadline epoch milliseconds the task must finish by.
+     * @return future of the task value.
+     */
+    private <T> CompletableFuture<T> queryAllTask(Supplier<T> query, String item, long deadline) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        Future<?> task = getQueryAllExecutor().submit(() -> {
+            try {
+                result.complete(EsAsyncHttpUtil.withDeadline(deadline, query));
+            } catch (Exception e) {
+                if (!result.isDone()) {
+                    logger.error("queryAll item {} exception", item, e);
+                }
+                result.complete(null);
+            }
+        });
+        long remaining = Math.max(0L, deadline - System.currentTimeMillis());
+        CompletableFuture.delayedExecutor(remaining, TimeUnit.MILLISECONDS).execute(() -> {
+            if (result.complete(null)) {
+                logger.warn("queryAll item {} missed its deadline", item);
+                task.cancel(true);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Get the bounded executor shared by every community dao for queryAll.
+     *
+     * @return ExecutorService.
+     */
+    private ExecutorService getQueryAllExecutor() {
+        if (queryAllExecutor == null) {
+            synchronized (QueryDao.class) {
+                if (queryAllExecutor == null) {
+                    int threads = Integer.parseInt(env.getProperty("query.all.threads", "16"));
+                    queryAllExecutor = Executors.newFixedThreadPool(threads,
+                            new ThreadFactoryBuilder().setNameFormat("query-all-%d").setDaemon(true).build());
+                }
+            }
+        }
+        return queryAllExecutor;
+    }
+
+    /**
+     * Get the bounded executor shared by every community dao for the slices of es scrolls.
+     *
+     * @return ExecutorService.
+     */
+    private ExecutorService getScrollExecutor() {
+        if (scrollExecutor == null) {
+            synchronized (QueryDao.class) {
+                if (scrollExecutor == null) {
+                    int threads = Integer.parseInt(env.getProperty("es.scroll.threads", "8"));
+                    scrollExecutor = Executors.newFixedThreadPool(threads,
+                            new ThreadFactoryBuilder().setNameFormat("es-scroll-%d").setDaemon(true).build());
+                }
+            }
+        }
+        return scrollExecutor;
+    }
+
     @SneakyThrows
     public String queryBlueZoneContributes(CustomPropertiesConfig queryConf, BlueZoneContributeVo body, String item) {
-        ListenableFuture<Response> future = esAsyncHttpUtil.executeSearch(esUrl, queryConf.getBlueZoneUserContributesIndex(), getBlueZoneContributesQuery(body));
+        ListenableFuture<Response> future = esAsyncHttpUtil.executeSearch(esUrl, queryConf.getBlueZoneUserContributesIndex(), getBlueZoneContributesQuery(body), "queryBlueZoneContributes");
         return getBlueZoneContributesRes(future, item);
     }
 
@@ -334,7 +449,6 @@ public class QueryDao {
 
         if (request.requests().size() != 0)
             restHighLevelClient.bulk(request, RequestOptions.DEFAULT);
-        restHighLevelClient.close();
 
         String res = ResultUtil.resultJsonStr(200, item, 0, "there`s no user");
         if (users.size() > 0) res = ResultUtil.resultJsonStr(200, item + "_count", users.size(), "update success");
@@ -344,7 +458,7 @@ public class QueryDao {
 
     @SneakyThrows
     public String queryOrgStarAndFork(CustomPropertiesConfig queryConf, String community, String item) {
-        ListenableFuture<Response> future = esAsyncHttpUtil.executeSearch(esUrl, queryConf.getStarForkIndex(), queryConf.getStarForkQueryStr());
+        ListenableFuture<Response> future = esAsyncHttpUtil.executeSearch(esUrl, queryConf.getStarForkIndex(), queryConf.getStarForkQueryStr(), "queryOrgStarAndFork");
         return getOrgStarAndForkRes(future, item, community);
     }
 
@@ -387,7 +501,6 @@ public class QueryDao {
             request.add(new IndexRequest("new_year_report", "_doc", uuid + nowStr).source(dataMap));
             if (request.requests().size() != 0)
                 restHighLevelClient.bulk(request, RequestOptions.DEFAULT);
-            restHighLevelClient.close();
     
             resMap.put("update_at", (new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ssXXX")).format(new Date()));
             return objectMapper.valueToTree(resMap).toString();
@@ -401,10 +514,8 @@ public class QueryDao {
     public String queryNewYearMonthCount(CustomPropertiesConfig queryConf, String oauth2_proxy) {
         String user = getUserFromCookie(queryConf, oauth2_proxy, "gitee");
         String queryJson = String.format(queryConf.getMonthCountQueryStr(), user);
-        ListenableFuture<Response> future = esAsyncHttpUtil.executeSearch(esUrl, queryConf.getGiteeAllIndex(), queryJson);
-        String responseBody = future.get().getResponseBody(UTF_8);
-        JsonNode dataNode = objectMapper.readTree(responseBody);
-        Iterator<JsonNode> buckets = dataNode.get("aggregations").get("group_field").get("buckets").elements();
+        ListenableFuture<Response> future = esAsyncHttpUtil.executeSearch(esUrl, queryConf.getGiteeAllIndex(), queryJson, "queryNewYearMonthCount");
+        Iterator<JsonNode> buckets = EsBucketReader.groupFieldBuckets(future.get());
 
         HashMap<String, Object> dataMap = new HashMap<>();
         long monthTime;
@@ -435,9 +546,9 @@ public class QueryDao {
         } else {
             throw new RuntimeException("error platform");
         }
-        HttpResponse<String> response = Unirest.get(userInfoUrl)
-            .header("cookie", cookie_oauth2_proxy)
-            .asString();
+        HttpGet httpGet = new HttpGet(userInfoUrl);
+        httpGet.addHeader("cookie", cookie_oauth2_proxy);
+        HttpClientUtils.HttpResult response = HttpClientUtils.execute(httpGet);
 
         if (response.getStatus() != 200) {
             logger.error("user auth execption - {}", response.getBody());
@@ -462,6 +573,42 @@ public class QueryDao {
         return result;
     }
 
+    /**
+     * Stream all cve details to the writer, resuming after lastCursor if given.
+     *
+     * @param queryConf community config.
+     * @param lastCursor cursor of the last received record, null to start from the beginning.
+     * @param writer ndjson or csv writer.
+     * @return number of exported documents.
+     * @throws IOException if a search fails or the output cannot be written.
+     */
+    public long exportCveDetails(CustomPropertiesConfig queryConf, String lastCursor, EsExportWriter writer) throws IOException {
+        int pageSize = Integer.parseInt(env.getProperty("export.page.size", "1000"));
+        return esQueryUtils.esExport(getRestHighLevelClient(), queryConf.getCveDetailsIndex(), QueryBuilders.matchAllQuery(),
+                pageSize, lastCursor, writer);
+    }
+
+    /**
+     * Stream all bug questionnaires to the writer with masked emails, resuming after lastCursor if given.
+     *
+     * @param queryConf community config.
+     * @param lastCursor cursor of the last received record, null to start from the beginning.
+     * @param writer ndjson or csv writer.
+     * @return number of exported documents.
+     * @throws IOException if a search fails or the output cannot be written.
+     */
+    public long exportBugQuestionnaire(CustomPropertiesConfig queryConf, String lastCursor, EsExportWriter writer) throws IOException {
+        int pageSize = Integer.parseInt(env.getProperty("export.page.size", "1000"));
+        return esQueryUtils.esExport(getRestHighLevelClient(), queryConf.getBugQuestionnaireIndex(), QueryBuilders.matchAllQuery(),
+                pageSize, lastCursor, (source, cursor) -> {
+                    Object email = source.get("email");
+                    if (email != null) {
+                        source.put("email", StringDesensitizationUtils.maskEmail(email.toString()));
+                    }
+                    writer.accept(source, cursor);
+                });
+    }
+
     public String putBugQuestionnaire(CustomPropertiesConfig queryConf, String community, String item, String lang, BugQuestionnaireVo bugQuestionnaireVo) {
         ArrayList<String> validationMesseages = bugQuestionnaireVo.checkoutFieldValidate(bugQuestionnaireVo, community, lang);
         if (validationMesseages.size() != 0) {
@@ -485,7 +632,6 @@ public class QueryDao {
             request.add(new IndexRequest(index, "_doc", uuid + nowStr).source(bugQuestionnaireMap));
             if (request.requests().size() != 0)
                 restHighLevelClient.bulk(request, RequestOptions.DEFAULT);
-            restHighLevelClient.close();
             return ResultUtil.resultJsonStr(200, objectMapper.valueToTree("success"), "success");
         } catch (Exception e) {
             logger.error("exception", e);
@@ -496,7 +642,7 @@ public class QueryDao {
     @SneakyThrows
     public String queryObsDetails(CustomPropertiesConfig queryConf, String branch) {
         String format = String.format(queryConf.getObsDetailsQueryStr(), branch);
-        ListenableFuture<Response> future = esAsyncHttpUtil.executeSearch(esUrl, queryConf.getObsDetailsIndex(), format);
+        ListenableFuture<Response> future = esAsyncHttpUtil.executeSearch(esUrl, queryConf.getObsDetailsIndex(), format, "queryObsDetails");
         ArrayList<JsonNode> obsDetails = getObsDetails(future);
         return ResultUtil.resultJsonStr(200, objectMapper.valueToTree(obsDetails), "ok");
     }
@@ -509,7 +655,7 @@ public class QueryDao {
 
     @SneakyThrows
     public String querySigDetails(CustomPropertiesConfig queryConf, SigDetailsVo body) {
-        ListenableFuture<Response> future = esAsyncHttpUtil.executeSearch(esUrl, queryConf.getSigDetailsIndex(), queryConf.getSigDetailsQueryStr());
+        ListenableFuture<Response> future = esAsyncHttpUtil.executeSearch(esUrl, queryConf.getSigDetailsIndex(), queryConf.getSigDetailsQueryStr(), "querySigDetails");
         ArrayList<JsonNode> dataList = getSigDetails(future, queryConf, body);
         return ResultUtil.resultJsonStr(200, objectMapper.valueToTree(dataList), "ok");
     }
@@ -521,16 +667,15 @@ public class QueryDao {
         if (contributeType.equals("feature")) {
             return getVersionFeature(queryConf, community, version, "company");
         }
-        List<String> claCompanies = queryClaCompany(queryConf.getClaCorporationIndex());
+        Set<String> claCompanies = queryClaCompany(queryConf);
         List<Map<String, String>> companies = getCompanyNameCnEn(env.getProperty("company.name.yaml"), env.getProperty("company.name.local.yaml"));
         Map<String, String> companyNameCnEn = companies.get(0);
         Map<String, String> companyNameAlCn = companies.get(1);
 
         String contributesQueryStr = queryConf.getCompanyContributorsQuery(queryConf, community, contributeType, timeRange, version, repo, sig);
         String index = (version != null && "pr".equalsIgnoreCase(contributeType)) ? queryConf.getGiteeVersionIndex() : queryConf.getGiteeAllIndex();
-        ListenableFuture<Response> future = esAsyncHttpUtil.executeSearch(esUrl, index, contributesQueryStr);
-        JsonNode dataNode = objectMapper.readTree(future.get().getResponseBody(UTF_8));
-        Iterator<JsonNode> buckets = dataNode.get("aggregations").get("group_field").get("buckets").elements();
+        ListenableFuture<Response> future = esAsyncHttpUtil.executeSearch(esUrl, index, contributesQueryStr, "queryCompanyContributors");
+        Iterator<JsonNode> buckets = EsBucketReader.groupFieldBuckets(future.get());
 
         ArrayList<JsonNode> dataList = new ArrayList<>();
         HashMap<String, Object> dataMap = new HashMap<>();
@@ -570,9 +715,8 @@ public class QueryDao {
     public String queryUserContributors(CustomPropertiesConfig queryConf, String community, String contributeType, String timeRange, String repo, String sig) {
         if (contributeType.equalsIgnoreCase("comment")) return queryUserCommentContributors(queryConf, community, contributeType, timeRange, repo, sig);
         String contributesQueryStr = queryConf.getAggCountQueryStr(queryConf, "gitee_id", contributeType, timeRange, community, repo, sig);
-        ListenableFuture<Response> future = esAsyncHttpUtil.executeSearch(esUrl, queryConf.getGiteeAllIndex(), contributesQueryStr);
-        JsonNode dataNode = objectMapper.readTree(future.get().getResponseBody(UTF_8));
-        Iterator<JsonNode> buckets = dataNode.get("aggregations").get("group_field").get("buckets").elements();
+        ListenableFuture<Response> future = esAsyncHttpUtil.executeSearch(esUrl, queryConf.getGiteeAllIndex(), contributesQueryStr, "queryUserContributors");
+        Iterator<JsonNode> buckets = EsBucketReader.groupFieldBuckets(future.get());
 
         ArrayList<JsonNode> dataList = new ArrayList<>();
         HashMap<String, Object> dataMap = new HashMap<>();
@@ -594,9 +738,8 @@ public class QueryDao {
     @SneakyThrows
     public String queryUserCommentContributors(CustomPropertiesConfig queryConf, String community, String contributeType, String timeRange, String repo, String sig) {
         String contributesQueryStr = queryConf.getAggCommentQueryStr(queryConf, "gitee_id", timeRange, repo);
-        ListenableFuture<Response> future = esAsyncHttpUtil.executeSearch(esUrl, queryConf.getGiteeAllIndex(), contributesQueryStr);
-        JsonNode dataNode = objectMapper.readTree(future.get().getResponseBody(UTF_8));
-        Iterator<JsonNode> buckets = dataNode.get("aggregations").get("group_field").get("buckets").elements();
+        ListenableFuture<Response> future = esAsyncHttpUtil.executeSearch(esUrl, queryConf.getGiteeAllIndex(), contributesQueryStr, "queryUserCommentContributors");
+        Iterator<JsonNode> buckets = EsBucketReader.groupFieldBuckets(future.get());
 
         ArrayList<JsonNode> dataList = new ArrayList<>();
         HashMap<String, Object> dataMap = new HashMap<>();
@@ -624,7 +767,7 @@ public class QueryDao {
         startDate = StringUtils.isBlank(startDate) ? "2020-01-01" : startDate;
         endDate = StringUtils.isBlank(endDate) ? "now" : endDate;
         String queryJson = String.format(queryConf.getIssueScoreQueryStr(), startDate, endDate);
-        ListenableFuture<Response> future = esAsyncHttpUtil.executeSearch(esUrl, queryConf.getIssueScoreIndex(), queryJson);
+        ListenableFuture<Response> future = esAsyncHttpUtil.executeSearch(esUrl, queryConf.getIssueScoreIndex(), queryJson, "queryIssueScore");
         return parseIssueScoreFutureRes(future);
     }
 
@@ -733,10 +876,8 @@ public class QueryDao {
 
     @SneakyThrows
     public String querySigName(CustomPropertiesConfig queryConf, String community, String lang) {
-        ListenableFuture<Response> future = esAsyncHttpUtil.executeSearch(esUrl, queryConf.getSigIndex(), queryConf.getSigNameQueryStr());
-        String responseBody = future.get().getResponseBody(UTF_8);
-        JsonNode dataNode = objectMapper.readTree(responseBody);
-        Iterator<JsonNode> buckets = dataNode.get("aggregations").get("sig_names").get("buckets").elements();
+        ListenableFuture<Response> future = esAsyncHttpUtil.executeSearch(esUrl, queryConf.getSigIndex(), queryConf.getSigNameQueryStr(), "querySigName");
+        Iterator<JsonNode> buckets = EsBucketReader.buckets(future.get(), "aggregations.sig_names.buckets");
         HashMap<String, Object> dataMap = new HashMap<>();
         ArrayList<String> sigList = new ArrayList<>();
         while (buckets.hasNext()) {
@@ -753,7 +894,7 @@ public class QueryDao {
     public String querySigInfo(CustomPropertiesConfig queryConf, String sig) {
         sig = sig == null ? "*" : sig;
         String queryJson = String.format(queryConf.getSigInfoQueryStr(), sig);
-        ListenableFuture<Response> future = esAsyncHttpUtil.executeSearch(esUrl, queryConf.getSigIndex(), queryJson);
+        ListenableFuture<Response> future = esAsyncHttpUtil.executeSearch(esUrl, queryConf.getSigIndex(), queryJson, "querySigInfo");
         String responseBody = future.get().getResponseBody(UTF_8);
         JsonNode dataNode = objectMapper.readTree(responseBody);
 
@@ -771,11 +912,9 @@ public class QueryDao {
     public String querySigRepo(CustomPropertiesConfig queryConf, String sig) {
         sig = sig == null ? "*" : sig;
         String queryJson = String.format(queryConf.getSigRepoQueryStr(), sig);
-        ListenableFuture<Response> future = esAsyncHttpUtil.executeSearch(esUrl, queryConf.getSigIndex(), queryJson);
-        String responseBody = future.get().getResponseBody(UTF_8);
-        JsonNode dataNode = objectMapper.readTree(responseBody);
+        ListenableFuture<Response> future = esAsyncHttpUtil.executeSearch(esUrl, queryConf.getSigIndex(), queryJson, "querySigRepo");
 
-        Iterator<JsonNode> buckets = dataNode.get("aggregations").get("group_field").get("buckets").elements();
+        Iterator<JsonNode> buckets = EsBucketReader.groupFieldBuckets(future.get());
         ArrayList<String> repoList = new ArrayList<>();
         while (buckets.hasNext()) {
             JsonNode bucket = buckets.next();
@@ -788,7 +927,7 @@ public class QueryDao {
 
     @SneakyThrows
     public String queryCompanyName(CustomPropertiesConfig queryConf, String community) {
-        List<String> companyList = queryClaCompany(queryConf.getClaCorporationIndex());
+        Set<String> companyList = queryClaCompany(queryConf);
         List<Map<String, String>> companies = getCompanyNameCnEn(env.getProperty("company.name.yaml"), env.getProperty("company.name.local.yaml"));
         Map<String, String> companyNameCnEn = companies.get(0);
         Map<String, String> companyNameAlCn = companies.get(1);
@@ -841,10 +980,8 @@ public class QueryDao {
         if (queryStr == null)
             return ResultUtil.resultJsonStr(400, contributeType, ReturnCode.RC400.getMessage(), ReturnCode.RC400.getMessage());
 
-        ListenableFuture<Response> future = esAsyncHttpUtil.executeSearch(esUrl, index, queryStr);
-        String responseBody = future.get().getResponseBody(UTF_8);
-        JsonNode dataNode = objectMapper.readTree(responseBody);
-        Iterator<JsonNode> buckets = dataNode.get("aggregations").get("group_field").get("buckets").elements();
+        ListenableFuture<Response> future = esAsyncHttpUtil.executeSearch(esUrl, index, queryStr, "queryGroupUserContributors");
+        Iterator<JsonNode> buckets = EsBucketReader.groupFieldBuckets(future.get());
 
         ArrayList<JsonNode> dataList = new ArrayList<>();
         ArrayList<String> userList = new ArrayList<>();
@@ -905,7 +1042,7 @@ public class QueryDao {
         ArrayList<HashMap<String, Object>> tempList = new ArrayList<>();
         for (String query : queryJson) {
             String queryStr = queryConf.getAggGroupSigCountQueryStr(query, contributeType, timeRange, group, field);
-            tempList.addAll(getData(queryDao, queryConf, index, queryStr));
+            tempList.addAll(getData("queryGroupSigContribute", queryDao, queryConf, index, queryStr));
         }
 
         HashMap<String, Long> dataMap = MapCombine(tempList);
@@ -940,7 +1077,7 @@ public class QueryDao {
         String companyStr = getCompanyNames(company);
 
         String[] queryStrs = queryConf.getAggCompanyGiteeQueryStr(queryConf.getCompanyUsers(), timeRange, companyStr);
-        ListenableFuture<Response> f = esAsyncHttpUtil.executeSearch(esUrl, queryConf.getGiteeAllIndex(), queryStrs[0]);
+        ListenableFuture<Response> f = esAsyncHttpUtil.executeSearch(esUrl, queryConf.getGiteeAllIndex(), queryStrs[0], "queryCompanySigDetails");
         JsonNode dataNode = objectMapper.readTree(f.get().getResponseBody(UTF_8));
         double userTotal = dataNode.get("aggregations").get("group_field").get("value").asDouble();
 
@@ -949,7 +1086,7 @@ public class QueryDao {
         Iterator<String> sigList = sigUserMetrics.keySet().iterator();
 
         ArrayList<HashMap<String, Object>> resList = new ArrayList<>();
-        HashMap<String, HashMap<String, String>> sigFeatures = getCommunityFeature(queryConf);
+        Map<String, Map<String, String>> sigFeatures = getCommunityFeature(queryConf);
         while (sigList.hasNext()) {
             String sig = sigList.next();
             HashMap<String, Object> item = getSigFeature(sigFeatures, sig);
@@ -964,8 +1101,8 @@ public class QueryDao {
         return ResultUtil.resultJsonStr(200, objectMapper.valueToTree(resList), "ok");
     }
 
-    public HashMap<String, Object> getSigFeature(HashMap<String, HashMap<String, String>> sigFeatures, String sig) {
-        HashMap<String, String> sigInfo = sigFeatures.get(sig);
+    public HashMap<String, Object> getSigFeature(Map<String, Map<String, String>> sigFeatures, String sig) {
+        Map<String, String> sigInfo = sigFeatures.get(sig);
         HashMap<String, Object> res = new HashMap<>();
         res.put("sig", sig);
         if (sigInfo != null) {
@@ -984,7 +1121,7 @@ public class QueryDao {
     @SneakyThrows
     public HashMap<String, Integer> getCompanySigUsers(CustomPropertiesConfig queryConf, String companyStr, String timeRange) {
         String queryStr = queryConf.getQueryStrWithTimeRange(queryConf.getCompanySigUserQueryStr(), timeRange, companyStr);
-        HashMap<String, Integer> sigMap = commonCompanySigContribute(queryConf.getGiteeAllIndex(), queryStr);
+        HashMap<String, Integer> sigMap = commonCompanySigContribute("getCompanySigUsers", queryConf.getGiteeAllIndex(), queryStr);
         return sigMap;
     }
     
@@ -993,17 +1130,15 @@ public class QueryDao {
             String timeRange, String contributeType) {
         String queryStr = queryConf.getAggCompanySigCountQueryStr(queryConf.getCompanyContributeQueryStr(), companyStr, timeRange,
                 contributeType);
-        HashMap<String, Integer> sigMap = commonCompanySigContribute(queryConf.getGiteeAllIndex(), queryStr);
+        HashMap<String, Integer> sigMap = commonCompanySigContribute("getCompanySigContribute", queryConf.getGiteeAllIndex(), queryStr);
         return sigMap;
     }
 
     @SneakyThrows
-    protected HashMap<String, Integer> commonCompanySigContribute(String giteeIndex, String queryStr) {
+    protected HashMap<String, Integer> commonCompanySigContribute(String name, String giteeIndex, String queryStr) {
         HashMap<String, Integer> sigMap = new HashMap<>();
-        ListenableFuture<Response> future = esAsyncHttpUtil.executeSearch(esUrl, giteeIndex, queryStr);
-        String responseBody = future.get().getResponseBody(UTF_8);
-        JsonNode dataNode = objectMapper.readTree(responseBody);
-        Iterator<JsonNode> buckets = dataNode.get("aggregations").get("group_field").get("buckets").elements();
+        ListenableFuture<Response> future = esAsyncHttpUtil.executeSearch(esUrl, giteeIndex, queryStr, name);
+        Iterator<JsonNode> buckets = EsBucketReader.groupFieldBuckets(future.get());
         int count = 0;
         while (buckets.hasNext()) {
             JsonNode bucket = buckets.next();
@@ -1022,7 +1157,7 @@ public class QueryDao {
 
         ArrayList<Integer> companyUsersList = new ArrayList<>();
         for (int i = 0; i < queryStrs.length; i++) {
-            ListenableFuture<Response> f = esAsyncHttpUtil.executeSearch(esUrl, index, queryStrs[i]);
+            ListenableFuture<Response> f = esAsyncHttpUtil.executeSearch(esUrl, index, queryStrs[i], "queryCompanyUsers");
             String responseBody = f.get().getResponseBody(UTF_8);
             JsonNode dataNode = objectMapper.readTree(responseBody);
             int value = dataNode.get("aggregations").get("group_field").get("value").asInt();
@@ -1038,7 +1173,7 @@ public class QueryDao {
 
     @SneakyThrows
     public String queryCommunityRepos(CustomPropertiesConfig queryConf) {
-        ListenableFuture<Response> future = esAsyncHttpUtil.executeSearch(esUrl, queryConf.getGiteeAllIndex(), queryConf.getCommunityRepoQueryStr());
+        ListenableFuture<Response> future = esAsyncHttpUtil.executeSearch(esUrl, queryConf.getGiteeAllIndex(), queryConf.getCommunityRepoQueryStr(), "queryCommunityRepos");
         JsonNode dataNode = objectMapper.readTree(future.get().getResponseBody(UTF_8));
 
         ArrayList<String> dataList = new ArrayList<>();
@@ -1056,16 +1191,16 @@ public class QueryDao {
         String index = type.equals("radar") ? queryConf.getSigRadarScoreIndex() : queryConf.getSigScoreIndex();
         String queryStr = queryConf.getQueryStrWithTimeRange(queryConf.getSigScoreQueryStr(), timeRange, sig);
 
-        ListenableFuture<Response> future = esAsyncHttpUtil.executeSearch(esUrl, index, queryStr);
+        ListenableFuture<Response> future = esAsyncHttpUtil.executeSearch(esUrl, index, queryStr, "querySigScore");
         String responseBody = future.get().getResponseBody(UTF_8);
         JsonNode dataNode = objectMapper.readTree(responseBody);
         Iterator<JsonNode> buckets = dataNode.get("hits").get("hits").elements();
         ArrayList<HashMap<String, Object>> sigList = new ArrayList<>();
-        HashMap<String, HashMap<String, String>> sigFeatures = getCommunityFeature(queryConf);
+        Map<String, Map<String, String>> sigFeatures = getCommunityFeature(queryConf);
         while (buckets.hasNext()) {
             JsonNode bucket = buckets.next().get("_source");
             HashMap<String, Object> data = objectMapper.convertValue(bucket, HashMap.class);
-            HashMap<String, String> sigInfo = sigFeatures.get(sig);
+            Map<String, String> sigInfo = sigFeatures.get(sig);
             String feature = "";
             String group = "";
             String enFeature = "";
@@ -1091,7 +1226,7 @@ public class QueryDao {
         c.setTime(new Date());
         c.add(Calendar.DATE, -1);
         String queryStr = String.format(queryConf.getAllSigScoreQueryStr(), c.getTimeInMillis());
-        ListenableFuture<Response> future = esAsyncHttpUtil.executeSearch(esUrl, queryConf.getSigScoreIndex(), queryStr);
+        ListenableFuture<Response> future = esAsyncHttpUtil.executeSearch(esUrl, queryConf.getSigScoreIndex(), queryStr, "querySigScoreAll");
         String responseBody = future.get().getResponseBody(UTF_8);
         JsonNode dataNode = objectMapper.readTree(responseBody);
 
@@ -1099,19 +1234,19 @@ public class QueryDao {
         if (!buckets.hasNext()) {
             c.add(Calendar.DATE, -1);
             queryStr = String.format(queryConf.getAllSigScoreQueryStr(), c.getTimeInMillis());
-            future = esAsyncHttpUtil.executeSearch(esUrl, queryConf.getSigScoreIndex(), queryStr);
+            future = esAsyncHttpUtil.executeSearch(esUrl, queryConf.getSigScoreIndex(), queryStr, "querySigScoreAll");
             responseBody = future.get().getResponseBody(UTF_8);
             dataNode = objectMapper.readTree(responseBody);
             buckets = dataNode.get("hits").get("hits").elements();
         }
 
         ArrayList<HashMap<String, Object>> sigList = new ArrayList<>();
-        HashMap<String, HashMap<String, String>> sigFeatures = getCommunityFeature(queryConf);
+        Map<String, Map<String, String>> sigFeatures = getCommunityFeature(queryConf);
         while (buckets.hasNext()) {
             JsonNode bucket = buckets.next().get("_source");
             HashMap<String, Object> data = objectMapper.convertValue(bucket, HashMap.class);
             String sig = bucket.get("sig_names").asText();
-            HashMap<String, String> sigInfo = sigFeatures.get(sig);
+            Map<String, String> sigInfo = sigFeatures.get(sig);
             String feature = "";
             String group = "";
             String en_feature = "";
@@ -1134,16 +1269,14 @@ public class QueryDao {
 
     @SneakyThrows
     public String queryCompanySigs(CustomPropertiesConfig queryConf, String timeRange) {
-        List<String> claCompanies = queryClaCompany(queryConf.getClaCorporationIndex());
+        Set<String> claCompanies = queryClaCompany(queryConf);
         List<Map<String, String>> companies = getCompanyNameCnEn(env.getProperty("company.name.yaml"), env.getProperty("company.name.local.yaml"));
         Map<String, String> companyNameCnEn = companies.get(0);
         Map<String, String> companyNameAlCn = companies.get(1);
 
         String queryStr = queryConf.getQueryStrWithTimeRange(queryConf.getAllCompanySigQueryStr(), timeRange);
-        ListenableFuture<Response> future = esAsyncHttpUtil.executeSearch(esUrl, queryConf.getGiteeAllIndex(), queryStr);
-        String responseBody = future.get().getResponseBody(UTF_8);
-        JsonNode dataNode = objectMapper.readTree(responseBody);
-        Iterator<JsonNode> buckets = dataNode.get("aggregations").get("group_field").get("buckets").elements();
+        ListenableFuture<Response> future = esAsyncHttpUtil.executeSearch(esUrl, queryConf.getGiteeAllIndex(), queryStr, "queryCompanySigs");
+        Iterator<JsonNode> buckets = EsBucketReader.groupFieldBuckets(future.get());
 
         ArrayList<JsonNode> dataList = new ArrayList<>();
         while (buckets.hasNext()) {
@@ -1190,10 +1323,8 @@ public class QueryDao {
         while (users.hasNext()) {
             String user = users.next();
             String queryStr = String.format(queryJson, user);
-            ListenableFuture<Response> future = esAsyncHttpUtil.executeSearch(esUrl, index, queryStr);
-            String responseBody = future.get().getResponseBody(UTF_8);
-            JsonNode dataNode = objectMapper.readTree(responseBody);
-            Iterator<JsonNode> buckets = dataNode.get("aggregations").get("2").get("buckets").elements();
+            ListenableFuture<Response> future = esAsyncHttpUtil.executeSearch(esUrl, index, queryStr, "querySigsOfTCOwners");
+            Iterator<JsonNode> buckets = EsBucketReader.buckets(future.get(), "aggregations.2.buckets");
             ArrayList<String> sigList = new ArrayList<>();
             while (buckets.hasNext()) {
                 JsonNode bucket = buckets.next();
@@ -1225,9 +1356,8 @@ public class QueryDao {
     public String queryUserOwnerType(CustomPropertiesConfig queryConf, String userName) {
         String index = queryConf.getSigIndex();
         String queryStr = queryConf.getAllUserOwnerTypeQueryStr();
-        ListenableFuture<Response> future = esAsyncHttpUtil.executeSearch(esUrl, index, queryStr);
-        String responseBody = future.get().getResponseBody(UTF_8);
-        HashMap<String, ArrayList<Object>> userData = parseOwnerInfo(responseBody, userName);
+        ListenableFuture<Response> future = esAsyncHttpUtil.executeSearch(esUrl, index, queryStr, "queryUserOwnerType");
+        HashMap<String, ArrayList<Object>> userData = parseOwnerInfo(future.get(), userName);
         ArrayList<Object> ownerInfo = userData.get(userName.toLowerCase());
         return ResultUtil.resultJsonStr(200, objectMapper.valueToTree(ownerInfo), "success");
     }
@@ -1235,14 +1365,13 @@ public class QueryDao {
     /**
      * parse owner info based on username.
      *
-     * @param responseBody response string based on username.
+     * @param response es response based on username.
      * @param userName user name.
      * @return Response string.
      */
     @SneakyThrows
-    public HashMap<String, ArrayList<Object>> parseOwnerInfo(String responseBody, String userName) {
-        JsonNode dataNode = objectMapper.readTree(responseBody);
-        Iterator<JsonNode> buckets = dataNode.get("aggregations").get("group_field").get("buckets").elements();
+    public HashMap<String, ArrayList<Object>> parseOwnerInfo(Response response, String userName) {
+        Iterator<JsonNode> buckets = EsBucketReader.groupFieldBuckets(response);
         HashMap<String, ArrayList<Object>> userData = new HashMap<>();
         while (buckets.hasNext()) {
             JsonNode bucket = buckets.next();
@@ -1312,24 +1441,15 @@ public class QueryDao {
             String id = user.get("id").toString() + "_" + user.get("email").toString() + "_" + user.get("gitee_id");
             request.add(new IndexRequest(queryConf.getGiteeEmailIndex(), "_doc", id).source(user));
         }
-        String scheme = env.getProperty("es.private.scheme");
-        String host = env.getProperty("es.private.host");
-        int port = Integer.parseInt(env.getProperty("es.private.port", "9200"));
-        String esUser = env.getProperty("es.private.user");
-        String password = env.getProperty("es.private.password");
-        try (RestHighLevelClient restHighLevelClient = RestHighLevelClientUtil.create(Collections.singletonList(host), port, scheme, esUser, password)) {
-            restHighLevelClient.bulk(request, RequestOptions.DEFAULT);
-        }
+        privateRestClient.bulk(request, RequestOptions.DEFAULT);
     }
 
     @SneakyThrows
     public String queryUserLists(CustomPropertiesConfig queryConf, String community, String group, String name) {
         String queryStr = queryConf.getAggUserListQueryStr(queryConf.getUserListQueryStr(), group, name);
-        ListenableFuture<Response> future = esAsyncHttpUtil.executeSearch(esUrl, queryConf.getGiteeAllIndex(), queryStr);
+        ListenableFuture<Response> future = esAsyncHttpUtil.executeSearch(esUrl, queryConf.getGiteeAllIndex(), queryStr, "queryUserLists");
 
-        String responseBody = future.get().getResponseBody(UTF_8);
-        JsonNode dataNode = objectMapper.readTree(responseBody);
-        Iterator<JsonNode> buckets = dataNode.get("aggregations").get("group_field").get("buckets").elements();
+        Iterator<JsonNode> buckets = EsBucketReader.groupFieldBuckets(future.get());
 
         ArrayList<String> dataMap = new ArrayList<>();
         while (buckets.hasNext()) {
@@ -1348,11 +1468,9 @@ public class QueryDao {
     @SneakyThrows
     public String querySigRepoCommitters(CustomPropertiesConfig queryConf, String sig) {
         String queryStr = String.format(queryConf.getSigRepoCommittersQueryStr(), sig);
-        ListenableFuture<Response> future = esAsyncHttpUtil.executeSearch(esUrl, queryConf.getSigIndex(), queryStr);
+        ListenableFuture<Response> future = esAsyncHttpUtil.executeSearch(esUrl, queryConf.getSigIndex(), queryStr, "querySigRepoCommitters");
 
-        String responseBody = future.get().getResponseBody(UTF_8);
-        JsonNode dataNode = objectMapper.readTree(responseBody);
-        Iterator<JsonNode> buckets = dataNode.get("aggregations").get("group_field").get("buckets").elements();
+        Iterator<JsonNode> buckets = EsBucketReader.groupFieldBuckets(future.get());
 
         ArrayList<Object> dataList = new ArrayList<>();
         ArrayList<String> committerList = new ArrayList<>();
@@ -1445,10 +1563,8 @@ public class QueryDao {
         if (StringUtils.isBlank(index)) return company;
         try {
             String queryJson = String.format(queryConf.getAccountOrgQueryStr(), user);
-            ListenableFuture<Response> future = esAsyncHttpUtil.executeSearch(esUrl, queryConf.getSigIndex(), queryJson);
-            String responseBody = future.get().getResponseBody(UTF_8);
-            JsonNode dataNode = objectMapper.readTree(responseBody);
-            Iterator<JsonNode> buckets = dataNode.get("aggregations").get("group_field").get("buckets").elements();
+            ListenableFuture<Response> future = esAsyncHttpUtil.executeSearch(esUrl, queryConf.getSigIndex(), queryJson, "queryUserCompany");
+            Iterator<JsonNode> buckets = EsBucketReader.groupFieldBuckets(future.get());
 
             while (buckets.hasNext()) {
                 JsonNode bucket = buckets.next();
@@ -1468,11 +1584,11 @@ public class QueryDao {
         try {
             Cookie tokenCookie = getCookie(request);
             String s = String.format("%s/oneid/personal/center/user", env.getProperty("oneid.host"));
-            HttpResponse<com.mashape.unirest.http.JsonNode> response = Unirest.get(s)
-                    .header("token", request.getHeader("token"))
-                    .header("Cookie", "_Y_G_=" + tokenCookie.getValue())
-                    .asJson();
-            JSONArray jsonArray = response.getBody().getObject().getJSONObject("data").getJSONArray("identities");
+            HttpGet httpGet = new HttpGet(s);
+            httpGet.addHeader("token", request.getHeader("token"));
+            httpGet.addHeader("Cookie", "_Y_G_=" + tokenCookie.getValue());
+            String body = HttpClientUtils.execute(httpGet).getBody();
+            JSONArray jsonArray = new JSONObject(body).getJSONObject("data").getJSONArray("identities");
             for (int i = 0; i < jsonArray.length(); i++) {
                 JSONObject identity = jsonArray.getJSONObject(i);
                 if (identity.getString("identity").equals("gitee")) {
@@ -1487,7 +1603,6 @@ public class QueryDao {
 
     protected Map<String, Object> queryContributes(CustomPropertiesConfig queryConf, String community) {
         String giteeIndex = queryConf.getGiteeAllIndex();
-        String claIndex = queryConf.getClaCorporationIndex();
         String contributesQueryStr = queryConf.getGiteeContributesQueryStr();
 
         long prs = 0;
@@ -1503,7 +1618,7 @@ public class QueryDao {
         Map<String, Integer> communityPartners = getCommunityPartners(env.getProperty("community.partners.yaml"));
         Integer otherPartners = communityPartners.getOrDefault(community.toLowerCase(), 0);
         try {
-            List<String> companies = queryClaCompany(claIndex);
+            Set<String> companies = queryClaCompany(queryConf);
             dataMap.put("partners", companies.size() + otherPartners);
         } catch (Exception ex) {
             dataMap.put("partners", otherPartners);
@@ -1511,10 +1626,8 @@ public class QueryDao {
         }
 
         try {
-            ListenableFuture<Response> future = esAsyncHttpUtil.executeSearch(esUrl, giteeIndex, contributesQueryStr);
-            String responseBody = future.get().getResponseBody(UTF_8);
-            JsonNode dataNode = objectMapper.readTree(responseBody);
-            Iterator<JsonNode> buckets = dataNode.get("aggregations").get("orgs").get("buckets").elements();
+            ListenableFuture<Response> future = esAsyncHttpUtil.executeSearch(esUrl, giteeIndex, contributesQueryStr, "queryContributes");
+            Iterator<JsonNode> buckets = EsBucketReader.buckets(future.get(), "aggregations.orgs.buckets");
             while (buckets.hasNext()) {
                 JsonNode bucket = buckets.next();
                 prs += bucket.get("prs").get("value").asLong();
@@ -1533,6 +1646,10 @@ public class QueryDao {
     }
 
     protected Map<String, Integer> getCommunityPartners(String yamlFile) {
+        return YamlTableCache.get("communityPartners", yamlFile, this::loadCommunityPartners);
+    }
+
+    private Map<String, Integer> loadCommunityPartners(String yamlFile) {
         YamlUtil yamlUtil = new YamlUtil();
         CommunityPartnersYaml communities = yamlUtil.readLocalYaml(yamlFile, CommunityPartnersYaml.class);
         // CommunityPartnersYaml communities = yamlUtil.readUrlYaml(yamlFile, CommunityPartnersYaml.class);
@@ -1542,20 +1659,11 @@ public class QueryDao {
             int sum = community.getPartners().stream().mapToInt(Integer::intValue).sum();
             resMap.put(community.getName(), sum);
         }
-        return resMap;
+        return Collections.unmodifiableMap(resMap);
     }
 
-    protected List<String> queryClaCompany(String index) throws Exception {
-        ArrayList<String> companies = new ArrayList<>();
-        ListenableFuture<Response> future = esAsyncHttpUtil.executeSearch(esUrl, index, "{\"size\": 10000}");
-        String responseBody = future.get().getResponseBody(UTF_8);
-        JsonNode dataNode = objectMapper.readTree(responseBody);
-        Iterator<JsonNode> hits = dataNode.get("hits").get("hits").elements();
-        while (hits.hasNext()) {
-            JsonNode source = hits.next().get("_source");
-            companies.add(source.get("corporation_name").asText());
-        }
-        return companies;
+    protected Set<String> queryClaCompany(CustomPropertiesConfig queryConf) throws Exception {
+        return claCompanyDao.getCompanies(queryConf);
     }
 
     protected String getBucketCount(ListenableFuture<Response> future, String dataFlag) {
@@ -1804,7 +1912,7 @@ public class QueryDao {
 
         if (body.getBranchs() == null) {
             String queryStr = "{\"size\": 0,\"aggs\": {\"obs_project\": {\"terms\": {\"field\": \"obs_project.keyword\",\"size\": 10000,\"min_doc_count\": 1}}}}";
-            ListenableFuture<Response> future = esAsyncHttpUtil.executeSearch(esUrl, queryConf.getIsoBuildIndex(), queryStr);
+            ListenableFuture<Response> future = esAsyncHttpUtil.executeSearch(esUrl, queryConf.getIsoBuildIndex(), queryStr, "getIsoBuildTimes");
             String responseBody = future.get().getResponseBody(UTF_8);
             JsonNode dataNode = objectMapper.readTree(responseBody);
             JsonNode jsonNode = dataNode.get("aggregations").get("obs_project").get("buckets");
@@ -1821,7 +1929,7 @@ public class QueryDao {
         HashMap<String, Object> dataMap = new HashMap<>();
         for (String branch : branches) {
             String queryStr = String.format(queryConf.getIsoBuildQueryStr(), branch, size);
-            ListenableFuture<Response> future = esAsyncHttpUtil.executeSearch(esUrl, queryConf.getIsoBuildIndex(), queryStr);
+            ListenableFuture<Response> future = esAsyncHttpUtil.executeSearch(esUrl, queryConf.getIsoBuildIndex(), queryStr, "getIsoBuildTimes");
             String responseBody = future.get().getResponseBody(UTF_8);
             JsonNode dataNode = objectMapper.readTree(responseBody);
 
@@ -2096,7 +2204,7 @@ public class QueryDao {
         if (queryJson == null) return null;
 
         String queryStr = String.format(queryJson, sig);
-        return commonOwnerType(index, queryStr);
+        return commonOwnerType("querySigOwnerTypeCount", index, queryStr);
     }
 
     protected JsonNode queryOwnerTypeCount(CustomPropertiesConfig queryConf, String company) {
@@ -2105,15 +2213,13 @@ public class QueryDao {
         if (queryJson == null) return null;
 
         String queryStr = String.format(queryJson, company);
-        return commonOwnerType(index, queryStr);
+        return commonOwnerType("queryOwnerTypeCount", index, queryStr);
     }
 
-    protected JsonNode commonOwnerType(String index, String queryStr) {
+    protected JsonNode commonOwnerType(String name, String index, String queryStr) {
         try {
-            ListenableFuture<Response> future = esAsyncHttpUtil.executeSearch(esUrl, index, queryStr);
-            String responseBody = future.get().getResponseBody(UTF_8);
-            JsonNode dataNode = objectMapper.readTree(responseBody);
-            Iterator<JsonNode> buckets = dataNode.get("aggregations").get("group_field").get("buckets").elements();
+            ListenableFuture<Response> future = esAsyncHttpUtil.executeSearch(esUrl, index, queryStr, name);
+            Iterator<JsonNode> buckets = EsBucketReader.groupFieldBuckets(future.get());
 
             HashMap<String, Object> dataMap = new HashMap<>();
             while (buckets.hasNext()) {
@@ -2143,16 +2249,14 @@ public class QueryDao {
         return ArrayListUtil.getFilterList(res);
     }
 
-    protected ArrayList<HashMap<String, Object>> getData(QueryDao queryDao, CustomPropertiesConfig queryConf, String index, String queryStr) {
+    protected ArrayList<HashMap<String, Object>> getData(String name, QueryDao queryDao, CustomPropertiesConfig queryConf, String index, String queryStr) {
         ArrayList<HashMap<String, Object>> dataList = new ArrayList<>();
         HashMap<String, String> sigLabels = queryDao.querySigLabel(queryConf);
         try {
 
-            ListenableFuture<Response> future = esAsyncHttpUtil.executeSearch(esUrl, index, queryStr);
-            String responseBody = future.get().getResponseBody(UTF_8);
-            JsonNode dataNode = objectMapper.readTree(responseBody);
+            ListenableFuture<Response> future = esAsyncHttpUtil.executeSearch(esUrl, index, queryStr, name);
 
-            Iterator<JsonNode> buckets = dataNode.get("aggregations").get("group_field").get("buckets").elements();
+            Iterator<JsonNode> buckets = EsBucketReader.groupFieldBuckets(future.get());
             while (buckets.hasNext()) {
                 JsonNode bucket = buckets.next();
                 long contribute = bucket.get("sum_field").get("value").asLong();
@@ -2305,16 +2409,20 @@ public class QueryDao {
         return ResultUtil.resultJsonStr(statusCode, dataFlag, badReq, statusText);
     }
 
+    /**
+     * Get the shared es client, it is pooled and closed by the container, callers must not close it.
+     *
+     * @return RestHighLevelClient.
+     */
     protected RestHighLevelClient getRestHighLevelClient() {
-        String scheme = env.getProperty("es.scheme");
-        String host = env.getProperty("es.host");
-        int port = Integer.parseInt(env.getProperty("es.port", "9200"));
-        String esUser = env.getProperty("es.user");
-        String password = env.getProperty("es.password");
-        return HttpClientUtils.restClient(host, port, scheme, esUser, password);
+        return restClient;
     }
 
     protected List<Map<String, String>> getCompanyNameCnEn(String yamlFile, String localYamlPath) {
+        return YamlTableCache.get("companyNameCnEn", yamlFile, this::loadCompanyNameCnEn);
+    }
+
+    private List<Map<String, String>> loadCompanyNameCnEn(String yamlFile) {
         YamlUtil yamlUtil = new YamlUtil();
         // String localFile = yamlUtil.wget(yamlFile, localYamlPath);
         CompanyYaml companies = yamlUtil.readLocalYaml(yamlFile, CompanyYaml.class);
@@ -2334,15 +2442,20 @@ public class QueryDao {
             }
             company_enMap.put(company.getCompany_cn().trim(), companyEn);
         }
-        res.add(company_enMap);
-        res.add(company_cnMap);
-        return res;
+        res.add(Collections.unmodifiableMap(company_enMap));
+        res.add(Collections.unmodifiableMap(company_cnMap));
+        return Collections.unmodifiableList(res);
+    }
+
+    protected Map<String, Map<String, String>> getCommunityFeature(CustomPropertiesConfig queryConf) {
+        Map<String, Map<String, String>> resData = YamlTableCache.get("communityFeature",
+                queryConf.getSigFeatureUrl(), this::loadCommunityFeature);
+        return resData == null ? Collections.emptyMap() : resData;
     }
 
-    protected HashMap<String, HashMap<String, String>> getCommunityFeature(CustomPropertiesConfig queryConf) {
-        HashMap<String, HashMap<String, String>> resData = new HashMap<>();
+    private Map<String, Map<String, String>> loadCommunityFeature(String yamlFile) {
+        HashMap<String, Map<String, String>> resData = new HashMap<>();
         try {
-            String yamlFile = queryConf.getSigFeatureUrl();
             YamlUtil yamlUtil = new YamlUtil();
             SigYaml res = yamlUtil.readLocalYaml(yamlFile, SigYaml.class);
             // SigYaml res = yamlUtil.readUrlYaml(yamlFile, SigYaml.class);
@@ -2362,17 +2475,22 @@ public class QueryDao {
                         it.put("feature", name);
                         it.put("en_group", en_group);
                         it.put("en_feature", en_name);
-                        resData.put(sig, it);
+                        resData.put(sig, Collections.unmodifiableMap(it));
                     }
                 }
             }
         } catch (Exception e) {
             logger.error("exception", e);
+            return null;
         }
-        return resData;
+        return Collections.unmodifiableMap(resData);
     }
 
     protected Map<String, String> getUserNameCnEn(String yamlFile) {
+        return YamlTableCache.get("userNameCnEn", yamlFile, this::loadUserNameCnEn);
+    }
+
+    private Map<String, String> loadUserNameCnEn(String yamlFile) {
         YamlUtil yamlUtil = new YamlUtil();
         UserNameYaml users = yamlUtil.readLocalYaml(yamlFile, UserNameYaml.class);
         // UserNameYaml users = yamlUtil.readUrlYaml(yamlFile, UserNameYaml.class);
@@ -2383,14 +2501,14 @@ public class QueryDao {
             String user_cn = user.getCn().trim();
             userMap.put(user_en, user_cn);
         }
-        return userMap;
+        return Collections.unmodifiableMap(userMap);
     }
 
     @SneakyThrows
     public String querySigPrStateCount(CustomPropertiesConfig queryConf, String sig, Long ts) {
         sig = StringUtils.isBlank(sig) ? "*" : sig;
         String queryJson = String.format(queryConf.getSigPrStateCountQuery(), ts, sig);
-        ListenableFuture<Response> future = esAsyncHttpUtil.executeSearch(esUrl, queryConf.getGiteeAllIndex(), queryJson);
+        ListenableFuture<Response> future = esAsyncHttpUtil.executeSearch(esUrl, queryConf.getGiteeAllIndex(), queryJson, "querySigPrStateCount");
         return parseSigPrStateCountRes(future);
     }
 
@@ -2405,10 +2523,9 @@ public class QueryDao {
             statusText = response.getStatusText();
             if (statusCode != 200) return ResultUtil.resultJsonStr(statusCode, recordJsonObj, statusText);
 
-            String responseBody = response.getResponseBody(UTF_8);
-            JsonNode dataNode = objectMapper.readTree(responseBody);
-            JsonNode records = dataNode.get("aggregations").get("group_field").get("buckets");
-            for (JsonNode record : records) {
+            Iterator<JsonNode> records = EsBucketReader.groupFieldBuckets(response);
+            while (records.hasNext()) {
+                JsonNode record = records.next();
                 recordJsonObj.put("merged", record.get("merged").get("value"));
                 recordJsonObj.put("closed", record.get("closed").get("value"));
                 recordJsonObj.put("open", record.get("open").get("value"));
@@ -2425,7 +2542,7 @@ public class QueryDao {
         String claIndex = queryConf.getClaCorporationIndex();
         String queryJson = queryConf.getClaNameQuery();
         ArrayList<String> companies = new ArrayList<>();
-        ListenableFuture<Response> future = esAsyncHttpUtil.executeSearch(esUrl, claIndex, String.format(queryJson, ts));
+        ListenableFuture<Response> future = esAsyncHttpUtil.executeSearch(esUrl, claIndex, String.format(queryJson, ts), "queryClaName");
         String responseBody = future.get().getResponseBody(UTF_8);
         JsonNode dataNode = objectMapper.readTree(responseBody);
         Iterator<JsonNode> hits = dataNode.get("hits").get("hits").elements();
@@ -2437,11 +2554,9 @@ public class QueryDao {
     }
 
     public String getIPLocation(String ip) {
-        InputStream database = obsDao.getData();
         try {
-            DatabaseReader reader = new DatabaseReader.Builder(database).build();
             InetAddress ipAddress = InetAddress.getByName(ip);
-            CityResponse response = reader.city(ipAddress);
+            CityResponse response = geoIpDao.city(ipAddress);
 
             String continent_name = response.getContinent().getName();
             String region_iso_code = response.getMostSpecificSubdivision().getName();
@@ -2524,22 +2639,17 @@ public class QueryDao {
                 logger.error("exception", e);
             }
         }
-        try {
-            restHighLevelClient.close();
-        } catch (IOException e) {
-            logger.error("exception", e);
-        }
         return res;
     }
 
     @SneakyThrows
     public String queryCommunityVersions(CustomPropertiesConfig queryConf) {
         String index = queryConf.getGiteeVersionIndex();
-        ListenableFuture<Response> future = esAsyncHttpUtil.executeSearch(esUrl, index, queryConf.getCommunityVersions());
-        JsonNode dataNode = objectMapper.readTree(future.get().getResponseBody(UTF_8));
-        JsonNode buckets = dataNode.get("aggregations").get("group_field").get("buckets");
+        ListenableFuture<Response> future = esAsyncHttpUtil.executeSearch(esUrl, index, queryConf.getCommunityVersions(), "queryCommunityVersions");
+        Iterator<JsonNode> buckets = EsBucketReader.groupFieldBuckets(future.get());
         ArrayList<String> versions = new ArrayList<>();
-        for (JsonNode bucket : buckets) {
+        while (buckets.hasNext()) {
+            JsonNode bucket = buckets.next();
             String version = bucket.get("key").asText();
             if (version.contains("Next") || version.contains("LoongArch"))
                 continue;
@@ -2612,27 +2722,19 @@ public class QueryDao {
 
     public String QaBotRequest(String dataStr, String urlStr) {
         try {
-            URL url = new URL(String.format(urlStr, env.getProperty("qa.project_id"), env.getProperty("qabot_id")));
+            String url = String.format(urlStr, env.getProperty("qa.project_id"), env.getProperty("qabot_id"));
             String token = ModerationUtil.getHuaweiCloudToken(env.getProperty("moderation.body.format"),
                     env.getProperty("qa.user.name"), env.getProperty("qa.user.password"),
                     env.getProperty("qa.domain.name"), env.getProperty("qa.token.endpoint"));
-            HttpURLConnection connection = (HttpURLConnection) url.openConnection();
-            connection.setRequestMethod("POST");
-            connection.setDoInput(true);
-            connection.setDoOutput(true);
-            connection.addRequestProperty("Content-Type", "application/json");
-            connection.addRequestProperty("X-Auth-Token", token);
-
-            OutputStreamWriter osw = new OutputStreamWriter(connection.getOutputStream(), "UTF-8");
-            osw.append(dataStr);
-            osw.flush();
-            InputStream is = connection.getInputStream();
-            BufferedReader br = new BufferedReader(new InputStreamReader(is, "UTF-8"));
-            String ans = "";
-            while (br.ready()) {
-                ans += br.readLine();
-            }
-            return ans;
+            HttpPost httpPost = new HttpPost(url);
+            httpPost.addHeader("X-Auth-Token", token);
+            httpPost.setEntity(new StringEntity(dataStr, ContentType.APPLICATION_JSON));
+            HttpClientUtils.HttpResult response = HttpClientUtils.execute(httpPost);
+            if (response.getStatus() >= 300) {
+                logger.error("qabot request error - {}", response.getBody());
+                return ResultUtil.resultJsonStr(400, "error", "error");
+            }
+            return response.getBody();
         } catch (Exception e) {
             logger.error("exception", e);
             return ResultUtil.resultJsonStr(400, "error", "error");
@@ -2644,13 +2746,7 @@ public class QueryDao {
         String giteeAllIndex = queryConf.getGiteeAllIndex();
         String userTagIndex = queryConf.getUserTagIndex();
 
-        String host = env.getProperty("es.host");
-        int port = Integer.parseInt(env.getProperty("es.port", "9200"));
-        String scheme = env.getProperty("es.scheme");
-        String esUser = env.getProperty("es.user");
-        String password = env.getProperty("es.password");
-        RestHighLevelClient restHighLevelClient = HttpClientUtils.restClient(host, port, scheme, esUser, password);
-        EsQueryUtils esQueryUtils = new EsQueryUtils();
+        RestHighLevelClient restHighLevelClient = getRestHighLevelClient();
 
         HashMap<String, UserTagInfo> inputUser2Info = new HashMap<>();
         for (String reviewer : input.getReviewers()) {
@@ -2721,7 +2817,6 @@ public class QueryDao {
             request.add(new IndexRequest(index, "_doc", uuid).source(resMap));
             if (request.requests().size() != 0)
                 restHighLevelClient.bulk(request, RequestOptions.DEFAULT);
-            restHighLevelClient.close();
             return ResultUtil.resultJsonStr(200, objectMapper.valueToTree("success"), "success");
         } catch (Exception e) {
             logger.error("exception", e);
@@ -2735,17 +2830,20 @@ public class QueryDao {
         return ResultUtil.resultJsonStr(200, objectMapper.valueToTree(res), "ok");
     }
 
-    @SneakyThrows
     public List<String> getInnovationItemsNames(CustomPropertiesConfig queryConf) {
+        return YamlTableCache.get("innovationItemsNames", queryConf.getInnovationItemAddress(),
+                this::loadInnovationItemsNames);
+    }
+
+    private List<String> loadInnovationItemsNames(String yamlFile) {
         YamlUtil yamlUtil = new YamlUtil();
-        InnovationItemYaml items = yamlUtil.readLocalYaml(queryConf.getInnovationItemAddress(), 
-        InnovationItemYaml.class);
+        InnovationItemYaml items = yamlUtil.readLocalYaml(yamlFile, InnovationItemYaml.class);
         List<String> res = new ArrayList<>();
         for (InnovationItemInfo item : items.getInnovation_projects()) {
             String name = item.getProject_name().trim();
             res.add(name);
         }
-        return res;
+        return Collections.unmodifiableList(res);
     }
 
     @SneakyThrows
@@ -2754,10 +2852,9 @@ public class QueryDao {
         if (StringUtils.isBlank(allProjectQueryStr)) {
             return ResultUtil.resultJsonStr(400, null, "incorrect query");
         }
-        ListenableFuture<Response> future = esAsyncHttpUtil.executeSearch(esUrl, queryConf.getGiteeAllIndex(), allProjectQueryStr);
-        JsonNode dataNode = objectMapper.readTree(future.get().getResponseBody(UTF_8));
+        ListenableFuture<Response> future = esAsyncHttpUtil.executeSearch(esUrl, queryConf.getGiteeAllIndex(), allProjectQueryStr, "queryAllProjects");
         
-        Iterator<JsonNode> buckets = dataNode.get("aggregations").get("group_field").get("buckets").elements();
+        Iterator<JsonNode> buckets = EsBucketReader.groupFieldBuckets(future.get());
         // 如果按公司排序，那么有中英文切换；如果按照SIG组排序，那么只输出英文名称
         List<Map<String, Object>> res = new ArrayList<>();
         if ("company".equals(groupField)) {
@@ -2776,9 +2873,8 @@ public class QueryDao {
         if (StringUtils.isBlank(sigContributeQueryStr)) {
             return ResultUtil.resultJsonStr(400, null, "incorrect query");
         }
-        ListenableFuture<Response> future = esAsyncHttpUtil.executeSearch(esUrl, queryConf.getGiteeAllIndex(), sigContributeQueryStr);
-        JsonNode dataNode = objectMapper.readTree(future.get().getResponseBody(UTF_8));
-        Iterator<JsonNode> buckets = dataNode.get("aggregations").get("group_field").get("buckets").elements();
+        ListenableFuture<Response> future = esAsyncHttpUtil.executeSearch(esUrl, queryConf.getGiteeAllIndex(), sigContributeQueryStr, "querySigContributors");
+        Iterator<JsonNode> buckets = EsBucketReader.groupFieldBuckets(future.get());
         List<Map<String, Object>> res = new ArrayList<>();
         // 按照SIG组排序
         res = packageBySig(buckets);
@@ -2816,7 +2912,7 @@ public class QueryDao {
 
     @SneakyThrows
     public List<Map<String, Object>> filterData(List<Map<String, Object>> dataList, CustomPropertiesConfig queryConf) {
-        List<String> claCompanies = queryClaCompany(queryConf.getClaCorporationIndex());
+        Set<String> claCompanies = queryClaCompany(queryConf);
         List<Map<String, Object>> newList = new ArrayList<>();
         long independent = 0;
         Map<String, Object> dataMap = new HashMap<>();
@@ -2879,9 +2975,8 @@ public class QueryDao {
         if (StringUtils.isBlank(projectQueryStr)) {
             return new ArrayList<>();
         }
-        ListenableFuture<Response> future = esAsyncHttpUtil.executeSearch(esUrl, queryConf.getGiteeAllIndex(), projectQueryStr);
-        JsonNode dataNode = objectMapper.readTree(future.get().getResponseBody(UTF_8));
-        Iterator<JsonNode> buckets = dataNode.get("aggregations").get("group_field").get("buckets").elements();
+        ListenableFuture<Response> future = esAsyncHttpUtil.executeSearch(esUrl, queryConf.getGiteeAllIndex(), projectQueryStr, "getSingleProject");
+        Iterator<JsonNode> buckets = EsBucketReader.groupFieldBuckets(future.get());
         List<Map<String, Object>> res = new ArrayList<>();
         // 如果按公司排序，那么有中英文切换；如果按照SIG组排序，那么只输出英文名称
         if ("company".equals(groupField)) {
@@ -2981,7 +3076,7 @@ public class QueryDao {
                 resMap.put(type, (long) 0);
                 continue;
             }
-            future = esAsyncHttpUtil.executeSearch(esUrl, queryConf.getGiteeAllIndex(), projectQueryStr);
+            future = esAsyncHttpUtil.executeSearch(esUrl, queryConf.getGiteeAllIndex(), projectQueryStr, "querySigDefect");
             dataNode = objectMapper.readTree(future.get().getResponseBody(UTF_8));
             res = dataNode.get("hits").get("total").get("value").asLong();
             resMap.put(type, res);
@@ -2995,9 +3090,8 @@ public class QueryDao {
         if (StringUtils.isBlank(companyFeature)) {
             return ResultUtil.resultJsonStr(400, null, "incorrect query");
         }
-        ListenableFuture<Response> future = esAsyncHttpUtil.executeSearch(esUrl, queryConf.getGiteeFeatureIndex(), companyFeature);
-        JsonNode dataNode = objectMapper.readTree(future.get().getResponseBody(UTF_8));
-        Iterator<JsonNode> buckets = dataNode.get("aggregations").get("group_field").get("buckets").elements();
+        ListenableFuture<Response> future = esAsyncHttpUtil.executeSearch(esUrl, queryConf.getGiteeFeatureIndex(), companyFeature, "getVersionFeature");
+        Iterator<JsonNode> buckets = EsBucketReader.groupFieldBuckets(future.get());
         // 如果按公司排序，那么有中英文切换；如果按照SIG组排序，那么只输出英文名称
         List<Map<String, Object>> res = new ArrayList<>();
         if ("company".equals(groupField)) {
@@ -3016,9 +3110,8 @@ public class QueryDao {
         if (StringUtils.isBlank(sigPr)) {
             return ResultUtil.resultJsonStr(400, null, "incorrect query");
         }
-        ListenableFuture<Response> future = esAsyncHttpUtil.executeSearch(esUrl, queryConf.getGiteeVersionIndex(), sigPr);
-        JsonNode dataNode = objectMapper.readTree(future.get().getResponseBody(UTF_8));
-        Iterator<JsonNode> buckets = dataNode.get("aggregations").get("group_field").get("buckets").elements();
+        ListenableFuture<Response> future = esAsyncHttpUtil.executeSearch(esUrl, queryConf.getGiteeVersionIndex(), sigPr, "getVersionSig");
+        Iterator<JsonNode> buckets = EsBucketReader.groupFieldBuckets(future.get());
         List<Map<String, Object>> res = packageBySig(buckets);
         return ResultUtil.resultJsonStr(200, objectMapper.valueToTree(res), "ok");
     }
@@ -3069,14 +3162,12 @@ public class QueryDao {
     @SneakyThrows
     public String queryModelFoundry(CustomPropertiesConfig queryConf, String repo) {
         String query = String.format(queryConf.getModelFoundryDownloadQueryStr(), 0, System.currentTimeMillis(), repo);
-        ListenableFuture<Response> future = esAsyncHttpUtil.executeSearch(esUrl, queryConf.getModelFoundryIndex(), query);
+        ListenableFuture<Response> future = esAsyncHttpUtil.executeSearch(esUrl, queryConf.getModelFoundryIndex(), query, "queryModelFoundry");
         Response response = future.get();
         int count = 0;
         int statusCode = response.getStatusCode();
         String statusText = response.getStatusText();
-        String responseBody = response.getResponseBody(UTF_8);
-        JsonNode dataNode = objectMapper.readTree(responseBody);
-        Iterator<JsonNode> buckets = dataNode.get("aggregations").get("group_field").get("buckets").elements();
+        Iterator<JsonNode> buckets = EsBucketReader.groupFieldBuckets(response);
         while (buckets.hasNext()) {
             JsonNode bucket = buckets.next();
             count += bucket.get("res").get("value").asInt();
@@ -3092,19 +3183,17 @@ public class QueryDao {
         alendar.add(Calendar.YEAR, -1);
         long pastTimeMillis = alendar.getTimeInMillis();
         String query = String.format(queryConf.getModelFoundryDownloadTrendQueryStr(), pastTimeMillis, currentTimeMillis, repo);
-        ListenableFuture<Response> future = esAsyncHttpUtil.executeSearch(esUrl, queryConf.getModelFoundryIndex(), query);
+        ListenableFuture<Response> future = esAsyncHttpUtil.executeSearch(esUrl, queryConf.getModelFoundryIndex(), query, "queryModelFoundryTrends");
         Response response = future.get();
         int statusCode = response.getStatusCode();
         String statusText = response.getStatusText();
-        String responseBody = response.getResponseBody(UTF_8);
-        JsonNode dataNode = objectMapper.readTree(responseBody);
-        ArrayList<HashMap<String, Object>> resList = parseModelFoundryTrends(dataNode);
+        ArrayList<HashMap<String, Object>> resList = parseModelFoundryTrends(response);
         return ResultUtil.resultJsonStr(statusCode, objectMapper.valueToTree(resList), statusText);
     }
 
     @SneakyThrows
-    protected ArrayList<HashMap<String, Object>> parseModelFoundryTrends(JsonNode dataNode){
-        Iterator<JsonNode> buckets = dataNode.get("aggregations").get("group_field").get("buckets").elements();
+    protected ArrayList<HashMap<String, Object>> parseModelFoundryTrends(Response response){
+        Iterator<JsonNode> buckets = EsBucketReader.groupFieldBuckets(response);
         ArrayList<HashMap<String, Object>> resList = new ArrayList<>();
         while (buckets.hasNext()) {
             JsonNode bucket = buckets.next();
@@ -3129,7 +3218,7 @@ public class QueryDao {
             repos.add(orgName + "/" + repo);
         }
         String query = String.format(queryConf.getRepoMaintainerQuery(), ArrayListUtil.getFilterList(repos));
-        String resBody = esAsyncHttpUtil.executeSearch(esUrl, queryConf.getSoftwareMaintainerIndex(), query).get().getResponseBody(UTF_8);
+        String resBody = esAsyncHttpUtil.executeSearch(esUrl, queryConf.getSoftwareMaintainerIndex(), query, "queryRepoMaintainer").get().getResponseBody(UTF_8);
         JsonNode dataNode = objectMapper.readTree(resBody);
         JsonNode hits = dataNode.get("hits").get("hits");
         if (!hits.elements().hasNext()) {
@@ -3148,10 +3237,9 @@ public class QueryDao {
         String repoQuery = repo == null ? "*" : "\\\"" + Constant.SRC_OPENEULER + "/" + repo + "\\\""; 
         
         String query = String.format(queryConf.getRepoMaintainerQuery(), repoQuery);
-        String resBody = esAsyncHttpUtil.executeSearch(esUrl, queryConf.getSoftwareMaintainerIndex(), query).get().getResponseBody(UTF_8);
-        JsonNode dataNode = objectMapper.readTree(resBody);
+        Response response = esAsyncHttpUtil.executeSearch(esUrl, queryConf.getSoftwareMaintainerIndex(), query, "queryAllRepoMaintainer").get();
         ArrayList<HashMap<String, Object>> result = new ArrayList<>();
-        Iterator<JsonNode> buckets = dataNode.get("aggregations").get("repos").get("buckets").elements();
+        Iterator<JsonNode> buckets = EsBucketReader.buckets(response, "aggregations.repos.buckets");
         while (buckets.hasNext()) {
             JsonNode bucket = buckets.next();
             String[] repoName = bucket.get("key").get("repo_name").asText().split("/");
@@ -3175,7 +3263,7 @@ public class QueryDao {
     public String querySoftwareInfo(CustomPropertiesConfig queryConf, String community, String repo, String tag) {
 
         String query = String.format(queryConf.getSoftwareInfoQuery(), repo, tag);
-        String resBody = esAsyncHttpUtil.executeSearch(esUrl, queryConf.getSoftwareIndex(), query).get().getResponseBody(UTF_8);
+        String resBody = esAsyncHttpUtil.executeSearch(esUrl, queryConf.getSoftwareIndex(), query, "querySoftwareInfo").get().getResponseBody(UTF_8);
         JsonNode dataNode = objectMapper.readTree(resBody);
         JsonNode hits = dataNode.get("hits").get("hits");
         if (!hits.elements().hasNext()) {
@@ -3193,7 +3281,7 @@ public class QueryDao {
             repos.add(orgName + "/" + repo);
         }
         String query = String.format(queryConf.getRepoSigInfoQuery(), ArrayListUtil.getFilterList(repos));
-        String resBody = esAsyncHttpUtil.executeSearch(esUrl, queryConf.getSigIndex(), query).get().getResponseBody(UTF_8);
+        String resBody = esAsyncHttpUtil.executeSearch(esUrl, queryConf.getSigIndex(), query, "queryRepoSigInfo").get().getResponseBody(UTF_8);
         JsonNode dataNode = objectMapper.readTree(resBody);
         JsonNode hits = dataNode.get("hits").get("hits");
         if (!hits.elements().hasNext()) {
@@ -3208,9 +3296,8 @@ public class QueryDao {
     public String queryRepoSigInfoList(CustomPropertiesConfig queryConf, String community, String repo) {
         String repoQuery = repo == null ? "*" : "\\\"" + Constant.SRC_OPENEULER + "/" + repo + "\\\"";  
         String query = String.format(queryConf.getRepoSigInfoListQuery(), repoQuery);
-        String resBody = esAsyncHttpUtil.executeSearch(esUrl, queryConf.getSigIndex(), query).get().getResponseBody(UTF_8);
-        JsonNode dataNode = objectMapper.readTree(resBody);
-        Iterator<JsonNode> buckets = dataNode.get("aggregations").get("repos").get("buckets").elements();
+        Response response = esAsyncHttpUtil.executeSearch(esUrl, queryConf.getSigIndex(), query, "queryRepoSigInfoList").get();
+        Iterator<JsonNode> buckets = EsBucketReader.buckets(response, "aggregations.repos.buckets");
         ArrayList<Map<String, Object>> resMap = new ArrayList<>(); 
         while (buckets.hasNext()) {
             JsonNode bucket = buckets.next();
@@ -3229,7 +3316,7 @@ public class QueryDao {
     public String querySoftwareAppDownload(CustomPropertiesConfig queryConf, String community, String app) {
 
         String query = String.format(queryConf.getApplicationDownloadQuery(), app);
-        String resBody = esAsyncHttpUtil.executeSearch(esUrl, queryConf.getTrackerIndex(), query).get().getResponseBody(UTF_8);
+        String resBody = esAsyncHttpUtil.executeSearch(esUrl, queryConf.getTrackerIndex(), query, "querySoftwareAppDownload").get().getResponseBody(UTF_8);
         JsonNode dataNode = objectMapper.readTree(resBody);
         JsonNode total = dataNode.get("hits").get("total").get("value");
         return ResultUtil.resultJsonStr(200, total, "ok");
@@ -3267,7 +3354,6 @@ public class QueryDao {
                 BulkResponse bulk = restHighLevelClient.bulk(bulkRequest, RequestOptions.DEFAULT);
                 status_code = bulk.status().getStatus();
             }
-            restHighLevelClient.close();
         } catch (Exception e) {
             logger.error("putExportData exception - {}", e.getMessage());
         }
@@ -3295,21 +3381,18 @@ public class QueryDao {
             status_code = bulk.status().getStatus();
             msg = "success";
         }
-        restHighLevelClient.close();
         return ResultUtil.resultJsonStr(status_code, null, msg);
     }
 
     @SneakyThrows
     public String queryModelFoundrySH(CustomPropertiesConfig queryConf, String repo) {
         String query = String.format(queryConf.getModelFoundryDownloadQueryStr(), 0, System.currentTimeMillis(), repo);
-        ListenableFuture<Response> future = esAsyncHttpUtil.executeSearch(esUrl, queryConf.getModelFoundrySHIndex(), query);
+        ListenableFuture<Response> future = esAsyncHttpUtil.executeSearch(esUrl, queryConf.getModelFoundrySHIndex(), query, "queryModelFoundrySH");
         Response response = future.get();
         int count = 0;
         int statusCode = response.getStatusCode();
         String statusText = response.getStatusText();
-        String responseBody = response.getResponseBody(UTF_8);
-        JsonNode dataNode = objectMapper.readTree(responseBody);
-        Iterator<JsonNode> buckets = dataNode.get("aggregations").get("group_field").get("buckets").elements();
+        Iterator<JsonNode> buckets = EsBucketReader.groupFieldBuckets(response);
         while (buckets.hasNext()) {
             JsonNode bucket = buckets.next();
             count += bucket.get("res").get("value").asInt();
@@ -3329,7 +3412,7 @@ public class QueryDao {
         String query = String.format(queryConf.getModelFoundryDownloadCountQueryStr(), condition.getStart(),
                 condition.getEnd(), condition.getRepoType(), condition.getRepoId());
         String index = queryConf.getModelFoundryPathIndex(condition.getPath());
-        ListenableFuture<Response> future = esAsyncHttpUtil.executeSearch(esUrl, index, query);
+        ListenableFuture<Response> future = esAsyncHttpUtil.executeSearch(esUrl, index, query, "queryModelFoundryCountPath");
         Response response = future.get();
         int statusCode = response.getStatusCode();
         String statusText = response.getStatusText();
@@ -3357,14 +3440,12 @@ public class QueryDao {
     @SneakyThrows
     public String queryRepoDeveloper(CustomPropertiesConfig queryConf, String timeRange) {
         String query = queryConf.getQueryStrWithTimeRange(queryConf.getRepoDeveloperQueryStr(), timeRange);
-        ListenableFuture<Response> future = esAsyncHttpUtil.executeSearch(esUrl, queryConf.getGiteeAllIndex(), query);
+        ListenableFuture<Response> future = esAsyncHttpUtil.executeSearch(esUrl, queryConf.getGiteeAllIndex(), query, "queryRepoDeveloper");
         Response response = future.get();
         String user = null;
         int statusCode = response.getStatusCode();
         String statusText = response.getStatusText();
-        String responseBody = response.getResponseBody(UTF_8);
-        JsonNode dataNode = objectMapper.readTree(responseBody);
-        Iterator<JsonNode> buckets = dataNode.get("aggregations").get("group_field").get("buckets").elements();
+        Iterator<JsonNode> buckets = EsBucketReader.groupFieldBuckets(response);
         while (buckets.hasNext()) {
             JsonNode bucket = buckets.next();
             user = bucket.get("key").asText();
@@ -3380,14 +3461,7 @@ public class QueryDao {
 
     @SneakyThrows
     public String queryUserEmail(CustomPropertiesConfig queryConf, String user) {
-        String host = env.getProperty("es.private.host");
-        int port = Integer.parseInt(env.getProperty("es.private.port", "9200"));
-        String scheme = env.getProperty("es.private.scheme");
-        String esUser = env.getProperty("es.private.user");
-        String password = env.getProperty("es.private.password");
-        RestHighLevelClient restHighLevelClient = HttpClientUtils.restClient(host, port, scheme, esUser, password);
-        EsQueryUtils esQueryUtils = new EsQueryUtils();
-        String email = esQueryUtils.QueryUserEmail(restHighLevelClient, queryConf.getGiteeEmailIndex(), user);
+        String email = esQueryUtils.QueryUserEmail(privateRestClient, queryConf.getGiteeEmailIndex(), user);
         return email;
     }
 
@@ -3403,22 +3477,18 @@ public class QueryDao {
         String query = String.format(queryConf.getViewCountQueryStr(), condition.getStart(),
                 condition.getEnd(), condition.getRepoType(), condition.getRepoId());
         String index = queryConf.getExportWebsiteViewIndex();
-        ListenableFuture<Response> future = esAsyncHttpUtil.executeSearch(esUrl, index, query);
+        ListenableFuture<Response> future = esAsyncHttpUtil.executeSearch(esUrl, index, query, "queryViewCount");
         Response response = future.get();
         int statusCode = response.getStatusCode();
         String statusText = response.getStatusText();
-        String responseBody = response.getResponseBody(UTF_8);
-        JsonNode dataNode = objectMapper.readTree(responseBody);
-        JsonNode testStr = dataNode.get("aggregations").get("group_field").get("buckets");
+        Iterator<JsonNode> items = EsBucketReader.groupFieldBuckets(response);
         ArrayNode buckets = objectMapper.createArrayNode();
-        if (testStr.isArray()) {
-            for (int i = 0; i < testStr.size(); i++) {
-                JsonNode item = testStr.get(i);
-                ObjectNode bucket = objectMapper.createObjectNode();
-                bucket.put("repo_id", item.get("key").asText());
-                bucket.put("count", item.get("doc_count").asInt());
-                buckets.add(bucket);
-            }
+        while (items.hasNext()) {
+            JsonNode item = items.next();
+            ObjectNode bucket = objectMapper.createObjectNode();
+            bucket.put("repo_id", item.get("key").asText());
+            bucket.put("count", item.get("doc_count").asInt());
+            buckets.add(bucket);
         }
         return ResultUtil.resultJsonStr(statusCode, buckets, statusText);
     }
@@ -3426,7 +3496,7 @@ public class QueryDao {
     public boolean checkQueryAllData(CustomPropertiesConfig queryConf, JsonNode newData) {
         String[] fields = queryConf.getCheckField().split(",");
         for(String field : fields) {
-            if (newData.get(field).asInt() == 0) {
+            if (newData.path(field).asInt() == 0) {
                 return false;
             }
         }
@@ -3435,7 +3505,7 @@ public class QueryDao {
 
     @SneakyThrows
     public String queryCommunityCoreRepos(CustomPropertiesConfig queryConf) {
-        ListenableFuture<Response> future = esAsyncHttpUtil.executeSearch(esUrl, queryConf.getGiteeAllIndex(), queryConf.getCommunityRepoQueryStr());
+        ListenableFuture<Response> future = esAsyncHttpUtil.executeSearch(esUrl, queryConf.getGiteeAllIndex(), queryConf.getCommunityRepoQueryStr(), "queryCommunityCoreRepos");
         JsonNode dataNode = objectMapper.readTree(future.get().getResponseBody(UTF_8));
         Iterator<JsonNode> hits = dataNode.get("hits").get("hits").elements();
         String repoListStr = queryConf.getCoreRepo();
@@ -3461,7 +3531,7 @@ public class QueryDao {
     public String putSigGathering(CustomPropertiesConfig queryConf, String item, SigGathering sigGatherings, String token) {
         String userId = userIdDao.getUserId(token);
         Response response = esAsyncHttpUtil.executeCount(esUrl, queryConf.getSigGatheringIndex(),
-                String.format(queryConf.getSigGatheringUserCount(), userId)).get();
+                String.format(queryConf.getSigGatheringUserCount(), userId), "putSigGathering").get();
         String responseBody = response.getResponseBody(UTF_8);
         JsonNode dataNode = objectMapper.readTree(responseBody);
         long count = dataNode.get("count").asLong();
@@ -3563,7 +3633,6 @@ public class QueryDao {
             request.add(indexRequest);
             if (request.requests().size() != 0)
                 restHighLevelClient.bulk(request, RequestOptions.DEFAULT);
-            restHighLevelClient.close();
             return ResultUtil.resultJsonStr(200, objectMapper.valueToTree("success"), "success");
         } catch (Exception e) {
             logger.error("nps issue exception - {}", e.getMessage());
@@ -3574,7 +3643,7 @@ public class QueryDao {
     @SneakyThrows
     public String queryUserOwnerRepos(CustomPropertiesConfig queryConf, String user) {
         String query = String.format(queryConf.getUserOwnerReposQuery(), user) ;
-        ListenableFuture<Response> future = esAsyncHttpUtil.executeSearch(esUrl, queryConf.getSigIndex(), query);
+        ListenableFuture<Response> future = esAsyncHttpUtil.executeSearch(esUrl, queryConf.getSigIndex(), query, "queryUserOwnerRepos");
         Response response = future.get();
         int statusCode = response.getStatusCode();
         String statusText = response.getStatusText();
@@ -3714,7 +3783,6 @@ public class QueryDao {
             if (request.requests().size() != 0) {
                 restHighLevelClient.bulk(request, RequestOptions.DEFAULT);
             }
-            restHighLevelClient.close();
             return ResultUtil.resultJsonStr(200, objectMapper.valueToTree("success"), "success");
         } catch (Exception e) {
             logger.error("Global nps issue exception - {}", e.getMessage());
@@ -3752,7 +3820,6 @@ public class QueryDao {
             if (request.requests().size() != 0) {
                 restHighLevelClient.bulk(request, RequestOptions.DEFAULT);
             }
-            restHighLevelClient.close();
             return ResultUtil.resultJsonStr(200, objectMapper.valueToTree("success"), "success");
         } catch (Exception e) {
             logger.error("Search nps issue exception - {}", e.getMessage());
@@ -3813,15 +3880,14 @@ public class QueryDao {
         String query = String.format(queryConf.getStarCountQueryStr(), condition.getStart(),
                 condition.getEnd(), condition.getRepoId());
         String index = queryConf.getEventIndex(condition.getRepoType());
-        ListenableFuture<Response> future = esAsyncHttpUtil.executeSearch(esUrl, index, query);
+        ListenableFuture<Response> future = esAsyncHttpUtil.executeSearch(esUrl, index, query, "queryEventCount");
         Response response = future.get();
         int statusCode = response.getStatusCode();
         String statusText = response.getStatusText();
-        String responseBody = response.getResponseBody(UTF_8);
-        JsonNode dataNode = objectMapper.readTree(responseBody);
-        JsonNode repoData = dataNode.get("aggregations").get("group_field").get("buckets");
+        Iterator<JsonNode> repoData = EsBucketReader.groupFieldBuckets(response);
         ArrayNode buckets = objectMapper.createArrayNode();
-        for (JsonNode item : repoData) {
+        while (repoData.hasNext()) {
+            JsonNode item = repoData.next();
             ObjectNode bucket = objectMapper.createObjectNode();
             bucket.put("repo_id", item.get("key").asText());
             JsonNode events = item.get("event").get("buckets");
@@ -3864,7 +3930,7 @@ public class QueryDao {
     @SneakyThrows
     public String getCommunityMonthDowncount(CustomPropertiesConfig queryConf, String community, String repoID) {
         String query = String.format(queryConf.getOpenmindRepoQueryStr(), repoID);
-        ListenableFuture<Response> future =  esAsyncHttpUtil.executeSearch(esUrl, queryConf.getOpenmindRepoIndex(), query);
+        ListenableFuture<Response> future =  esAsyncHttpUtil.executeSearch(esUrl, queryConf.getOpenmindRepoIndex(), query, "getCommunityMonthDowncount");
 
         Response response = future.get();
 
@@ -3944,22 +4010,18 @@ public class QueryDao {
         String query = String.format(queryConf.getRepoViewCountQueryStr(), condition.getStart(),
                 condition.getEnd(), condition.getRepoType(), condition.getRepoId());
         String index = queryConf.getExportWebsiteViewIndex();
-        ListenableFuture<Response> future = esAsyncHttpUtil.executeSearch(esUrl, index, query);
+        ListenableFuture<Response> future = esAsyncHttpUtil.executeSearch(esUrl, index, query, "getViewCount");
         Response response = future.get();
         int statusCode = response.getStatusCode();
         String statusText = response.getStatusText();
-        String responseBody = response.getResponseBody(UTF_8);
-        JsonNode dataNode = objectMapper.readTree(responseBody);
-        JsonNode testStr = dataNode.get("aggregations").get("group_field").get("buckets");
+        Iterator<JsonNode> items = EsBucketReader.groupFieldBuckets(response);
         ArrayNode buckets = objectMapper.createArrayNode();
-        if (testStr.isArray()) {
-            for (int i = 0; i < testStr.size(); i++) {
-                JsonNode item = testStr.get(i);
-                ObjectNode bucket = objectMapper.createObjectNode();
-                bucket.put("repo_id", item.get("key").asText());
-                bucket.put("count", item.get("doc_count").asInt());
-                buckets.add(bucket);
-            }
+        while (items.hasNext()) {
+            JsonNode item = items.next();
+            ObjectNode bucket = objectMapper.createObjectNode();
+            bucket.put("repo_id", item.get("key").asText());
+            bucket.put("count", item.get("doc_count").asInt());
+            buckets.add(bucket);
         }
         return ResultUtil.resultJsonStr(statusCode, buckets, statusText);
     }
@@ -3974,7 +4036,7 @@ public class QueryDao {
     @SneakyThrows
     public String getModelersBlogViewCount(CustomPropertiesConfig queryConf) {
         String query = String.format(queryConf.getModelersBlogViewCountQueryStr());
-        ListenableFuture<Response> future =  esAsyncHttpUtil.executeSearch(esUrl, queryConf.getExportWebsiteViewIndex(), query);
+        ListenableFuture<Response> future =  esAsyncHttpUtil.executeSearch(esUrl, queryConf.getExportWebsiteViewIndex(), query, "getModelersBlogViewCount");
         Response response = future.get();
         int statusCode = response.getStatusCode();
         String statusText = response.getStatusText();
@@ -11,30 +11,50 @@
 
 package com.datastat.dao;
 
+import com.datastat.util.StatsLogger;
 import com.fasterxml.jackson.annotation.JsonAutoDetect;
 import com.fasterxml.jackson.annotation.PropertyAccessor;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.jsontype.impl.LaissezFaireSubTypeValidator;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+
+import jakarta.annotation.PostConstruct;
 import jakarta.annotation.Resource;
 
-import org.apache.tomcat.util.http.fileupload.IOUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.env.Environment;
+import org.springframework.data.redis.connection.RedisStringCommands;
 import org.springframework.data.redis.core.HashOperations;
+import org.springframework.data.redis.core.RedisCallback;
 import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.data.redis.core.StringRedisTemplate;
-import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.core.types.Expiration;
 import org.springframework.data.redis.repository.configuration.EnableRedisRepositories;
+import org.springframework.data.redis.serializer.GenericToStringSerializer;
 import org.springframework.data.redis.serializer.Jackson2JsonRedisSerializer;
 import org.springframework.data.redis.serializer.RedisSerializer;
 import org.springframework.data.redis.serializer.SerializationException;
+import org.springframework.data.redis.serializer.StringRedisSerializer;
 import org.springframework.stereotype.Repository;
+import org.xerial.snappy.Snappy;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
 import java.util.concurrent.TimeUnit;
 import java.util.zip.GZIPInputStream;
 import java.util.zip.GZIPOutputStream;
@@ -44,8 +64,57 @@ import java.util.zip.GZIPOutputStream;
 public class RedisDao {
     @Autowired
     protected StringRedisTemplate redisTemplate;
+
+    @Autowired
+    Environment env;
+
+    @Autowired
+    StatsLogger statsLogger;
+
+    public static final String INVALIDATE_CHANNEL = "datastat:cache:invalidate";
     private static final Logger logger = LoggerFactory.getLogger(RedisDao.class);
     static ObjectMapper objectMapper = new ObjectMapper();
+    private final String nodeId = UUID.randomUUID().toString();
+    private Cache<String, NearEntry> nearCache;
+    private long nearExpireMillis;
+    private RedisTemplate<String, Object> valueTemplate;
+    private static final RedisScript<Long> UNLOCK_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('get', KEYS[1]) == ARGV[1] then return redis.call('del', KEYS[1]) else return 0 end", Long.class);
+    private static final RedisScript<Long> TOKEN_BUCKET_SCRIPT = new DefaultRedisScript<>(
+            "local capacity = tonumber(ARGV[1]) "
+            + "local rate = tonumber(ARGV[2]) "
+            + "local now = tonumber(ARGV[3]) "
+            + "local bucket = redis.call('hmget', KEYS[1], 'tokens', 'time') "
+            + "local tokens = tonumber(bucket[1]) or capacity "
+            + "local last = tonumber(bucket[2]) or now "
+            + "local time = math.max(last, now) "
+            + "tokens = math.min(capacity, tokens + (time - last) * rate) "
+            + "local allowed = 0 "
+            + "if tokens >= 1 then tokens = tokens - 1 allowed = 1 end "
+            + "redis.call('hmset', KEYS[1], 'tokens', tostring(tokens), 'time', tostring(time)) "
+            + "redis.call('pexpire', KEYS[1], ARGV[4]) "
+            + "return allowed", Long.class);
+
+    @PostConstruct
+    public void init() {
+        // one template per process, its serializer is never changed afterwards
+        CompressSerializer serializer = new CompressSerializer(getJsonserializer(),
+                env.getProperty("redis.codec", "gzip"),
+                Integer.parseInt(env.getProperty("redis.codec.threshold", "1024")));
+        valueTemplate = new RedisTemplate<>();
+        valueTemplate.setConnectionFactory(redisTemplate.getConnectionFactory());
+        valueTemplate.setKeySerializer(StringRedisSerializer.UTF_8);
+        valueTemplate.setValueSerializer(serializer);
+        valueTemplate.afterPropertiesSet();
+
+        nearExpireMillis = TimeUnit.SECONDS.toMillis(Long.parseLong(env.getProperty("redis.near.cache.expire", "60")));
+        nearCache = CacheBuilder.newBuilder()
+                .maximumSize(Long.parseLong(env.getProperty("redis.near.cache.size", "10000")))
+                .expireAfterWrite(nearExpireMillis, TimeUnit.MILLISECONDS)
+                .recordStats()
+                .build();
+        statsLogger.register("near cache", this::getNearCacheStats);
+    }
 
     /**
      * 通过设置偏移量来修改value，不会更改过期时间
@@ -60,7 +129,8 @@ public class RedisDao {
     public boolean updateValue(String key, String value, long offset) {
         boolean result = false;
         if (exists(key)) {
-            redisTemplate.opsForValue().set(key, value, offset);
+            valueTemplate.opsForValue().set(key, value, offset);
+            invalidate(key);
             result = true;
         }
         return result;
@@ -78,13 +148,13 @@ public class RedisDao {
         boolean result = false;
         try {
             if (!checkValue(value)) return false;
-            redisTemplate.setValueSerializer(new GzipSerializer(getJsonserializer()));
-            ValueOperations operations = redisTemplate.opsForValue();
-            operations.set(key, value);
+            valueTemplate.opsForValue().set(key, value);
             if (expire < 1)
                 redisTemplate.persist(key);
             else
                 redisTemplate.expire(key, expire, TimeUnit.SECONDS);
+            invalidate(key);
+            putNear(key, value, expire < 1 ? -1L : TimeUnit.SECONDS.toMillis(expire));
             result = true;
             logger.info("update " + key + " success!");
         } catch (Exception e) {
@@ -98,11 +168,20 @@ public class RedisDao {
      * 〈获取key对应的value〉
      */
     public Object get(final String key) {
+        NearEntry entry = nearCache.getIfPresent(key);
+        if (entry != null) {
+            if (entry.expiresAt > System.currentTimeMillis()) {
+                return entry.value;
+            }
+            nearCache.invalidate(key);
+        }
         Object result = null;
-        redisTemplate.setValueSerializer(new GzipSerializer(getJsonserializer()));
         try {
-            ValueOperations operations = redisTemplate.opsForValue();
-            result = operations.get(key);
+            result = valueTemplate.opsForValue().get(key);
+            if (result != null) {
+                Long ttl = redisTemplate.getExpire(key, TimeUnit.MILLISECONDS);
+                putNear(key, result, ttl == null ? 0L : ttl);
+            }
         } catch (Exception e) {
             logger.error("exception - {}", e.getMessage());
         }
@@ -117,7 +196,6 @@ public class RedisDao {
         try {
             if (!checkValue(value))
                 return false;
-            redisTemplate.setValueSerializer(new GzipSerializer(getJsonserializer()));
             HashOperations<String, String, String> map = redisTemplate.opsForHash();
             map.put(key, field, value);
             redisTemplate.expire(key, expire, TimeUnit.SECONDS);
@@ -130,7 +208,6 @@ public class RedisDao {
 
     public Object get(final String key, String field) {
         Object result = null;
-        redisTemplate.setValueSerializer(new GzipSerializer(getJsonserializer()));
         try {
             HashOperations<String, String, String> hashOperations = redisTemplate.opsForHash();
             result = hashOperations.get(key, field);
@@ -164,6 +241,7 @@ public class RedisDao {
             if (exists(key)) {
                 redisTemplate.delete(key);
             }
+            invalidate(key);
             result = true;
         } catch (Exception e) {
             logger.error("exception - {}", e.getMessage());
@@ -171,14 +249,165 @@ public class RedisDao {
         return result;
     }
 
-    class GzipSerializer implements RedisSerializer<Object> {
+    /**
+     * Acquire a distributed lock with SET NX PX, stored as a raw string.
+     *
+     * @param key lock key.
+     * @param owner lock owner token.
+     * @param expireMillis lock lease in milliseconds.
+     * @return true if the lock is acquired.
+     */
+    public boolean tryLock(final String key, String owner, long expireMillis) {
+        return Boolean.TRUE.equals(setIfAbsent(key, owner, expireMillis));
+    }
+
+    /**
+     * Set a raw string value with SET NX PX in a single round trip, bypassing the value serializer.
+     *
+     * @param key key.
+     * @param value raw value.
+     * @param expireMillis expiry in milliseconds.
+     * @return true if the key was set, false if it already exists, null if redis is unavailable.
+     */
+    public Boolean setIfAbsent(final String key, String value, long expireMillis) {
+        try {
+            Boolean ok = redisTemplate.execute((RedisCallback<Boolean>) connection -> connection.stringCommands().set(
+                    key.getBytes(StandardCharsets.UTF_8), value.getBytes(StandardCharsets.UTF_8),
+                    Expiration.milliseconds(expireMillis), RedisStringCommands.SetOption.SET_IF_ABSENT));
+            return Boolean.TRUE.equals(ok);
+        } catch (Exception e) {
+            logger.error("exception - {}", e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Release a lock only if it is still held by the owner.
+     *
+     * @param key lock key.
+     * @param owner lock owner token.
+     */
+    public void unlock(final String key, String owner) {
+        try {
+            redisTemplate.execute(UNLOCK_SCRIPT, StringRedisSerializer.UTF_8, new GenericToStringSerializer<>(Long.class),
+                    Collections.singletonList(key), owner);
+        } catch (Exception e) {
+            logger.error("exception - {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Take one token from a token bucket kept in a redis hash, refilled and consumed atomically by a script.
+     *
+     * @param key bucket key.
+     * @param capacity bucket capacity.
+     * @param tokensPerMilli refill rate.
+     * @param expireMillis bucket expiry in milliseconds.
+     * @return true if a token was taken, false if the bucket is empty, null if redis is unavailable.
+     */
+    public Boolean acquireToken(final String key, long capacity, double tokensPerMilli, long expireMillis) {
+        try {
+            Long allowed = redisTemplate.execute(TOKEN_BUCKET_SCRIPT, StringRedisSerializer.UTF_8,
+                    new GenericToStringSerializer<>(Long.class), Collections.singletonList(key),
+                    String.valueOf(capacity), String.valueOf(tokensPerMilli),
+                    String.valueOf(System.currentTimeMillis()), String.valueOf(expireMillis));
+            return allowed != null && allowed == 1L;
+        } catch (Exception e) {
+            logger.error("exception - {}", e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Keep a value in the near cache no longer than redis.near.cache.expire and the ttl left in Redis.
+     *
+     * @param key key.
+     * @param value value.
+     * @param ttlMillis ttl left in Redis as returned by PTTL, -1 if the key does not expire.
+     */
+    private void putNear(final String key, Object value, long ttlMillis) {
+        long keep = ttlMillis == -1L ? nearExpireMillis : Math.min(nearExpireMillis, ttlMillis);
+        if (keep > 0) {
+            nearCache.put(key, new NearEntry(value, System.currentTimeMillis() + keep));
+        }
+    }
+
+    /**
+     * Drop a key from the near cache of this node and notify the other nodes.
+     *
+     * @param key key.
+     */
+    public void invalidate(final String key) {
+        nearCache.invalidate(key);
+        try {
+            byte[] message = (nodeId + "|" + key).getBytes(StandardCharsets.UTF_8);
+            redisTemplate.execute((RedisCallback<Long>) connection -> connection.publish(
+                    INVALIDATE_CHANNEL.getBytes(StandardCharsets.UTF_8), message));
+        } catch (Exception e) {
+            logger.error("exception - {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Handle an invalidation published by another node.
+     *
+     * @param message message in the form of nodeId|key.
+     */
+    public void onInvalidate(String message) {
+        int index = message.indexOf('|');
+        if (index < 0 || nodeId.equals(message.substring(0, index))) {
+            return;
+        }
+        nearCache.invalidate(message.substring(index + 1));
+    }
+
+    /**
+     * Hit and miss metrics of the near cache.
+     *
+     * @return metrics map.
+     */
+    public Map<String, Object> getNearCacheStats() {
+        CacheStats stats = nearCache.stats();
+        Map<String, Object> res = new LinkedHashMap<>();
+        res.put("size", nearCache.size());
+        res.put("hit", stats.hitCount());
+        res.put("miss", stats.missCount());
+        res.put("hitRate", stats.hitRate());
+        res.put("eviction", stats.evictionCount());
+        return res;
+    }
+
+    /**
+     * Near cache value with the time it stops being served.
+     */
+    private static final class NearEntry {
+        private final Object value;
+        private final long expiresAt;
+
+        NearEntry(Object value, long expiresAt) {
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    /**
+     * Json serializer wrapped by a compression codec: gzip, snappy or none.
+     * Values shorter than the threshold are stored raw. The format is detected on read,
+     * so entries written with another codec stay readable.
+     */
+    static class CompressSerializer implements RedisSerializer<Object> {
 
         public static final int BUFFER_SIZE = 4096;
-        // 这里组合方式，使用到了一个序列化器
-        private RedisSerializer<Object> innerSerializer;
+        // snappy 数据前缀，json 不会以 0x00 开头
+        private static final byte[] SNAPPY_MAGIC = {0, 'S', 'N', 'P'};
+        private final RedisSerializer<Object> innerSerializer;
+        private final String codec;
+        private final int threshold;
 
-        public GzipSerializer(RedisSerializer<Object> innerSerializer) {
+        CompressSerializer(RedisSerializer<Object> innerSerializer, String codec, int threshold) {
             this.innerSerializer = innerSerializer;
+            this.codec = codec.toLowerCase();
+            this.threshold = threshold;
         }
 
         @Override
@@ -186,57 +415,63 @@ public class RedisDao {
             if (graph == null) {
                 return new byte[0];
             }
-            ByteArrayOutputStream bos = null;
-            GZIPOutputStream gzip = null;
+            byte[] bytes = innerSerializer.serialize(graph);
+            if (bytes == null || bytes.length < threshold) {
+                return bytes;
+            }
             try {
-                // 先序列化
-                byte[] bytes = innerSerializer.serialize(graph);
-                bos = new ByteArrayOutputStream();
-                gzip = new GZIPOutputStream(bos);
-                // 在压缩
-                gzip.write(bytes);
-                gzip.finish();
-                byte[] result = bos.toByteArray();
-                return result;
+                switch (codec) {
+                    case "gzip":
+                        ByteArrayOutputStream bos = new ByteArrayOutputStream(bytes.length / 4 + 16);
+                        try (GZIPOutputStream gzip = new GZIPOutputStream(bos, BUFFER_SIZE)) {
+                            gzip.write(bytes);
+                        }
+                        return bos.toByteArray();
+                    case "snappy":
+                        byte[] compressed = Snappy.compress(bytes);
+                        byte[] result = new byte[SNAPPY_MAGIC.length + compressed.length];
+                        System.arraycopy(SNAPPY_MAGIC, 0, result, 0, SNAPPY_MAGIC.length);
+                        System.arraycopy(compressed, 0, result, SNAPPY_MAGIC.length, compressed.length);
+                        return result;
+                    default:
+                        return bytes;
+                }
             } catch (Exception e) {
-                throw new SerializationException("Gzip Serialization Error", e);
-            } finally {
-                IOUtils.closeQuietly(bos);
-                IOUtils.closeQuietly(gzip);
+                throw new SerializationException("Compress Serialization Error", e);
             }
         }
 
         @Override
         public Object deserialize(byte[] bytes) throws SerializationException {
-
             if (bytes == null || bytes.length == 0) {
                 return null;
             }
-
-            ByteArrayOutputStream bos = null;
-            ByteArrayInputStream bis = null;
-            GZIPInputStream gzip = null;
             try {
-                bos = new ByteArrayOutputStream();
-                bis = new ByteArrayInputStream(bytes);
-                gzip = new GZIPInputStream(bis);
-                byte[] buff = new byte[BUFFER_SIZE];
-                int n;
-                // 先解压
-                while ((n = gzip.read(buff, 0, BUFFER_SIZE)) > 0) {
-                    bos.write(buff, 0, n);
-                }
-                // 再反序列化
-                Object result = innerSerializer.deserialize(bos.toByteArray());
-                return result;
+                return innerSerializer.deserialize(decompress(bytes));
+            } catch (SerializationException e) {
+                throw e;
             } catch (Exception e) {
-                throw new SerializationException("Gzip deserizelie error", e);
-            } finally {
-                IOUtils.closeQuietly(bos);
-                IOUtils.closeQuietly(bis);
-                IOUtils.closeQuietly(gzip);
+                throw new SerializationException("Compress deserialize error", e);
+            }
+        }
 
+        private byte[] decompress(byte[] bytes) throws IOException {
+            if (bytes.length > 2 && (bytes[0] & 0xff) == 0x1f && (bytes[1] & 0xff) == 0x8b) {
+                ByteArrayOutputStream bos = new ByteArrayOutputStream(bytes.length * 4);
+                try (GZIPInputStream gzip = new GZIPInputStream(new ByteArrayInputStream(bytes), BUFFER_SIZE)) {
+                    byte[] buff = new byte[BUFFER_SIZE];
+                    int n;
+                    while ((n = gzip.read(buff, 0, BUFFER_SIZE)) > 0) {
+                        bos.write(buff, 0, n);
+                    }
+                }
+                return bos.toByteArray();
+            }
+            if (bytes.length > SNAPPY_MAGIC.length
+                    && Arrays.equals(bytes, 0, SNAPPY_MAGIC.length, SNAPPY_MAGIC, 0, SNAPPY_MAGIC.length)) {
+                return Snappy.uncompress(Arrays.copyOfRange(bytes, SNAPPY_MAGIC.length, bytes.length));
             }
+            return bytes;
         }
     }
 
@@ -10,15 +10,12 @@
 */
 package com.datastat.dao;
 
-import java.security.interfaces.RSAPrivateKey;
-
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.auth0.jwt.JWT;
 import com.auth0.jwt.interfaces.DecodedJWT;
 import com.datastat.model.CustomPropertiesConfig;
-import com.datastat.util.RSAUtil;
+import com.datastat.util.TokenCacheUtil;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.core.env.Environment;
@@ -34,8 +31,7 @@ public class UserIdDao {
     public String getUserId(String token){
         String userId = null;
         try {
-            RSAPrivateKey privateKey = RSAUtil.getPrivateKey(env.getProperty("rsa.authing.privateKey"));
-            DecodedJWT decode = JWT.decode(RSAUtil.privateDecrypt(token, privateKey));
+            DecodedJWT decode = TokenCacheUtil.decodeToken(token, env.getProperty("rsa.authing.privateKey"));
             userId = decode.getAudience().get(0);
         } catch (Exception e) {
             logger.error("parse token exception - {}", e.getMessage());
@@ -46,9 +42,7 @@ public class UserIdDao {
     public String getUserIdByCommunity(String token, CustomPropertiesConfig queryConf) {
         String userId = null;
         try {
-            String authPrivateKey = queryConf.getRsaAuthPrivateKey();
-            RSAPrivateKey privateKey = RSAUtil.getPrivateKey(authPrivateKey);
-            DecodedJWT decode = JWT.decode(RSAUtil.privateDecrypt(token, privateKey));
+            DecodedJWT decode = TokenCacheUtil.decodeToken(token, queryConf.getRsaAuthPrivateKey());
             userId = decode.getAudience().get(0);
         } catch (Exception e) {
             logger.error("parse user id from token exception - {}", e.getMessage());
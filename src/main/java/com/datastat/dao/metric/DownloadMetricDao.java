@@ -16,16 +16,29 @@ import org.springframework.stereotype.Repository;
 
 import com.datastat.model.CustomPropertiesConfig;
 import com.datastat.model.DatastatRequestBody;
+import com.datastat.util.EsBucketReader;
 import com.fasterxml.jackson.databind.JsonNode;
 import lombok.SneakyThrows;
 
 import org.asynchttpclient.*;
 
-import static java.nio.charset.StandardCharsets.UTF_8;
-
 @Repository
 public class DownloadMetricDao extends MetricDao {
 
+    @Override
+    protected void registerOperations(Map<String, MetricOperation> operations) {
+        super.registerOperations(operations);
+        operations.put("increase", this::queryMetricIncrease);
+        operations.put("totalCount", this::queryMetricTotalCount);
+        operations.put("ratio", this::queryMetricRatio);
+    }
+
+    @Override
+    protected void registerHistogramOperations(Set<String> operations) {
+        super.registerHistogramOperations(operations);
+        operations.add("increase");
+    }
+
     public String queryMetricIncrease(CustomPropertiesConfig queryConf, long start, long end, DatastatRequestBody body) {
         HashMap<String, Object> variables = body.getVariables();
         String interval = (String) variables.get("interval");       
@@ -55,7 +68,7 @@ public class DownloadMetricDao extends MetricDao {
         String index = queryConf.getDownloadIpIndex();
         String queryjson = queryConf.getDownloadIpIncreaseQuery();
         String queryStr = String.format(queryjson, start, end, interval);
-        return getResponseResult(index, queryStr);
+        return getResponseResult("getMetricDownloadIpIncrease", index, queryStr);
     }
 
     public String queryMetricTotalCount(CustomPropertiesConfig queryConf, long start, long end, DatastatRequestBody body) {
@@ -79,10 +92,8 @@ public class DownloadMetricDao extends MetricDao {
         int ans = 0;
 
         String queryStr = String.format(queryJson, start, end);
-        ListenableFuture<Response> future = esAsyncHttpUtil.executeSearch(esUrl, queryConf.getDownloadIpIndex(), queryStr);
-        String responseBody = future.get().getResponseBody(UTF_8);
-        JsonNode dataNode = objectMapper.readTree(responseBody);
-        Iterator<JsonNode> buckets = dataNode.get("aggregations").get("group_field").get("buckets").elements();
+        ListenableFuture<Response> future = esAsyncHttpUtil.executeSearch(esUrl, queryConf.getDownloadIpIndex(), queryStr, "queryMetricDownloadIpCount");
+        Iterator<JsonNode> buckets = EsBucketReader.groupFieldBuckets(future.get());
         while (buckets.hasNext()) {
             JsonNode bucket = buckets.next();
             ans = bucket.get("res").get("value").asInt();
@@ -12,7 +12,6 @@
 package com.datastat.dao.metric;
 
 import java.util.*;
-import java.lang.reflect.*;
 
 import org.apache.commons.lang3.StringUtils;
 import org.asynchttpclient.*;
@@ -26,15 +25,13 @@ import org.springframework.stereotype.Repository;
 import com.datastat.model.CustomPropertiesConfig;
 import com.datastat.model.DatastatRequestBody;
 import com.datastat.util.EsAsyncHttpUtil;
+import com.datastat.util.EsBucketReader;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
 import jakarta.annotation.PostConstruct;
 import lombok.SneakyThrows;
 
-
-import static java.nio.charset.StandardCharsets.UTF_8;
-
 @Repository(value = "metricDao")
 public abstract class MetricDao {
 
@@ -46,6 +43,9 @@ public abstract class MetricDao {
 
     @Autowired
     EsAsyncHttpUtil esAsyncHttpUtil;
+
+    @Autowired
+    MetricResultCache metricResultCache;
     
     @Value("${company.query:companyQuery}")
     String companyQueryStr;
@@ -57,9 +57,31 @@ public abstract class MetricDao {
     protected static JsonNode companyQueryMap;
     protected static JsonNode userQueryMap;
     private static final Logger logger = LoggerFactory.getLogger(MetricDao.class);
+    private Map<String, MetricOperation> operations = Collections.emptyMap();
+    private Set<String> histogramOperations = Collections.emptySet();
+
+    /**
+     * Handler of one /query/metrics operation.
+     */
+    @FunctionalInterface
+    public interface MetricOperation {
+        String query(CustomPropertiesConfig queryConf, long start, long end, DatastatRequestBody body);
+    }
 
     @PostConstruct
     public void init() {
+        HashMap<String, MetricOperation> ops = new HashMap<>();
+        registerOperations(ops);
+        if (ops.containsKey("increase")) {
+            ops.put("total", ops.get("increase"));
+        }
+        operations = Collections.unmodifiableMap(ops);
+        HashSet<String> histograms = new HashSet<>();
+        registerHistogramOperations(histograms);
+        if (histograms.contains("increase")) {
+            histograms.add("total");
+        }
+        histogramOperations = Collections.unmodifiableSet(histograms);
         esUrl = String.format("%s://%s:%s/", env.getProperty("es.scheme"), env.getProperty("es.host"), env.getProperty("es.port"));
         try {
             companyQueryStr = new String(companyQueryStr.getBytes("ISO8859-1"), "UTF-8");
@@ -70,28 +92,56 @@ public abstract class MetricDao {
         }
     }
 
-    public String queryMetricsData(CustomPropertiesConfig queryConf, DatastatRequestBody body) {     
-        long start = body.getStart();
-        long end = body.getEnd();
-        Method method = getFunction(body);       
+    public String queryMetricsData(CustomPropertiesConfig queryConf, String community, DatastatRequestBody body) {
+        MetricOperation operation = getOperation(body.getOperation());
+        if (operation == null) {
+            return resultJsonStr(400, null, "operation error");
+        }
         try {
-            Object result = method.invoke(this, queryConf, start, end, body);
-            return result.toString();
+            return metricResultCache.query(this, community, queryConf, body, operation);
         } catch (Exception e) {
-            logger.error("exception", e);
-        }      
+            logger.error("metrics operation {} exception", body.getOperation(), e);
+        }
         return resultJsonStr(400, null, "operation error");
     }
 
-    @SneakyThrows
-    public Method getFunction(DatastatRequestBody body) {
-        String operation = body.getOperation();
-        operation = operation.equals("total") ? "increase" : operation;
-        String methodName = "queryMetric" + StringUtils.capitalize(operation);
-        Class metricDaoClass = this.getClass();
-        Method method = metricDaoClass.getMethod(methodName, CustomPropertiesConfig.class, long.class, long.class, DatastatRequestBody.class);
-        return method;
+    /**
+     * Register the operations of this dao, keyed by the operation name of the request body.
+     * Subclasses call super first so inherited operations are kept.
+     *
+     * @param operations operation name to handler.
+     */
+    protected void registerOperations(Map<String, MetricOperation> operations) {
+    }
+
+    /**
+     * Register the operations of this dao whose every result is a date histogram, or an object
+     * of them, of {date, value[, total]} buckets. MetricResultCache only splits these at the
+     * open trailing bucket. "total" follows "increase". Subclasses call super first.
+     *
+     * @param operations operation names.
+     */
+    protected void registerHistogramOperations(Set<String> operations) {
+    }
+
+    /**
+     * Whether the results of an operation are date histograms, see registerHistogramOperations.
+     *
+     * @param operation operation name of the request body.
+     * @return true if its results can be split by date.
+     */
+    public boolean isHistogramOperation(String operation) {
+        return operation != null && histogramOperations.contains(StringUtils.uncapitalize(operation));
+    }
 
+    /**
+     * Get the handler of an operation, "total" is the same as "increase".
+     *
+     * @param operation operation name of the request body.
+     * @return handler, null if the operation is not supported.
+     */
+    public MetricOperation getOperation(String operation) {
+        return operation == null ? null : operations.get(StringUtils.uncapitalize(operation));
     }
 
     public String resultJsonStr(int code, Object data, String msg) {
@@ -109,15 +159,30 @@ public abstract class MetricDao {
     }
     
     @SneakyThrows
-    public ArrayList<HashMap<String, Object>> getResponseResult(String index, String queryStr) {
+    public ArrayList<HashMap<String, Object>> getResponseResult(String name, String index, String queryStr) {
         ArrayList<HashMap<String, Object>> tmpList = new ArrayList<>();
-        ListenableFuture<Response> future = esAsyncHttpUtil.executeSearch(esUrl, index, queryStr);
-        String responseBody = future.get().getResponseBody(UTF_8);
-        JsonNode dataNode = objectMapper.readTree(responseBody);
-        Iterator<JsonNode> buckets = dataNode.get("aggregations").get("group_field").get("buckets").elements();
+        ListenableFuture<Response> future = esAsyncHttpUtil.executeSearch(esUrl, index, queryStr, name);
+        Iterator<JsonNode> buckets = EsBucketReader.groupFieldBuckets(future.get());
         tmpList = getResponseBuckets(buckets, "increase");      
         return tmpList;
     }
+
+    /**
+     * Run the queries on one index in a single _msearch and read the group_field buckets of each.
+     *
+     * @param index name of index.
+     * @param queries queries to run.
+     * @param field name of the bucket value in the result.
+     * @return bucket list of each query, in order.
+     */
+    @SneakyThrows
+    public List<ArrayList<HashMap<String, Object>>> getResponseResults(String name, String index, List<String> queries, String field) {
+        List<ArrayList<HashMap<String, Object>>> results = new ArrayList<>(queries.size());
+        for (JsonNode response : esAsyncHttpUtil.multiSearch(esUrl, index, queries, name)) {
+            results.add(getResponseBuckets(EsBucketReader.groupFieldBuckets(response), field));
+        }
+        return results;
+    }
   
     public ArrayList<HashMap<String, Object>> getResponseBuckets(Iterator<JsonNode> buckets, String field) {
         ArrayList<HashMap<String, Object>> tmpList = new ArrayList<>();
@@ -139,12 +204,10 @@ public abstract class MetricDao {
     }
 
     @SneakyThrows
-    public int parseTotalCount(CustomPropertiesConfig queryConf, String queryStr, String index) {
+    public int parseTotalCount(String name, CustomPropertiesConfig queryConf, String queryStr, String index) {
         int ans = 0;
-        ListenableFuture<Response> future = esAsyncHttpUtil.executeSearch(esUrl, index, queryStr);
-        String responseBody = future.get().getResponseBody(UTF_8);
-        JsonNode dataNode = objectMapper.readTree(responseBody);
-        Iterator<JsonNode> buckets = dataNode.get("aggregations").get("group_field").get("buckets").elements();
+        ListenableFuture<Response> future = esAsyncHttpUtil.executeSearch(esUrl, index, queryStr, name);
+        Iterator<JsonNode> buckets = EsBucketReader.groupFieldBuckets(future.get());
         while (buckets.hasNext()) {
             JsonNode bucket = buckets.next();
             ans = bucket.get("res").get("value").asInt();
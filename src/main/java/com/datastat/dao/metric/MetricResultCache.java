@@ -0,0 +1,298 @@
+/* This project is licensed under the Mulan PSL v2.
+ You can use this software according to the terms and conditions of the Mulan PSL v2.
+ You may obtain a copy of Mulan PSL v2 at:
+     http://license.coscl.org.cn/MulanPSL2
+ THIS SOFTWARE IS PROVIDED ON AN "AS IS" BASIS, WITHOUT WARRANTIES OF ANY KIND, EITHER EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO NON-INFRINGEMENT, MERCHANTABILITY OR FIT FOR A PARTICULAR
+ PURPOSE.
+ See the Mulan PSL v2 for more details.
+ Create: 2024
+*/
+
+package com.datastat.dao.metric;
+
+import java.time.DayOfWeek;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.temporal.ChronoUnit;
+import java.time.temporal.TemporalAdjusters;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import com.datastat.model.CustomPropertiesConfig;
+import com.datastat.model.DatastatRequestBody;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+
+import jakarta.annotation.PostConstruct;
+
+/**
+ * Result cache of /query/metrics. Requests are keyed by their community and canonical body,
+ * and date histogram operations are split at the start of the open trailing bucket:
+ * the closed buckets are kept for a long time, only the trailing bucket is queried again.
+ */
+@Component
+public class MetricResultCache {
+    private static final Pattern INTERVAL = Pattern.compile("(\\d+)(ms|s|m|h|d|w|M|q|y)");
+    private static final Logger logger = LoggerFactory.getLogger(MetricResultCache.class);
+
+    @Autowired
+    Environment env;
+
+    @Autowired
+    ObjectMapper objectMapper;
+
+    private ObjectMapper keyMapper;
+    private Cache<String, String> closedResults;
+    private Cache<String, String> recentResults;
+    private ZoneId zone;
+    private long roundMillis;
+    private boolean enabled;
+    // dao and operation pairs whose results failed to merge, no longer split
+    private final Set<String> unsplittable = ConcurrentHashMap.newKeySet();
+
+    @PostConstruct
+    public void init() {
+        enabled = Boolean.parseBoolean(env.getProperty("metrics.cache.enabled", "true"));
+        zone = ZoneId.of(env.getProperty("metrics.cache.time.zone", "UTC"));
+        roundMillis = Long.parseLong(env.getProperty("metrics.cache.round", "60000"));
+        closedResults = CacheBuilder.newBuilder()
+                .maximumSize(Long.parseLong(env.getProperty("metrics.cache.closed.size", "2000")))
+                .expireAfterWrite(Long.parseLong(env.getProperty("metrics.cache.closed.expire", "21600")), TimeUnit.SECONDS)
+                .build();
+        recentResults = CacheBuilder.newBuilder()
+                .maximumSize(Long.parseLong(env.getProperty("metrics.cache.recent.size", "2000")))
+                .expireAfterWrite(Long.parseLong(env.getProperty("metrics.cache.recent.expire", "60")), TimeUnit.SECONDS)
+                .build();
+        keyMapper = new ObjectMapper().configure(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS, true);
+    }
+
+    /**
+     * Get the result of a metrics operation, from the cache where possible.
+     * Histogram operations have their start aligned down to the interval boundary.
+     *
+     * @param dao dao of the operation.
+     * @param community community name.
+     * @param queryConf community config.
+     * @param body request body.
+     * @param operation handler of the operation.
+     * @return result json string.
+     * @throws Exception if the operation fails.
+     */
+    public String query(MetricDao dao, String community, CustomPropertiesConfig queryConf, DatastatRequestBody body,
+            MetricDao.MetricOperation operation) throws Exception {
+        long start = body.getStart();
+        long end = body.getEnd();
+        if (!enabled) {
+            return operation.query(queryConf, start, end, body);
+        }
+        String prefix = dao.getClass().getName() + "@" + community.toLowerCase() + ":" + canonical(body);
+        String splitKey = dao.getClass().getName() + ":" + StringUtils.uncapitalize(body.getOperation());
+        Object interval = body.getVariables() == null ? null : body.getVariables().get("interval");
+        if (dao.isHistogramOperation(body.getOperation()) && interval instanceof String
+                && !unsplittable.contains(splitKey)) {
+            long alignedStart = floor((String) interval, start);
+            long open = floor((String) interval, end);
+            if (alignedStart >= 0L && open > alignedStart) {
+                String merged = querySplit(dao, prefix, queryConf, body, operation, alignedStart, open, end);
+                if (merged != null) {
+                    return merged;
+                }
+            }
+        }
+        // other operations and intervals are kept whole for a short time
+        String key = prefix + ":" + start / roundMillis + ":" + end / roundMillis;
+        return load(recentResults, key, () -> operation.query(queryConf, start, end, body));
+    }
+
+    /**
+     * Query the closed and trailing parts and merge them.
+     *
+     * @return merged result, null if a part failed or the parts cannot be merged.
+     */
+    private String querySplit(MetricDao dao, String prefix, CustomPropertiesConfig queryConf, DatastatRequestBody body,
+            MetricDao.MetricOperation operation, long start, long open, long end) throws Exception {
+        String closed = load(closedResults, prefix + ":" + start + ":" + open,
+                () -> operation.query(queryConf, start, open - 1, body));
+        String trailing = load(recentResults, prefix + ":" + open,
+                () -> operation.query(queryConf, open, end, body));
+        if (!isOk(closed) || !isOk(trailing)) {
+            return null;
+        }
+        try {
+            JsonNode data = merge(objectMapper.readTree(closed).get("data"), objectMapper.readTree(trailing).get("data"), open);
+            return dao.resultJsonStr(200, data, "ok");
+        } catch (IllegalArgumentException e) {
+            logger.warn("metrics result of {} cannot be merged - {}", body.getOperation(), e.getMessage());
+            unsplittable.add(dao.getClass().getName() + ":" + StringUtils.uncapitalize(body.getOperation()));
+            return null;
+        }
+    }
+
+    /**
+     * Merge the closed buckets with the trailing ones, the trailing totals continue the closed ones.
+     */
+    private JsonNode merge(JsonNode closed, JsonNode trailing, long open) {
+        if (closed == null || closed.isNull()) {
+            return trailing;
+        }
+        if (trailing == null || trailing.isNull()) {
+            return closed;
+        }
+        if (closed.isObject() && trailing.isObject()) {
+            ObjectNode merged = closed.deepCopy();
+            Iterator<Map.Entry<String, JsonNode>> fields = trailing.fields();
+            while (fields.hasNext()) {
+                Map.Entry<String, JsonNode> field = fields.next();
+                merged.set(field.getKey(), merge(closed.get(field.getKey()), field.getValue(), open));
+            }
+            return merged;
+        }
+        if (closed.isArray() && trailing.isArray()) {
+            ArrayNode merged = objectMapper.createArrayNode();
+            for (JsonNode bucket : closed) {
+                if (bucketDate(bucket) < open) {
+                    merged.add(bucket);
+                }
+            }
+            JsonNode last = merged.size() == 0 ? null : merged.get(merged.size() - 1);
+            long total = last != null && last.has("total") ? last.get("total").asLong() : 0L;
+            long lastDate = last == null ? Long.MIN_VALUE : bucketDate(last);
+            for (JsonNode bucket : trailing) {
+                // es bucketing in another zone splits a bucket across both parts
+                long date = bucketDate(bucket);
+                if (date < open || date <= lastDate) {
+                    throw new IllegalArgumentException("trailing bucket " + date + " overlaps the closed buckets before " + open);
+                }
+                lastDate = date;
+                ObjectNode copy = bucket.deepCopy();
+                if (copy.has("total")) {
+                    copy.put("total", copy.get("total").asLong() + total);
+                }
+                merged.add(copy);
+            }
+            return merged;
+        }
+        if (closed.equals(trailing)) {
+            return closed;
+        }
+        throw new IllegalArgumentException("not a date histogram");
+    }
+
+    private static long bucketDate(JsonNode bucket) {
+        if (!bucket.isObject() || !bucket.has("date")) {
+            throw new IllegalArgumentException("bucket without date");
+        }
+        return bucket.get("date").asLong();
+    }
+
+    /**
+     * Start of the bucket containing the time, as es buckets fixed and calendar intervals in the zone.
+     *
+     * @return bucket start, -1 if the interval is not supported.
+     */
+    long floor(String interval, long time) {
+        String unit;
+        long count;
+        switch (interval) {
+            case "minute": unit = "m"; count = 1L; break;
+            case "hour": unit = "h"; count = 1L; break;
+            case "day": unit = "d"; count = 1L; break;
+            case "week": unit = "w"; count = 1L; break;
+            case "month": unit = "M"; count = 1L; break;
+            case "quarter": unit = "q"; count = 1L; break;
+            case "year": unit = "y"; count = 1L; break;
+            default:
+                Matcher matcher = INTERVAL.matcher(interval);
+                if (!matcher.matches()) {
+                    return -1L;
+                }
+                count = Long.parseLong(matcher.group(1));
+                unit = matcher.group(2);
+        }
+        ZonedDateTime date = Instant.ofEpochMilli(time).atZone(zone);
+        switch (unit) {
+            case "ms": return fixedFloor(date, count);
+            case "s": return fixedFloor(date, count * 1000L);
+            case "m": return fixedFloor(date, count * 60000L);
+            case "h": return fixedFloor(date, count * 3600000L);
+            case "d": return fixedFloor(date, count * 86400000L);
+            default:
+                break;
+        }
+        if (count != 1L) {
+            return -1L;
+        }
+        ZonedDateTime day = date.truncatedTo(ChronoUnit.DAYS);
+        switch (unit) {
+            case "w": return day.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY)).toInstant().toEpochMilli();
+            case "M": return day.withDayOfMonth(1).toInstant().toEpochMilli();
+            case "q": return day.withDayOfMonth(1).withMonth((day.getMonthValue() - 1) / 3 * 3 + 1).toInstant().toEpochMilli();
+            default: return day.withDayOfYear(1).toInstant().toEpochMilli();
+        }
+    }
+
+    private static long fixedFloor(ZonedDateTime date, long length) {
+        if (length <= 0L) {
+            return -1L;
+        }
+        long offset = date.getOffset().getTotalSeconds() * 1000L;
+        long time = date.toInstant().toEpochMilli();
+        return Math.floorDiv(time + offset, length) * length - offset;
+    }
+
+    private String canonical(DatastatRequestBody body) throws Exception {
+        TreeMap<String, Object> key = new TreeMap<>();
+        key.put("filter", body.getFilter());
+        key.put("operation", body.getOperation());
+        ArrayList<String> metrics = body.getMetrics() == null ? new ArrayList<>() : new ArrayList<>(body.getMetrics());
+        Collections.sort(metrics);
+        key.put("metrics", metrics);
+        key.put("variables", body.getVariables());
+        return keyMapper.writeValueAsString(key);
+    }
+
+    private static boolean isOk(String result) {
+        return result != null && result.startsWith("{\"code\":200,");
+    }
+
+    /**
+     * Load through the cache, results that are not ok are returned but not kept.
+     */
+    private static String load(Cache<String, String> cache, String key, Callable<String> loader) throws Exception {
+        try {
+            String result = cache.get(key, loader);
+            if (!isOk(result)) {
+                cache.invalidate(key);
+            }
+            return result;
+        } catch (ExecutionException | UncheckedExecutionException e) {
+            Throwable cause = e.getCause();
+            throw cause instanceof Exception ? (Exception) cause : e;
+        }
+    }
+}
@@ -17,13 +17,12 @@ import org.springframework.stereotype.Repository;
 
 import com.datastat.model.CustomPropertiesConfig;
 import com.datastat.model.DatastatRequestBody;
+import com.datastat.util.EsBucketReader;
 import com.fasterxml.jackson.databind.JsonNode;
 import lombok.SneakyThrows;
 
 import org.asynchttpclient.*;
 
-import static java.nio.charset.StandardCharsets.UTF_8;
-
 @Repository(value = "openeulerMetricDao")
 public class OpenEulerMetricDao {
 
@@ -54,10 +53,8 @@ public class OpenEulerMetricDao {
             HashMap<Long, Double> increaseMap = new HashMap<>();
             for (int i = 0; i < queryJsons.length; i++) {
                 String queryStr = String.format(queryJsons[i], start, end, queryConf.convertList2QueryStr(oversea), interval);
-                ListenableFuture<Response> future = esAsyncHttpUtil.executeSearch(esUrl, queryConf.getUsersIndex(), queryStr);
-                String responseBody = future.get().getResponseBody(UTF_8);
-                JsonNode dataNode = objectMapper.readTree(responseBody);
-                Iterator<JsonNode> buckets = dataNode.get("aggregations").get("group_field").get("buckets").elements();
+                ListenableFuture<Response> future = esAsyncHttpUtil.executeSearch(esUrl, queryConf.getUsersIndex(), queryStr, "getMetricDownloadCountIncrease");
+                Iterator<JsonNode> buckets = EsBucketReader.groupFieldBuckets(future.get());
                 while (buckets.hasNext()) {
                     JsonNode bucket = buckets.next();
                     Long period = bucket.get("key").asLong();
@@ -81,10 +78,8 @@ public class OpenEulerMetricDao {
 
             for (int i = 0; i < queryJsons.length; i++) {
                 String queryStr = String.format(queryJsons[i], start, end, queryConf.convertList2QueryStr(oversea), "10000d");
-                ListenableFuture<Response> future = esAsyncHttpUtil.executeSearch(esUrl, queryConf.getUsersIndex(), queryStr);
-                String responseBody = future.get().getResponseBody(UTF_8);
-                JsonNode dataNode = objectMapper.readTree(responseBody);
-                Iterator<JsonNode> buckets = dataNode.get("aggregations").get("group_field").get("buckets").elements();
+                ListenableFuture<Response> future = esAsyncHttpUtil.executeSearch(esUrl, queryConf.getUsersIndex(), queryStr, "queryMetricDownloadCount");
+                Iterator<JsonNode> buckets = EsBucketReader.groupFieldBuckets(future.get());
                 while (buckets.hasNext()) {
                     JsonNode bucket = buckets.next();
                     ans += bucket.get("res").get("value").asInt();
@@ -0,0 +1,204 @@
+/* This project is licensed under the Mulan PSL v2.
+ You can use this software according to the terms and conditions of the Mulan PSL v2.
+ You may obtain a copy of Mulan PSL v2 at:
+     http://license.coscl.org.cn/MulanPSL2
+ THIS SOFTWARE IS PROVIDED ON AN "AS IS" BASIS, WITHOUT WARRANTIES OF ANY KIND, EITHER EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO NON-INFRINGEMENT, MERCHANTABILITY OR FIT FOR A PARTICULAR
+ PURPOSE.
+ See the Mulan PSL v2 for more details.
+ Create: 2024
+*/
+
+package com.datastat.dao.metric;
+
+import java.util.*;
+
+import com.datastat.model.CustomPropertiesConfig;
+import com.datastat.model.DatastatRequestBody;
+import com.datastat.util.EsBucketReader;
+import com.fasterxml.jackson.databind.JsonNode;
+import lombok.SneakyThrows;
+
+/**
+ * Metrics broken down by a term such as sig, repo or company. The term field comes from
+ * CustomPropertiesConfig.getTermQuery, and all queries of a request go in one _msearch.
+ */
+public abstract class TermMetricDao extends MetricDao {
+    private static final List<String> CONTRIBUTE_METRICS = Arrays.asList("pr", "issue", "comment");
+    private static final List<String> USER_METRICS = Arrays.asList("D0", "D1", "D2");
+
+    @Override
+    protected void registerOperations(Map<String, MetricOperation> operations) {
+        super.registerOperations(operations);
+        operations.put("increase", this::queryMetricIncrease);
+        operations.put("totalCount", this::queryMetricTotalCount);
+    }
+
+    @Override
+    protected void registerHistogramOperations(Set<String> operations) {
+        super.registerHistogramOperations(operations);
+        operations.add("increase");
+    }
+
+    public String queryMetricIncrease(CustomPropertiesConfig queryConf, long start, long end, DatastatRequestBody body) {
+        String term = (String) body.getVariables().get("term");
+        if (term == null || queryConf.getTermQuery(term, companyQueryMap).isEmpty()) {
+            return resultJsonStr(400, null, "query error");
+        }
+        return queryMetricIncreaseTermContribute(queryConf, start, end, body, term);
+    }
+
+    public String queryMetricTotalCount(CustomPropertiesConfig queryConf, long start, long end, DatastatRequestBody body) {
+        String term = (String) body.getVariables().get("term");
+        if (term == null || queryConf.getTermQuery(term, companyQueryMap).isEmpty()) {
+            return resultJsonStr(400, null, "query error");
+        }
+        return queryMetricTotalCountTermDetails(queryConf, start, end, body, term);
+    }
+
+    /**
+     * pr, issue and comment increase of each term value.
+     *
+     * @return {metric: {term value: buckets}}.
+     */
+    @SneakyThrows
+    public String queryMetricIncreaseTermContribute(CustomPropertiesConfig queryConf, long start, long end, DatastatRequestBody body, String term) {
+        String queryjson = queryConf.getAggContributeDetailQuery();
+        HashMap<String, Object> variables = body.getVariables();
+        ArrayList<String> orgs = castList(variables.get("org"), String.class);
+        ArrayList<String> internals = castList(variables.get("internal"), String.class);
+        String interval = (String) variables.get("interval");
+        String termQuery = queryConf.getTermQuery(term, companyQueryMap).get(0);
+
+        ArrayList<String> metrics = new ArrayList<>();
+        ArrayList<String> queries = new ArrayList<>();
+        for (String metric : body.getMetrics()) {
+            if (!isContributeMetric(metric)) {
+                continue;
+            }
+            String userQuery = userQueryMap.get(metric).asText();
+            metrics.add(metric);
+            queries.add(String.format(queryjson, start, end, queryConf.convertList2QueryStr(internals),
+                    queryConf.convertList2QueryStr(orgs), termQuery, interval, userQuery));
+        }
+        List<JsonNode> responses = esAsyncHttpUtil.multiSearch(esUrl, queryConf.getGiteeAllIndex(), queries, "queryMetricIncreaseTermContribute");
+
+        HashMap<String, Object> resMap = new HashMap<>();
+        for (int i = 0; i < metrics.size(); i++) {
+            Iterator<JsonNode> buckets = EsBucketReader.groupFieldBuckets(responses.get(i));
+            HashMap<String, Object> termMap = new HashMap<>();
+            while (buckets.hasNext()) {
+                JsonNode bucket = buckets.next();
+                Iterator<JsonNode> termDetails = bucket.get("2").get("buckets").elements();
+                termMap.put(bucket.get("key").asText(), getResponseBuckets(termDetails, "increase"));
+            }
+            resMap.put(metrics.get(i), termMap);
+        }
+        return resultJsonStr(200, objectMapper.valueToTree(resMap), "ok");
+    }
+
+    /**
+     * D0, D1, D2 users ("users") and pr, issue, comment totals ("contributes") of each term value.
+     *
+     * @return {metric: [{filter: term value, ...}]}.
+     */
+    @SneakyThrows
+    public String queryMetricTotalCountTermDetails(CustomPropertiesConfig queryConf, long start, long end, DatastatRequestBody body, String term) {
+        HashMap<String, Object> variables = body.getVariables();
+        String orgs = queryConf.convertList2QueryStr(castList(variables.get("org"), String.class));
+        String internals = queryConf.convertList2QueryStr(castList(variables.get("internal"), String.class));
+        ArrayList<String> termQuery = queryConf.getTermQuery(term, companyQueryMap);
+        ArrayList<String> metrics = body.getMetrics();
+        boolean users = metrics.stream().anyMatch(m -> m.equalsIgnoreCase("users"));
+        boolean contributes = metrics.stream().anyMatch(m -> m.equalsIgnoreCase("contributes"));
+
+        ArrayList<String> queries = new ArrayList<>();
+        if (users) {
+            for (String metric : USER_METRICS) {
+                queries.add(String.format(queryConf.getAggTotalUserCountQuery(), start, end, internals, orgs,
+                        userQueryMap.get(metric).asText(), termQuery.get(1), termQuery.get(0)));
+            }
+        }
+        if (contributes) {
+            queries.add(String.format(queryConf.getAggTotalContributeDetailQuery(), start, end, internals, orgs,
+                    termQuery.get(1), termQuery.get(0)));
+        }
+        List<JsonNode> responses = esAsyncHttpUtil.multiSearch(esUrl, queryConf.getGiteeAllIndex(), queries, "queryMetricTotalCountTermDetails");
+
+        ArrayList<HashMap<String, Object>> userDetails = users
+                ? parseTermUsers(responses.subList(0, USER_METRICS.size())) : null;
+        ArrayList<HashMap<String, Object>> contributeDetails = contributes
+                ? parseTermContributes(responses.get(responses.size() - 1)) : null;
+        HashMap<String, Object> resMap = new HashMap<>();
+        for (String metric : metrics) {
+            if (metric.equalsIgnoreCase("users")) {
+                resMap.put(metric, userDetails);
+            }
+            if (metric.equalsIgnoreCase("contributes")) {
+                resMap.put(metric, contributeDetails);
+            }
+        }
+        return resultJsonStr(200, objectMapper.valueToTree(resMap), "ok");
+    }
+
+    protected static boolean isContributeMetric(String metric) {
+        return CONTRIBUTE_METRICS.stream().anyMatch(metric::equalsIgnoreCase);
+    }
+
+    /**
+     * Merge the D0, D1, D2 user counts per term value. Term values are numbered in order of
+     * appearance and the counts kept in an int array per value, -1 where a level has no bucket.
+     */
+    private ArrayList<HashMap<String, Object>> parseTermUsers(List<JsonNode> responses) throws Exception {
+        HashMap<String, Integer> ordinals = new HashMap<>();
+        ArrayList<String> filters = new ArrayList<>();
+        ArrayList<int[]> counts = new ArrayList<>();
+        for (int level = 0; level < responses.size(); level++) {
+            Iterator<JsonNode> buckets = EsBucketReader.groupFieldBuckets(responses.get(level));
+            while (buckets.hasNext()) {
+                JsonNode bucket = buckets.next();
+                String filter = bucket.get("key").asText();
+                Integer ordinal = ordinals.get(filter);
+                if (ordinal == null) {
+                    ordinal = filters.size();
+                    ordinals.put(filter, ordinal);
+                    filters.add(filter);
+                    int[] levels = new int[USER_METRICS.size()];
+                    Arrays.fill(levels, -1);
+                    counts.add(levels);
+                }
+                counts.get(ordinal)[level] = bucket.get("res").get("value").asInt();
+            }
+        }
+
+        ArrayList<HashMap<String, Object>> resList = new ArrayList<>(filters.size());
+        for (int i = 0; i < filters.size(); i++) {
+            HashMap<String, Object> item = new HashMap<>();
+            item.put("filter", filters.get(i));
+            int[] levels = counts.get(i);
+            for (int level = 0; level < levels.length; level++) {
+                if (levels[level] >= 0) {
+                    item.put(USER_METRICS.get(level), levels[level]);
+                }
+            }
+            resList.add(item);
+        }
+        return resList;
+    }
+
+    private ArrayList<HashMap<String, Object>> parseTermContributes(JsonNode response) throws Exception {
+        ArrayList<HashMap<String, Object>> resList = new ArrayList<>();
+        Iterator<JsonNode> buckets = EsBucketReader.groupFieldBuckets(response);
+        while (buckets.hasNext()) {
+            JsonNode bucket = buckets.next();
+            HashMap<String, Object> item = new HashMap<>();
+            item.put("filter", bucket.get("key").asText());
+            item.put("pr", bucket.get("pr").get("value").asInt());
+            item.put("issue", bucket.get("issue").get("value").asInt());
+            item.put("comment", bucket.get("comment").get("value").asInt());
+            item.put("company", bucket.get("company").get("value").asInt());
+            resList.add(item);
+        }
+        return resList;
+    }
+}
@@ -16,16 +16,28 @@ import org.springframework.stereotype.Repository;
 
 import com.datastat.model.CustomPropertiesConfig;
 import com.datastat.model.DatastatRequestBody;
-import com.fasterxml.jackson.databind.JsonNode;
 import lombok.SneakyThrows;
 
-import org.asynchttpclient.*;
-
-import static java.nio.charset.StandardCharsets.UTF_8;
-
 @Repository
 public class UserMetricDao extends MetricDao {
 
+    @Override
+    protected void registerOperations(Map<String, MetricOperation> operations) {
+        super.registerOperations(operations);
+        operations.put("increase", this::queryMetricIncrease);
+        operations.put("active", this::queryMetricActive);
+        operations.put("totalCount", this::queryMetricTotalCount);
+        operations.put("userTotalCount", this::queryMetricUserTotalCount);
+        operations.put("ratio", this::queryMetricRatio);
+    }
+
+    @Override
+    protected void registerHistogramOperations(Set<String> operations) {
+        super.registerHistogramOperations(operations);
+        operations.add("increase");
+        operations.add("active");
+    }
+
     public String queryMetricIncrease(CustomPropertiesConfig queryConf, long start, long end, DatastatRequestBody body) {
         HashMap<String, Object> variables = body.getVariables();
         String interval = (String) variables.get("interval");
@@ -56,18 +68,23 @@ public class UserMetricDao extends MetricDao {
         } else {
             return resultJsonStr(400, null, "query error");
         }
-        ArrayList<String> metrics = body.getMetrics();
+        ArrayList<String> metrics = new ArrayList<>();
+        ArrayList<String> queries = new ArrayList<>();
         String queryJson = queryConf.getUserContributeDetailQuery();
-        for (String metric: metrics) { // pr, issue, comment
+        for (String metric: body.getMetrics()) { // pr, issue, comment
             String metricQuery = userQueryMap.get(metric).asText();            
             if (term.equals("D2") && !metric.equalsIgnoreCase("pr")) continue;
-            String queryStr = String.format(queryJson, start, end, queryConf.convertList2QueryStr(internals),
-                    queryConf.convertList2QueryStr(orgs), termQuery, interval, metricQuery);
-            ArrayList<HashMap<String, Object>> res = getResponseResult(queryConf.getGiteeAllIndex(), queryStr);
+            metrics.add(metric);
+            queries.add(String.format(queryJson, start, end, queryConf.convertList2QueryStr(internals),
+                    queryConf.convertList2QueryStr(orgs), termQuery, interval, metricQuery));
+        }
+        List<ArrayList<HashMap<String, Object>>> results = getResponseResults("queryMetricIncreaseContribute", queryConf.getGiteeAllIndex(), queries, "increase");
+        for (int i = 0; i < metrics.size(); i++) {
+            ArrayList<HashMap<String, Object>> res = results.get(i);
             if (body.getOperation().equalsIgnoreCase("totalcount")) {
-                result.put(term + "_" + metric, res.get(0).get("total"));
+                result.put(term + "_" + metrics.get(i), res.get(0).get("total"));
             } else {
-                result.put(term + "_" + metric, res);
+                result.put(term + "_" + metrics.get(i), res);
             }
         }
         return resultJsonStr(200, objectMapper.valueToTree(result), "ok");
@@ -81,7 +98,7 @@ public class UserMetricDao extends MetricDao {
         ArrayList<String> internals = castList(variables.get("internal"), String.class);
         String queryStr = String.format(queryjson, start, end, queryConf.convertList2QueryStr(internals),
                 queryConf.convertList2QueryStr(orgs), interval, metric);
-        return getResponseResult(index, queryStr);
+        return getResponseResult("getMetricUserIncrease", index, queryStr);
     }
 
     @SneakyThrows
@@ -94,16 +111,15 @@ public class UserMetricDao extends MetricDao {
 
         HashMap<String, Object> resMap = new HashMap<>();
         ArrayList<String> metrics = body.getMetrics();
+        ArrayList<String> queries = new ArrayList<>();
         for (String metric : metrics) {
             String userQuery = userQueryMap.get(metric).asText();
-            String queryStr = String.format(queryjson, start, end, queryConf.convertList2QueryStr(internals),
-            queryConf.convertList2QueryStr(orgs), userQuery, interval);
-            ListenableFuture<Response> future = esAsyncHttpUtil.executeSearch(esUrl, queryConf.getGiteeAllIndex(), queryStr);
-            String responseBody = future.get().getResponseBody(UTF_8);
-            JsonNode dataNode = objectMapper.readTree(responseBody);
-            Iterator<JsonNode> buckets = dataNode.get("aggregations").get("group_field").get("buckets").elements();
-            ArrayList<HashMap<String, Object>> resList = getResponseBuckets(buckets, "active");
-            resMap.put(metric + "_" + interval, resList);
+            queries.add(String.format(queryjson, start, end, queryConf.convertList2QueryStr(internals),
+            queryConf.convertList2QueryStr(orgs), userQuery, interval));
+        }
+        List<ArrayList<HashMap<String, Object>>> results = getResponseResults("queryMetricActive", queryConf.getGiteeAllIndex(), queries, "active");
+        for (int i = 0; i < metrics.size(); i++) {
+            resMap.put(metrics.get(i) + "_" + interval, results.get(i));
         }
         return resultJsonStr(200, objectMapper.valueToTree(resMap), "ok");       
     }
@@ -130,7 +146,7 @@ public class UserMetricDao extends MetricDao {
             ArrayList<String> orgs = castList(variables.get("org"), String.class);
             String queryStr = String.format(queryJson, start, end, queryConf.convertList2QueryStr(internals),
                     queryConf.convertList2QueryStr(orgs), userQuery, "10000d");
-            int ans = parseTotalCount(queryConf, queryStr, index);
+            int ans = parseTotalCount("queryMetricUserTotalCount", queryConf, queryStr, index);
             resMap.put(metric, ans);
         }
         return resultJsonStr(200, objectMapper.valueToTree(resMap), "ok");
@@ -159,13 +175,13 @@ public class UserMetricDao extends MetricDao {
         for (String metric : metrics) {
             String queryStr = String.format(queryJson, start, end, queryConf.convertList2QueryStr(internals),
                     queryConf.convertList2QueryStr(orgs), "10000d", metric);
-            double curCount = parseTotalCount(queryConf, queryStr, index);
+            double curCount = parseTotalCount("queryMetricRatio", queryConf, queryStr, index);
 
             c.add(period, -1);
             long preStart = c.getTimeInMillis();
             queryStr = String.format(queryJson, preStart, start, queryConf.convertList2QueryStr(internals),
                     queryConf.convertList2QueryStr(orgs), "10000d", metric);
-            double preCount = parseTotalCount(queryConf, queryStr, index);
+            double preCount = parseTotalCount("queryMetricRatio", queryConf, queryStr, index);
             double ratio = preCount == 0 ? curCount : (curCount - preCount) / preCount;
             resMap.put(metric, ratio);
         }
@@ -156,6 +156,7 @@ public class AuthenticationInterceptor implements HandlerInterceptor {
                     sos.write(errorToken(401, "token error")); // token 签名有误
                     return false;
                 }
+                httpServletRequest.setAttribute(Constant.VERIFIED_USER_ATTR, userName);
                 return true;
             }
         }
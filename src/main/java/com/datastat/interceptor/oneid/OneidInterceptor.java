@@ -14,21 +14,25 @@ package com.datastat.interceptor.oneid;
 import java.io.IOException;
 import java.lang.reflect.Method;
 import java.nio.charset.StandardCharsets;
-import java.security.interfaces.RSAPrivateKey;
 import java.util.*;
+import java.util.concurrent.TimeUnit;
 
-import com.auth0.jwt.JWT;
 import com.auth0.jwt.JWTVerifier;
-import com.auth0.jwt.algorithms.Algorithm;
 import com.auth0.jwt.exceptions.JWTDecodeException;
 import com.auth0.jwt.interfaces.DecodedJWT;
 import com.datastat.config.context.QueryConfContext;
+import com.datastat.constant.Constant;
 import com.datastat.dao.RedisDao;
 import com.datastat.model.CustomPropertiesConfig;
 import com.datastat.util.HttpClientUtils;
 import com.datastat.util.ObjectMapperUtil;
 import com.datastat.util.RSAUtil;
+import com.datastat.util.StatsLogger;
+import com.datastat.util.TokenCacheUtil;
 import com.fasterxml.jackson.databind.JsonNode;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
 import jakarta.annotation.PostConstruct;
 import jakarta.servlet.http.Cookie;
 import jakarta.servlet.http.HttpServletRequest;
@@ -54,6 +58,9 @@ public class OneidInterceptor implements HandlerInterceptor {
     @Autowired
     RedisDao redisDao;
 
+    @Autowired
+    StatsLogger statsLogger;
+
     @Value("${cookie.token.name:default}")
     private String cookieTokenName;
 
@@ -63,12 +70,28 @@ public class OneidInterceptor implements HandlerInterceptor {
     @Value("${cookie.token.secures:default}")
     private String cookieSecures;
 
+    @Value("${permission.cache.size:10000}")
+    private long permissionCacheSize;
+
+    @Value("${permission.cache.expire:60}")
+    private long permissionCacheExpire;
+
+    @Value("${permission.cache.write.expire:0}")
+    private long permissionCacheWriteExpire;
+
     private static HashMap<String, Boolean> domain2secure;
     private static final Logger logger = LoggerFactory.getLogger(OneidInterceptor.class);
+    private Cache<String, PermissionEntry> permissionCache;
 
     @PostConstruct
     public void init() {
         domain2secure = HttpClientUtils.getConfigCookieInfo(allowDomains, cookieSecures);
+        permissionCache = CacheBuilder.newBuilder()
+                .maximumSize(permissionCacheSize)
+                .expireAfterWrite(permissionCacheExpire, TimeUnit.SECONDS)
+                .recordStats()
+                .build();
+        statsLogger.register("permission cache", this::getPermissionCacheStats);
     }
 
     @Override
@@ -121,10 +144,10 @@ public class OneidInterceptor implements HandlerInterceptor {
 
         // 解密cookie中加密的token
         String token = tokenCookie.getValue();
+        DecodedJWT decode;
         try {
-            String authPrivateKey = queryConf.getRsaAuthPrivateKey();
-            RSAPrivateKey privateKey = RSAUtil.getPrivateKey(authPrivateKey);
-            token = RSAUtil.privateDecrypt(token, privateKey);
+            decode = TokenCacheUtil.decodeToken(token, queryConf.getRsaAuthPrivateKey());
+            token = decode.getToken();
         } catch (Exception e) {
             logger.error("decode token in cookie exception - {}", e.getMessage());
             tokenError(httpServletRequest, httpServletResponse, "unauthorized");
@@ -138,7 +161,6 @@ public class OneidInterceptor implements HandlerInterceptor {
         String permission;
         String verifyToken;
         try {
-            DecodedJWT decode = JWT.decode(token);
             userId = decode.getAudience().get(0);
             issuedAt = decode.getIssuedAt();
             expiresAt = decode.getExpiresAt();
@@ -158,10 +180,11 @@ public class OneidInterceptor implements HandlerInterceptor {
             tokenError(httpServletRequest, httpServletResponse, verifyTokenMsg);
             return false;
         }
+        httpServletRequest.setAttribute(Constant.VERIFIED_USER_ATTR, userId);
 
         // 校验sig权限
         if (sigToken != null && sigToken.required()) {
-            String verifyUserMsg = verifyUser(sigToken, httpServletRequest, tokenCookie);
+            String verifyUserMsg = verifyUser(sigToken, httpServletRequest, tokenCookie, expiresAt);
             if (!verifyUserMsg.equals("success")) {
                 tokenError(httpServletRequest, httpServletResponse, verifyUserMsg);
                 return false;
@@ -170,7 +193,7 @@ public class OneidInterceptor implements HandlerInterceptor {
 
         // 校验company权限
         if (companyToken != null && companyToken.required()) {
-            String verifyCompanyPerMsg = verifyCompanyPer(companyToken, httpServletRequest, tokenCookie);
+            String verifyCompanyPerMsg = verifyCompanyPer(companyToken, httpServletRequest, tokenCookie, expiresAt);
             if (!verifyCompanyPerMsg.equals("success")) {
                 tokenError(httpServletRequest, httpServletResponse, verifyCompanyPerMsg);
                 return false;
@@ -212,7 +235,7 @@ public class OneidInterceptor implements HandlerInterceptor {
 
             // token 签名密码验证
             String password = permission + queryConf.getAuthTokenSessionPassword();
-            JWTVerifier jwtVerifier = JWT.require(Algorithm.HMAC256(password)).build();
+            JWTVerifier jwtVerifier = TokenCacheUtil.getVerifier(password);
             jwtVerifier.verify(token);
 
         } catch (Exception e) {
@@ -236,7 +259,7 @@ public class OneidInterceptor implements HandlerInterceptor {
 
             // token 签名密码验证
             String password = queryConf.getAuthTokenBasePassword();
-            JWTVerifier jwtVerifier = JWT.require(Algorithm.HMAC256(password)).build();
+            JWTVerifier jwtVerifier = TokenCacheUtil.getVerifier(password);
             jwtVerifier.verify(headerToken);
             return "success";
         } catch (Exception e) {
@@ -248,11 +271,12 @@ public class OneidInterceptor implements HandlerInterceptor {
     /**
      * 校验用户sig操作权限
      */
-    private String verifyUser(SigToken sigToken, HttpServletRequest httpServletRequest, Cookie tokenCookie) {
+    private String verifyUser(SigToken sigToken, HttpServletRequest httpServletRequest, Cookie tokenCookie, Date expiresAt) {
         CustomPropertiesConfig queryConf = getQueryConf(httpServletRequest);
         try {
             if (sigToken != null && sigToken.required()) {
-                List<String> pers = getUserPermission(httpServletRequest, tokenCookie, httpServletRequest.getHeader("token"));
+                List<String> pers = getUserPermission(httpServletRequest, tokenCookie, httpServletRequest.getHeader("token"),
+                        expiresAt);
                 for (String per : pers) {
                     if (per.equalsIgnoreCase(queryConf.getSigAction())) {
                         return "success";
@@ -266,11 +290,13 @@ public class OneidInterceptor implements HandlerInterceptor {
         return "has no permission";
     }
 
-    private String verifyCompanyPer(CompanyToken companyToken, HttpServletRequest httpServletRequest, Cookie tokenCookie) {
+    private String verifyCompanyPer(CompanyToken companyToken, HttpServletRequest httpServletRequest, Cookie tokenCookie,
+                                    Date expiresAt) {
         CustomPropertiesConfig queryConf = getQueryConf(httpServletRequest);
         try {
             if (companyToken != null && companyToken.required()) {
-                List<String> pers = getUserPermission(httpServletRequest, tokenCookie, httpServletRequest.getHeader("token"));
+                List<String> pers = getUserPermission(httpServletRequest, tokenCookie, httpServletRequest.getHeader("token"),
+                        expiresAt);
                 for (String per : pers) {
                     if (per.equalsIgnoreCase(queryConf.getCompanyAction())) {
                         return "success";
@@ -313,10 +339,36 @@ public class OneidInterceptor implements HandlerInterceptor {
 
     // }
 
-    private List<String> getUserPermission(HttpServletRequest httpServletRequest, Cookie tokenCookie, String userToken) {
+    /**
+     * 获取用户权限，按会话(header token + cookie token)缓存，token变化即不再命中，且不超过token过期时间.
+     * 读请求最多使用permission.cache.expire秒前的权限，写请求最多使用permission.cache.write.expire秒前的权限，
+     * 默认每次重新获取，撤销的权限不会继续放行写操作
+     *
+     * @param httpServletRequest request
+     * @param tokenCookie 存token的cookie
+     * @param userToken header中的token
+     * @param expiresAt token过期时间
+     * @return 权限列表
+     */
+    private List<String> getUserPermission(HttpServletRequest httpServletRequest, Cookie tokenCookie, String userToken,
+                                           Date expiresAt) {
+        String tokenCookieValue = tokenCookie.getValue();
+        String sessionKey = DigestUtils.md5DigestAsHex((httpServletRequest.getParameter("community") + ":"
+                + userToken + ":" + tokenCookieValue).getBytes(StandardCharsets.UTF_8));
+        PermissionEntry entry = permissionCache.getIfPresent(sessionKey);
+        if (entry != null) {
+            if (entry.expiresAt.after(new Date())) {
+                long maxAge = isReadRequest(httpServletRequest) ? permissionCacheExpire : permissionCacheWriteExpire;
+                if (System.currentTimeMillis() - entry.cachedAt < TimeUnit.SECONDS.toMillis(maxAge)) {
+                    return entry.permissions;
+                }
+            } else {
+                permissionCache.invalidate(sessionKey);
+            }
+        }
+
         List<String> list = new ArrayList<>();
         String token = getManageToken();
-        String tokenCookieValue = tokenCookie.getValue();
         String response = HttpClientUtils.getHttpClient(env.getProperty("permission.api"), token, userToken, tokenCookieValue);
         JsonNode resJson = ObjectMapperUtil.toJsonNode(response);
         if (!resJson.has("data")) {
@@ -326,9 +378,43 @@ public class OneidInterceptor implements HandlerInterceptor {
         for (JsonNode per : permissions) {
             list.add(per.asText());
         }
+        permissionCache.put(sessionKey, new PermissionEntry(Collections.unmodifiableList(list), expiresAt));
         return list;
     }
 
+    private boolean isReadRequest(HttpServletRequest httpServletRequest) {
+        String method = httpServletRequest.getMethod();
+        return "GET".equalsIgnoreCase(method) || "HEAD".equalsIgnoreCase(method);
+    }
+
+    /**
+     * 权限缓存命中率等统计
+     *
+     * @return 统计信息
+     */
+    public Map<String, Object> getPermissionCacheStats() {
+        CacheStats stats = permissionCache.stats();
+        Map<String, Object> res = new LinkedHashMap<>();
+        res.put("size", permissionCache.size());
+        res.put("hit", stats.hitCount());
+        res.put("miss", stats.missCount());
+        res.put("hitRate", stats.hitRate());
+        res.put("eviction", stats.evictionCount());
+        return res;
+    }
+
+    private static final class PermissionEntry {
+        private final List<String> permissions;
+        private final Date expiresAt;
+        private final long cachedAt;
+
+        PermissionEntry(List<String> permissions, Date expiresAt) {
+            this.permissions = permissions;
+            this.expiresAt = expiresAt;
+            this.cachedAt = System.currentTimeMillis();
+        }
+    }
+
     private String getManageToken() {
         String response = HttpClientUtils.postHttpClient(env.getProperty("manager.token.api"), env.getProperty("manager.token.body"));
         try {
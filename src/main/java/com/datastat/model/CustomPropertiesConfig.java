@@ -228,6 +228,7 @@ public class CustomPropertiesConfig {
     private String openmindRepoQueryStr;
     private String repoViewCountQueryStr;
     private String modelersBlogViewCountQueryStr;
+    private String metricTermFields;
     
     protected static final Map<String, String> contributeTypeMap = new HashMap<>();
     protected static final Map<String, String> groupFieldMap = new HashMap<>();
@@ -410,11 +411,9 @@ public class CustomPropertiesConfig {
 
     public ArrayList<String> getTermQuery(String term, JsonNode companyQueryMap) {
         ArrayList<String> params = new ArrayList<>();
-        if (term.equalsIgnoreCase("sig")) {
-            params.add("sig_names.keyword");
-            params.add("*");
-        } else if (term.equalsIgnoreCase("repo")) {
-            params.add("gitee_repo.keyword");
+        String field = getMetricTermField(term);
+        if (field != null) {
+            params.add(field);
             params.add("*");
         } else if (companyQueryMap.has(term)) {
             params.add("tag_user_company.keyword");
@@ -423,6 +422,34 @@ public class CustomPropertiesConfig {
         return params;
     }
 
+    /**
+     * Keyword field the metrics of a term are grouped by. Besides sig and repo, terms can be
+     * configured in metricTermFields as term:field pairs separated by ";".
+     *
+     * @param term term of the metrics request.
+     * @return keyword field, null if the term is not a configured one.
+     */
+    public String getMetricTermField(String term) {
+        if (term == null) {
+            return null;
+        }
+        if (StringUtils.isNotBlank(metricTermFields)) {
+            for (String pair : metricTermFields.split(";")) {
+                String[] termField = pair.split(":", 2);
+                if (termField.length == 2 && termField[0].trim().equalsIgnoreCase(term)) {
+                    return termField[1].trim();
+                }
+            }
+        }
+        if (term.equalsIgnoreCase("sig")) {
+            return "sig_names.keyword";
+        }
+        if (term.equalsIgnoreCase("repo")) {
+            return "gitee_repo.keyword";
+        }
+        return null;
+    }
+
     public String convertList2QueryStr(ArrayList<String> res) {
         if (res == null) {
             return "*";
@@ -0,0 +1,244 @@
+/* This project is licensed under the Mulan PSL v2.
+ You can use this software according to the terms and conditions of the Mulan PSL v2.
+ You may obtain a copy of Mulan PSL v2 at:
+     http://license.coscl.org.cn/MulanPSL2
+ THIS SOFTWARE IS PROVIDED ON AN "AS IS" BASIS, WITHOUT WARRANTIES OF ANY KIND, EITHER EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO NON-INFRINGEMENT, MERCHANTABILITY OR FIT FOR A PARTICULAR
+ PURPOSE.
+ See the Mulan PSL v2 for more details.
+ Create: 2024
+*/
+
+package com.datastat.service;
+
+import java.text.SimpleDateFormat;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Service;
+
+import com.datastat.config.context.QueryConfContext;
+import com.datastat.dao.QueryDao;
+import com.datastat.dao.RedisDao;
+import com.datastat.dao.context.QueryDaoContext;
+import com.datastat.model.CustomPropertiesConfig;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Keeps the community "all" dashboard cache warm so that readers never recompute it inline.
+ */
+@Service
+public class QueryAllRefreshService {
+    @Autowired
+    Environment env;
+
+    @Autowired
+    QueryConfContext queryConfContext;
+
+    @Autowired
+    QueryDaoContext queryDaoContext;
+
+    @Autowired
+    RedisDao redisDao;
+
+    @Autowired
+    ObjectMapper objectMapper;
+
+    private static final Logger logger = LoggerFactory.getLogger(QueryAllRefreshService.class);
+    private static final String ITEM = "all";
+    private static final String LOCK_PREFIX = "lock:";
+    private final String owner = UUID.randomUUID().toString();
+    private final Map<String, CompletableFuture<String>> inFlight = new ConcurrentHashMap<>();
+    private ScheduledExecutorService service;
+    private List<String> communityList;
+    private long flushInterval;
+    private long refreshPeriod;
+    private long lockLease;
+    private long coldWait;
+    private long partialExpire;
+
+    @PostConstruct
+    public void init() {
+        communityList = Arrays.asList(env.getProperty("communitys", "").split(","));
+        flushInterval = Long.parseLong(env.getProperty("redis.flush.interval", "7200000"));
+        refreshPeriod = Long.parseLong(env.getProperty("query.all.refresh.period", "600000"));
+        lockLease = Long.parseLong(env.getProperty("query.all.lock.lease", "300000"));
+        coldWait = Long.parseLong(env.getProperty("query.all.cold.wait", "30000"));
+        partialExpire = Long.parseLong(env.getProperty("query.all.partial.expire", "300"));
+        service = Executors.newSingleThreadScheduledExecutor(
+                new ThreadFactoryBuilder().setNameFormat("query-all-refresh-%d").setDaemon(true).build());
+        service.scheduleWithFixedDelay(this::refreshAll,
+                Long.parseLong(env.getProperty("query.all.refresh.delay", "10000")), refreshPeriod, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        service.shutdownNow();
+    }
+
+    /**
+     * Refresh every community whose cache would expire before the next run.
+     */
+    public void refreshAll() {
+        for (String community : communityList) {
+            if (StringUtils.isBlank(community)) {
+                continue;
+            }
+            refresh(community, flushInterval - refreshPeriod);
+        }
+    }
+
+    /**
+     * Ask for a refresh without blocking the caller. Requests for a community already
+     * being refreshed on this node share the running refresh.
+     *
+     * @param community community name.
+     */
+    public void refreshAsync(String community) {
+        submit(community);
+    }
+
+    /**
+     * Get the data of a community with a cold cache. The caller waits up to query.all.cold.wait
+     * for the refresh of this node, or for the node holding the lock to store its result.
+     *
+     * @param community community name.
+     * @return the data, or null if none was stored in time.
+     * @throws InterruptedException if interrupted while waiting.
+     */
+    public String load(String community) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + coldWait;
+        try {
+            String result = submit(community).get(coldWait, TimeUnit.MILLISECONDS);
+            if (result != null) {
+                return result;
+            }
+        } catch (ExecutionException | TimeoutException e) {
+            logger.warn("load {} all - {}", community, e.toString());
+        }
+        // another node holds the lock, wait for it to store the data
+        while (System.currentTimeMillis() < deadline) {
+            String cached = (String) redisDao.get(getKey(community));
+            if (cached != null) {
+                return cached;
+            }
+            Thread.sleep(200L);
+        }
+        return null;
+    }
+
+    private CompletableFuture<String> submit(String community) {
+        String key = getKey(community);
+        CompletableFuture<String> created = new CompletableFuture<>();
+        CompletableFuture<String> future = inFlight.compute(key,
+                (k, running) -> running != null && !running.isDone() ? running : created);
+        if (future == created) {
+            service.execute(() -> {
+                try {
+                    created.complete(refresh(community, flushInterval));
+                } catch (Throwable e) {
+                    created.completeExceptionally(e);
+                } finally {
+                    inFlight.remove(key, created);
+                }
+            });
+        }
+        return future;
+    }
+
+    /**
+     * Recompute the "all" data of a community, only one node at a time. The cache is checked
+     * again once the lock is held, data another node stored meanwhile is returned as is.
+     * Data missing items that failed or timed out is kept only for query.all.partial.expire
+     * seconds and is recomputed by the next refresh.
+     *
+     * @param community community name.
+     * @param maxAge age from which the cached data is recomputed.
+     * @return the current data, or null if another node holds the lock or the data is not valid.
+     */
+    private String refresh(String community, long maxAge) {
+        String key = getKey(community);
+        String lockKey = LOCK_PREFIX + key;
+        if (!redisDao.tryLock(lockKey, owner, lockLease)) {
+            return null;
+        }
+        try {
+            String cached = (String) redisDao.get(key);
+            if (cached != null && !isPartial(objectMapper.readTree(cached)) && !isStale(cached, maxAge)) {
+                return cached;
+            }
+            QueryDao queryDao = queryDaoContext.getQueryDao(community.toLowerCase() + "Dao");
+            CustomPropertiesConfig queryConf = queryConfContext.getQueryConfig(community.toLowerCase() + "Conf");
+            String result = queryDao.queryAll(queryConf, community);
+            JsonNode root = objectMapper.readTree(result);
+            if (queryDao.checkQueryAllData(queryConf, root.get("data"))) {
+                if (isPartial(root)) {
+                    logger.warn("refresh {} all returned partial data", community);
+                    redisDao.set(key, result, partialExpire);
+                } else {
+                    redisDao.set(key, result, -1L);
+                }
+                return result;
+            }
+            logger.warn("refresh {} all skipped, data is not valid", community);
+        } catch (Exception e) {
+            logger.error("refresh {} all exception", community, e);
+        } finally {
+            redisDao.unlock(lockKey, owner);
+        }
+        return null;
+    }
+
+    /**
+     * Whether the cached data is older than redis.flush.interval.
+     *
+     * @param cached cached data.
+     * @return true if stale.
+     */
+    public boolean isStale(String cached) {
+        return isStale(cached, flushInterval);
+    }
+
+    private boolean isStale(String cached, long maxAge) {
+        try {
+            return getAge(cached) >= maxAge;
+        } catch (Exception e) {
+            logger.error("exception", e);
+            return true;
+        }
+    }
+
+    private boolean isPartial(JsonNode root) {
+        return root.path("partial").asBoolean(false);
+    }
+
+    private long getAge(String cached) throws Exception {
+        SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ssXXX");
+        String updateAt = objectMapper.readTree(cached).get("update_at").asText();
+        return new Date().getTime() - sdf.parse(updateAt).getTime();
+    }
+
+    private String getKey(String community) {
+        return community.toLowerCase() + ITEM;
+    }
+}
@@ -11,8 +11,8 @@
 
 package com.datastat.service;
 
-import com.auth0.jwt.JWT;
 import com.auth0.jwt.interfaces.DecodedJWT;
+import com.datastat.aop.QueryCache;
 import com.datastat.config.context.QueryConfContext;
 import com.datastat.dao.QueryDao;
 import com.datastat.dao.RedisDao;
@@ -25,13 +25,18 @@ import com.datastat.model.vo.*;
 import com.datastat.result.ReturnCode;
 import com.datastat.util.ArrayListUtil;
 import com.datastat.util.ClientUtil;
+import com.datastat.util.EsExportWriter;
+import com.datastat.util.PageSnapshot;
 import com.datastat.util.PageUtils;
-import com.datastat.util.RSAUtil;
 import com.datastat.util.ResultUtil;
+import com.datastat.util.SigSearchIndex;
 import com.datastat.util.StringValidationUtil;
+import com.datastat.util.TokenCacheUtil;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.datastat.model.DatastatRequestBody;
 import com.datastat.model.HmsExportDataReq;
 import com.datastat.model.IsvCount;
@@ -47,6 +52,7 @@ import com.datastat.model.meetup.MeetupApplyForm;
 
 import jakarta.annotation.PostConstruct;
 import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -56,9 +62,13 @@ import org.springframework.core.env.Environment;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
 
-import java.security.interfaces.RSAPrivateKey;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.text.SimpleDateFormat;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 
 @Primary
 @Service(value = "queryService")
@@ -84,14 +94,25 @@ public class QueryService {
     @Autowired
     ObjectMapper objectMapper;
 
+    @Autowired
+    QueryAllRefreshService queryAllRefreshService;
+
     private static long redisDefaultExpire;
     private static List<String> communityList;
     private static final Logger logger = LoggerFactory.getLogger(QueryService.class);
+    private final Map<String, SigSearchIndex> sigSearchIndexes = new ConcurrentHashMap<>();
+    private long sigSearchCheckMillis;
+    private Cache<String, PageSnapshot> pageSnapshots;
 
     @PostConstruct
     public void init() {
         redisDefaultExpire = Long.parseLong(env.getProperty("redis.keyExpire", "60"));
         communityList = Arrays.asList(env.getProperty("communitys", "").split(","));
+        sigSearchCheckMillis = Long.parseLong(env.getProperty("sig.search.check", "60")) * 1000L;
+        pageSnapshots = CacheBuilder.newBuilder()
+                .maximumSize(Long.parseLong(env.getProperty("page.snapshot.size", "1000")))
+                .expireAfterAccess(Long.parseLong(env.getProperty("page.snapshot.expire", "600")), TimeUnit.SECONDS)
+                .build();
     }
 
     public Boolean checkCommunity(String community) {
@@ -101,133 +122,83 @@ public class QueryService {
         return false;
     }
 
+    @QueryCache
     public String queryContributors(HttpServletRequest request, String community) {
         String item = "contributors";
-        String key = community + item;
-        String result = null; //(String) redisDao.get(key);
-        if (result == null) {
-            QueryDao queryDao = getQueryDao(request);
-            CustomPropertiesConfig queryConf = getQueryConf(request);
-            result = queryDao.queryContributors(queryConf, item);
-//            redisDao.set(key, result, redisDefaultExpire);
-        }
-        return result;
+        QueryDao queryDao = getQueryDao(request);
+        CustomPropertiesConfig queryConf = getQueryConf(request);
+        return queryDao.queryContributors(queryConf, item);
     }
 
+    @QueryCache
     public String queryDurationAggFromProjectHostArchPackage(HttpServletRequest request, String community) {
         String item = "avgDuration";
-        String key = community + item;
-        String result = null; //(String) redisDao.get(key);
-        if (result == null) {
-            QueryDao queryDao = getQueryDao(request);
-            CustomPropertiesConfig queryConf = getQueryConf(request);
-            result = queryDao.queryDurationAggFromProjectHostArchPackage(queryConf, item);
-//            redisDao.set(key, result, redisDefaultExpire);
-        }
-        return result;
+        QueryDao queryDao = getQueryDao(request);
+        CustomPropertiesConfig queryConf = getQueryConf(request);
+        return queryDao.queryDurationAggFromProjectHostArchPackage(queryConf, item);
     }
 
+    @QueryCache
     public String querySigs(HttpServletRequest request, String community) {
         String item = "sigs";
-        String key = community + item;
-        String result = null; //(String) redisDao.get(key);
-        if (result == null) {
-            QueryDao queryDao = getQueryDao(request);
-            CustomPropertiesConfig queryConf = getQueryConf(request);
-            result = queryDao.querySigs(queryConf, item);
-//            redisDao.set(key, result, redisDefaultExpire);
-        }
-        return result;
+        QueryDao queryDao = getQueryDao(request);
+        CustomPropertiesConfig queryConf = getQueryConf(request);
+        return queryDao.querySigs(queryConf, item);
     }
 
+    @QueryCache
     public String queryUsers(HttpServletRequest request, String community) {
         String item = "users";
-        String key = community + item;
-        String result = null; //(String) redisDao.get(key);
-        if (result == null) {
-            QueryDao queryDao = getQueryDao(request);
-            CustomPropertiesConfig queryConf = getQueryConf(request);
-            result = queryDao.queryUsers(queryConf, item);
-//            redisDao.set(key, result, redisDefaultExpire);
-        }
-        return result;
+        QueryDao queryDao = getQueryDao(request);
+        CustomPropertiesConfig queryConf = getQueryConf(request);
+        return queryDao.queryUsers(queryConf, item);
     }
 
+    @QueryCache
     public String queryNoticeUsers(HttpServletRequest request, String community) {
         String item = "noticeusers";
-        String key = community + item;
-        String result = null; //(String) redisDao.get(key);
-        if (result == null) {
-            QueryDao queryDao = getQueryDao(request);
-            CustomPropertiesConfig queryConf = getQueryConf(request);
-            result = queryDao.queryNoticeUsers(queryConf, item);
-//            redisDao.set(key, result, redisDefaultExpire);
-        }
-        return result;
+        QueryDao queryDao = getQueryDao(request);
+        CustomPropertiesConfig queryConf = getQueryConf(request);
+        return queryDao.queryNoticeUsers(queryConf, item);
     }
 
+    @QueryCache(expire = 3600)
     public String queryModuleNums(HttpServletRequest request, String community) {
         String item = "modulenums";
-        String key = community + item;
-        String result = null; //(String) redisDao.get(key);
-        if (result == null) {
-            QueryDao queryDao = getQueryDao(request);
-            CustomPropertiesConfig queryConf = getQueryConf(request);
-            result = queryDao.queryModuleNums(queryConf, item);
-//            redisDao.set(key, result, redisDefaultExpire);
-        }
-        return result;
+        QueryDao queryDao = getQueryDao(request);
+        CustomPropertiesConfig queryConf = getQueryConf(request);
+        return queryDao.queryModuleNums(queryConf, item);
     }
 
+    @QueryCache
     public String queryBusinessOsv(HttpServletRequest request, String community) {
         String item = "businessOsv";
-        String key = community + item;
-        String result = null; //(String) redisDao.get(key);
-        if (result == null) {
-            QueryDao queryDao = getQueryDao(request);
-            CustomPropertiesConfig queryConf = getQueryConf(request);
-            result = queryDao.queryBusinessOsv(queryConf, item);
-//            redisDao.set(key, result, redisDefaultExpire);
-        }
-        return result;
+        QueryDao queryDao = getQueryDao(request);
+        CustomPropertiesConfig queryConf = getQueryConf(request);
+        return queryDao.queryBusinessOsv(queryConf, item);
     }
 
+    @QueryCache
     public String queryCommunityMembers(HttpServletRequest request, String community) {
         String item = "communitymembers";
-        String key = community + item;
-        String result = null; //(String) redisDao.get(key);
-        if (result == null) {
-            QueryDao queryDao = getQueryDao(request);
-            CustomPropertiesConfig queryConf = getQueryConf(request);
-            result = queryDao.queryCommunityMembers(queryConf, item);
-//            redisDao.set(key, result, redisDefaultExpire);
-        }
-        return result;
+        QueryDao queryDao = getQueryDao(request);
+        CustomPropertiesConfig queryConf = getQueryConf(request);
+        return queryDao.queryCommunityMembers(queryConf, item);
     }
 
+    @QueryCache
     public String queryDownload(HttpServletRequest request, String community) {
         String item = "download";
-        String key = community + item;
-        String result = null; //(String) redisDao.get(key);
-        if (result == null) {
-            QueryDao queryDao = getQueryDao(request);
-            CustomPropertiesConfig queryConf = getQueryConf(request);
-            result = queryDao.queryDownload(queryConf, item);
-//            redisDao.set(key, result, redisDefaultExpire);
-        }
-        return result;
+        QueryDao queryDao = getQueryDao(request);
+        CustomPropertiesConfig queryConf = getQueryConf(request);
+        return queryDao.queryDownload(queryConf, item);
     }
 
+    @QueryCache
     public String queryCount(HttpServletRequest request, String community, String item) {
-        String key = community + item;
-        String result = null; //(String) redisDao.get(key);
-        if (result == null) {
-            QueryDao queryDao = getQueryDao(request);
-            CustomPropertiesConfig queryConf = getQueryConf(request);
-            result = queryDao.queryCount(queryConf, item);
-//            redisDao.set(key, result, redisDefaultExpire);
-        }
-        return result;
+        QueryDao queryDao = getQueryDao(request);
+        CustomPropertiesConfig queryConf = getQueryConf(request);
+        return queryDao.queryCount(queryConf, item);
     }
 
     public String queryAll(HttpServletRequest request, String community) throws Exception {
@@ -236,29 +207,13 @@ public class QueryService {
         String item = "all";
         String key = community.toLowerCase() + item;
         String result = (String) redisDao.get(key);
-        Boolean isUpdate = true;
         try {
-            if (result != null) {
-                SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ssXXX");
-                String updateAt = objectMapper.readTree(result).get("update_at").asText();
-                Date updateDate = sdf.parse(updateAt);
-                Date now = new Date();
-                long diffs = (now.getTime() - updateDate.getTime());
-                // The redis cache is valid
-                if (diffs < Long.parseLong(env.getProperty("redis.flush.interval", "7200000"))) {
-                    isUpdate = false;
-                }
-            }
-            // The redis cache is expired and needs to be updated
-            if (isUpdate) {
-                QueryDao queryDao = getQueryDao(request);
-                CustomPropertiesConfig queryConf = getQueryConf(request);
-                String resultNew = queryDao.queryAll(queryConf, community);
-                JsonNode newData = objectMapper.readTree(resultNew).get("data");
-                if (queryDao.checkQueryAllData(queryConf, newData)) {
-                    redisDao.set(key, resultNew, -1L);
-                    result = resultNew;
-                }
+            if (result == null) {
+                // cold cache, compute once across nodes
+                result = queryAllRefreshService.load(community);
+            } else if (queryAllRefreshService.isStale(result)) {
+                // serve the stale value and revalidate in background
+                queryAllRefreshService.refreshAsync(community);
             }
         } catch (Exception e) {
             logger.error("queryAll exception - {}" + e.getMessage());
@@ -294,18 +249,13 @@ public class QueryService {
         return queryDao.putBlueZoneUser(queryConf, userVo, item);
     }
 
+    @QueryCache(expire = 3600)
     public String queryOrgStarAndFork(HttpServletRequest request, String community) {
         String item = "starFork";
-        String key = community + item;
-        String result = null; //(String) redisDao.get(key);
-        if (result == null) {
-            QueryDao queryDao = getQueryDao(request);
-            // CustomPropertiesConfig queryConf = getQueryConf(request);
-            CustomPropertiesConfig queryConf = queryConfContext.getQueryConfig("queryConf");
-            result = queryDao.queryOrgStarAndFork(queryConf, community, item);
-//            redisDao.set(key, result, redisDefaultExpire);
-        }
-        return result;
+        QueryDao queryDao = getQueryDao(request);
+        // CustomPropertiesConfig queryConf = getQueryConf(request);
+        CustomPropertiesConfig queryConf = queryConfContext.getQueryConfig("queryConf");
+        return queryDao.queryOrgStarAndFork(queryConf, community, item);
     }
 
     public String queryCveDetails(HttpServletRequest request, String community, String lastCursor, String pageSize) {
@@ -323,6 +273,12 @@ public class QueryService {
         return result;
     }
 
+    public void exportCveDetails(HttpServletRequest request, HttpServletResponse response, String community,
+            String format, String lastCursor) throws IOException {
+        export(request, response, community, format, "cveDetails",
+                (queryDao, queryConf, writer) -> queryDao.exportCveDetails(queryConf, lastCursor, writer));
+    }
+
     public String queryNewYearPer(HttpServletRequest request, String oauth2_proxy, String platform) {
         QueryDao queryDao = getQueryDao(request);
         String referer = request.getHeader("Referer");
@@ -367,6 +323,60 @@ public class QueryService {
         return result;
     }
 
+    public void exportBugQuestionnaire(HttpServletRequest request, HttpServletResponse response, String community,
+            String format, String lastCursor) throws IOException {
+        export(request, response, community, format, "bugQuestionnaire",
+                (queryDao, queryConf, writer) -> queryDao.exportBugQuestionnaire(queryConf, lastCursor, writer));
+    }
+
+    /**
+     * Export task writing the documents of a community to the writer.
+     */
+    @FunctionalInterface
+    private interface ExportTask {
+        long run(QueryDao queryDao, CustomPropertiesConfig queryConf, EsExportWriter writer) throws IOException;
+    }
+
+    /**
+     * Stream an export straight to the servlet output. A failure before the response is committed,
+     * such as a malformed lastCursor or a rejected search, is answered with 400. After the commit the
+     * exception is rethrown so the connection is aborted, and the client resumes with the _cursor of
+     * the last record it received as lastCursor.
+     */
+    private void export(HttpServletRequest request, HttpServletResponse response, String community, String format,
+            String item, ExportTask task) throws IOException {
+        if (!checkCommunity(community)) {
+            writeJson(response, ResultUtil.resultJsonStr(404, "error", "not found"));
+            return;
+        }
+        if (!EsExportWriter.isSupported(format)) {
+            writeJson(response, ResultUtil.resultJsonStr(400, "error", "format error"));
+            return;
+        }
+        QueryDao queryDao = getQueryDao(request);
+        CustomPropertiesConfig queryConf = getQueryConf(request);
+        response.setContentType(EsExportWriter.contentType(format));
+        response.setHeader("Content-Disposition", "attachment; filename=" + item + "." + format.toLowerCase());
+        EsExportWriter writer = EsExportWriter.of(format, response.getOutputStream(), null);
+        try {
+            long count = task.run(queryDao, queryConf, writer);
+            writer.flush();
+            logger.info("{} export of {} finished, {} documents", item, community, count);
+        } catch (IOException | RuntimeException e) {
+            logger.error("{} export of {} exception - {}", item, community, e.getMessage());
+            if (response.isCommitted()) {
+                throw e;
+            }
+            response.reset();
+            writeJson(response, ResultUtil.resultJsonStr(400, item, ReturnCode.RC400.getMessage(), ReturnCode.RC400.getMessage()));
+        }
+    }
+
+    private void writeJson(HttpServletResponse response, String json) throws IOException {
+        response.setContentType("application/json;charset=UTF-8");
+        response.getOutputStream().write(json.getBytes(StandardCharsets.UTF_8));
+    }
+
     public String putBugQuestionnaire(HttpServletRequest request, String community, String lang, BugQuestionnaireVo bugQuestionnaireVo) {
         String item = "bugQuestionnaire";
         String result = "";
@@ -460,15 +470,15 @@ public class QueryService {
         return result;
     }
 
-    public String querySigInfo(HttpServletRequest request, String community, String sig, String repo, String user, String search, String page, String pageSize) throws Exception {
+    public String querySigInfo(HttpServletRequest request, String community, String sig, String repo, String user, String search, String page, String pageSize, String cursor) throws Exception {
         if (!checkCommunity(community)) return ResultUtil.resultJsonStr(404, "error", "not found");
         if (search != null && search.equals("fuzzy")) {
-            return queryFuzzySigInfo(request, community, sig, repo, user, search, page, pageSize);
+            return queryFuzzySigInfo(request, community, sig, repo, user, page, pageSize, cursor);
         }
         return querySigInfo(request, community, sig);
     }
 
-    public String querySigRepo(HttpServletRequest request, String community, String sig, String page, String pageSize) throws Exception {
+    public String querySigRepo(HttpServletRequest request, String community, String sig, String page, String pageSize, String cursor) throws Exception {
         String item = "repo";
         String key = community.toLowerCase() + sig + item;
         String result = (String) redisDao.get(key);
@@ -478,26 +488,22 @@ public class QueryService {
             result = queryDao.querySigRepo(queryConf, sig);
             redisDao.set(key, result, redisDefaultExpire);
         }
-        if (pageSize == null || page == null) return result;
+        if (pageSize == null || (page == null && cursor == null)) return result;
 
-        JsonNode all = objectMapper.readTree(result);
-        if (all.get("data") != null) {
-            JsonNode res = all.get("data");
-            ArrayList<String> resList = objectMapper.convertValue(res, new TypeReference<>() {
-            });
-
-            int currentPage = Integer.parseInt(page);
-            int pagesize = Integer.parseInt(pageSize);
-            Map data = PageUtils.getDataByPage(currentPage, pagesize, resList);
-            ArrayList<HashMap<String, Object>> dataList = new ArrayList<>();
-            dataList.add((HashMap<String, Object>) data);
-            HashMap<String, Object> resMap = new HashMap<>();
-            resMap.put("code", 200);
-            resMap.put("data", dataList);
-            resMap.put("msg", "success");
-            result = objectMapper.valueToTree(dataList).toString();
-        }
-        return result;
+        String source = result;
+        PageSnapshot snapshot = getPageSnapshot(key, source, () -> {
+            JsonNode res = objectMapper.readTree(source).get("data");
+            if (res == null) {
+                return null;
+            }
+            ArrayList<String> items = new ArrayList<>();
+            res.forEach(repo -> items.add(repo.toString()));
+            return items;
+        });
+        if (snapshot == null) return result;
+        String data = pageArray(snapshot, page, pageSize, cursor);
+        if (data == null) return ResultUtil.resultJsonStr(400, "cursor", null, "cursor expired");
+        return data;
     }
 
     public String querySigCompanyContributors(HttpServletRequest request, String community, String contributeType, String timeRange, String sig) {
@@ -605,17 +611,12 @@ public class QueryService {
         return result;
     }
 
+    @QueryCache(expire = 3600)
     public String queryCommunityRepos(HttpServletRequest request, String community) {
         if (!checkCommunity(community)) return ResultUtil.resultJsonStr(404, "error", "not found");
-        String key = community.toLowerCase() + "repos";
-        String result = null; //(String) redisDao.get(key);
-        if (result == null) {
-            QueryDao queryDao = getQueryDao(request);
-            CustomPropertiesConfig queryConf = getQueryConf(request);
-            result = queryDao.queryCommunityRepos(queryConf);
-//            redisDao.set(key, result, redisDefaultExpire);
-        }
-        return result;
+        QueryDao queryDao = getQueryDao(request);
+        CustomPropertiesConfig queryConf = getQueryConf(request);
+        return queryDao.queryCommunityRepos(queryConf);
     }
 
     public String querySigScore(HttpServletRequest request, String community, String sig, String timeRange) {
@@ -915,51 +916,95 @@ public class QueryService {
         return result;
     }
 
-    private String queryFuzzySigInfo(HttpServletRequest request, String community, String sig, String repo, String user, String search, String page, String pageSize) throws Exception {
+    private String queryFuzzySigInfo(HttpServletRequest request, String community, String sig, String repo, String user, String page, String pageSize, String cursor) throws Exception {
+        SigSearchIndex index = getSigSearchIndex(request, community, sig);
+        if (index == null) {
+            return resultJsonStr(400, ReturnCode.RC400.getMessage(), ReturnCode.RC400.getMessage());
+        }
+        // searching the index is cheap, a snapshot per query would only evict the sig and repo snapshots
+        PageSnapshot snapshot = new PageSnapshot(PageSnapshot.versionOf(index.getSource()), index.search(sig, repo, user));
+
+        String data = pageSize != null && (page != null || cursor != null)
+                ? pageArray(snapshot, page, pageSize, cursor) : snapshot.all();
+        if (data == null) {
+            return ResultUtil.resultJsonStr(400, "cursor", null, "cursor expired");
+        }
+        return "{\"code\":200,\"data\":" + data + ",\"msg\":\"success\"}";
+    }
+
+    /**
+     * Get the presorted snapshot of a cached result. It is built once per version of the
+     * result, later pages are cut from it without querying or sorting again.
+     *
+     * @param key cache key of the result.
+     * @param source cached result.
+     * @param items builds the rendered items in page order, returns null if the result has none.
+     * @return PageSnapshot, null if the result has no items.
+     * @throws Exception if the items cannot be built.
+     */
+    private PageSnapshot getPageSnapshot(String key, String source, Callable<List<String>> items) throws Exception {
+        String version = PageSnapshot.versionOf(source);
+        PageSnapshot snapshot = pageSnapshots.getIfPresent(key);
+        if (snapshot == null || !snapshot.getVersion().equals(version)) {
+            List<String> list = items.call();
+            if (list == null) {
+                return null;
+            }
+            snapshot = new PageSnapshot(version, list);
+            pageSnapshots.put(key, snapshot);
+        }
+        return snapshot;
+    }
+
+    /**
+     * One page of a snapshot as [{data, total, version, cursor}], by cursor if given, else by page number.
+     *
+     * @return json array, null if the cursor is of another version.
+     */
+    private String pageArray(PageSnapshot snapshot, String page, String pageSize, String cursor) {
+        int pagesize = Integer.parseInt(pageSize);
+        int offset;
+        if (StringUtils.isNotBlank(cursor)) {
+            offset = snapshot.offsetOf(cursor);
+            if (offset < 0) {
+                return null;
+            }
+        } else {
+            offset = PageSnapshot.offsetOf(Integer.parseInt(page), pagesize);
+        }
+        return "[" + snapshot.pageObject(offset, pagesize) + "]";
+    }
+
+    /**
+     * Get the search index of all sigs of a community. The index is kept in memory and
+     * rebuilt when the sig data stored in redis has changed, compared every sig.search.check seconds.
+     *
+     * @return SigSearchIndex, null if the sig data cannot be queried.
+     */
+    private SigSearchIndex getSigSearchIndex(HttpServletRequest request, String community, String sig) throws Exception {
+        SigSearchIndex index = sigSearchIndexes.get(community);
+        if (index != null && System.currentTimeMillis() - index.getCheckedAt() < sigSearchCheckMillis) {
+            return index;
+        }
         String key = community + "allsiginfo";
-        String result = null;
-        result = (String) redisDao.get(key);
+        String result = (String) redisDao.get(key);
         if (result == null) {
             QueryDao queryDao = getQueryDao(request);
             CustomPropertiesConfig queryConf = getQueryConf(request);
             result = queryDao.querySigInfo(queryConf, sig);
             redisDao.set(key, result, redisDefaultExpire);
         }
-        ObjectMapper objectMapper = new ObjectMapper();
+        if (index != null && result.equals(index.getSource())) {
+            index.markChecked();
+            return index;
+        }
         JsonNode all = objectMapper.readTree(result);
         if (all.get("code").asInt() != 200) {
-            return resultJsonStr(400, ReturnCode.RC400.getMessage(), ReturnCode.RC400.getMessage());
+            return null;
         }
-        JsonNode res = all.get("data");
-        ArrayList<HashMap<String, Object>> resList = objectMapper.convertValue(res, new TypeReference<>() {
-        });
-        ArrayList<HashMap<String, Object>> tempList = new ArrayList<>();
-        for (HashMap<String, Object> list : resList) {
-            String sig_name = list.get("sig_name").toString();
-            ArrayList<String> repos = (ArrayList<String>) list.get("repos");
-            Boolean bool = sig != null && !sig_name.toLowerCase().contains(sig.toLowerCase()) ? false : true;
-            ArrayList<String> maintainers = (ArrayList<String>) list.get("maintainers");
-            if (bool && matchList(repos, repo) && matchList(maintainers, user)) {
-                tempList.add(list);
-            }
-        }
-
-        Collections.sort(tempList, Comparator.comparing(t -> t.get("sig_name").toString().toLowerCase()));
-
-        if (pageSize != null && page != null) {
-            int currentPage = Integer.parseInt(page);
-            int pagesize = Integer.parseInt(pageSize);
-            Map data = PageUtils.getDataByPage(currentPage, pagesize, tempList);
-            ArrayList<HashMap<String, Object>> dataList = new ArrayList<>();
-            dataList.add((HashMap<String, Object>) data);
-            tempList = dataList;
-        }
-        HashMap<String, Object> resMap = new HashMap<>();
-        resMap.put("code", 200);
-        resMap.put("data", tempList);
-        resMap.put("msg", "success");
-        result = objectMapper.valueToTree(resMap).toString();
-        return result;
+        index = SigSearchIndex.build(result, all.get("data"));
+        sigSearchIndexes.put(community, index);
+        return index;
     }
 
     private Boolean matchList(ArrayList<String> arrayList, String str) {
@@ -979,8 +1024,7 @@ public class QueryService {
 
     private boolean checkPermission(HttpServletRequest request, QueryDao queryDao, CustomPropertiesConfig queryConf, String token, String company) {
         try {
-            RSAPrivateKey privateKey = RSAUtil.getPrivateKey(env.getProperty("rsa.authing.privateKey"));
-            DecodedJWT decode = JWT.decode(RSAUtil.privateDecrypt(token, privateKey));
+            DecodedJWT decode = TokenCacheUtil.decodeToken(token, env.getProperty("rsa.authing.privateKey"));
             String permissionList = decode.getClaim("permission").asString();
             String[] pers = new String(Base64.getDecoder().decode(permissionList.getBytes())).split(",");
             for (String per : pers) {
@@ -1028,7 +1072,7 @@ public class QueryService {
         String serviceType = community.toLowerCase() + filter.toLowerCase() + "MetricDao";
         MetricDao metricDao = metricDaoContext.getQueryMetricsDao(serviceType);
         CustomPropertiesConfig queryConf = getQueryConf(request);
-        String result = metricDao.queryMetricsData(queryConf, body);
+        String result = metricDao.queryMetricsData(queryConf, community, body);
         return result;
     }
 
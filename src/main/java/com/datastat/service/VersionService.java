@@ -11,21 +11,32 @@
 
 package com.datastat.service;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.databind.node.TextNode;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 
 import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 
 import com.datastat.dao.RedisDao;
 import com.datastat.model.CustomPropertiesConfig;
 import com.datastat.util.EsAsyncHttpUtil;
-import com.datastat.util.PageUtils;
+import com.datastat.util.PageSnapshot;
 
+import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 import org.apache.commons.lang3.StringUtils;
@@ -33,6 +44,8 @@ import org.asynchttpclient.ListenableFuture;
 import org.asynchttpclient.Request;
 import org.asynchttpclient.RequestBuilder;
 import org.asynchttpclient.Response;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.core.env.Environment;
 import org.springframework.stereotype.Service;
@@ -61,10 +74,27 @@ public class VersionService {
 
     private static ObjectMapper objectMapper = new ObjectMapper();
 
+    private static final Logger logger = LoggerFactory.getLogger(VersionService.class);
+
+    private final Map<String, VersionIndex> indexes = new ConcurrentHashMap<>();
+
+    private final Map<String, CustomPropertiesConfig> indexConfs = new ConcurrentHashMap<>();
+
+    private ScheduledExecutorService refreshService;
+
     @PostConstruct
     public void init() {
         esUrl = String.format("%s://%s:%s/", env.getProperty("es.scheme", "https"),
                 env.getProperty("es.host", "0.0.0.0"), env.getProperty("es.port", "9200"));
+        long interval = Long.parseLong(env.getProperty("version.index.refresh.interval", "600"));
+        refreshService = Executors.newSingleThreadScheduledExecutor(
+                new ThreadFactoryBuilder().setNameFormat("version-index-refresh-%d").setDaemon(true).build());
+        refreshService.scheduleWithFixedDelay(this::refreshIndexes, interval, interval, TimeUnit.SECONDS);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        refreshService.shutdownNow();
     }
 
 
@@ -74,32 +104,38 @@ public class VersionService {
      * @param repo:
      * @param pageSize:
      * @param currentPage:
+     * @param cursor: cursor of the next page returned by the previous one
      * @return: java.util.List
      * @Author: xiazhonghai
      * @Date: 2021/3/22 10:18
      */
 
     public String getVersionByRepoBranch(CustomPropertiesConfig queryConf, String community, String repo, int pageSize,
-            int currentPage) {
+            int currentPage, String cursor) {
         try {
-            String data = (String) redisDao.get(community + redisKey);
-            if (StringUtils.isBlank(data)) {
-                String url = esUrl + queryConf.getGiteeAllIndex() + "/_search";
-                long expire = Long.valueOf(env.getProperty("redis.keyExpire"));
-
-                RequestBuilder builder = asyncHttpUtil.getBuilder();
-                String bodyData = "{\"query\":{\"bool\":{\"filter\":[{\"query_string\":{\"analyze_wildcard\":true,\"query\":\"is_gitee_repo:1 AND !is_removed:1\"}}]}},\"_source\":[\"branch_detail\"],\"size\":10000}";
-                Request request = builder.setUrl(url).setBody(bodyData).build();
-                ListenableFuture<Response> future = EsAsyncHttpUtil.getClient().executeRequest(request);
-                Response response = future.get();
-                String responseBody = response.getResponseBody(StandardCharsets.UTF_8);
-                redisDao.set(community + redisKey, responseBody, expire);
-                Map map = assemblyData(repo, responseBody, currentPage, pageSize);
-                return resultJsonStr(200, objectMapper.valueToTree(map.get("data")), map.get("total"), "SUCCESS");
+            VersionIndex index = indexes.get(community);
+            if (index == null) {
+                index = loadIndex(queryConf, community);
+            }
+            PageSnapshot snapshot = index.snapshot(repo);
+            int offset;
+            int limit;
+            if (StringUtils.isNotBlank(cursor)) {
+                offset = snapshot.offsetOf(cursor);
+                if (offset < 0) {
+                    return resultJsonStr(400, null, 0, "cursor expired");
+                }
+                limit = pageSize > 0 ? pageSize : snapshot.size();
+            } else if (pageSize == 0 || currentPage == 0) {
+                offset = 0;
+                limit = snapshot.size();
             } else {
-                Map map = assemblyData(repo, data, currentPage, pageSize);
-                return resultJsonStr(200, objectMapper.valueToTree(map.get("data")), map.get("total"), "SUCCESS");
+                offset = PageSnapshot.offsetOf(currentPage, pageSize);
+                limit = pageSize;
             }
+            return "{\"code\":200,\"data\":" + snapshot.page(offset, limit) + ",\"total\":" + snapshot.size()
+                    + ",\"version\":\"" + snapshot.getVersion() + "\",\"cursor\":\"" + snapshot.nextCursor(offset, limit)
+                    + "\",\"msg\":\"SUCCESS\"}";
         } catch (Exception e) {
             return resultJsonStr(400, null, 0, "Failed");
         }
@@ -110,77 +146,132 @@ public class VersionService {
         return "{\"code\":" + code + ",\"data\":" + data + ",\"total\":" + total + ",\"msg\":\"" + msg + "\"}";
     }
 
-    /***
-     * 功能描述:组装过滤数据
-     * @param data: 待处理数据，使用json 反序列化
-     * @param page: 分页
-     * @param pageSize:一页多少数据
-     * @return: java.util.List
-     * @Author: xiazhonghai
-     * @Date: 2021/3/22 11:27
+    /**
+     * Build the index of a community on its first request, from the response cached in redis if any.
+     */
+    private synchronized VersionIndex loadIndex(CustomPropertiesConfig queryConf, String community) throws Exception {
+        VersionIndex index = indexes.get(community);
+        if (index != null) {
+            return index;
+        }
+        String data = (String) redisDao.get(community + redisKey);
+        index = StringUtils.isBlank(data) ? fetchIndex(queryConf, community) : VersionIndex.build(data, objectMapper.readTree(data));
+        indexConfs.put(community, queryConf);
+        indexes.put(community, index);
+        return index;
+    }
+
+    /**
+     * Query the branch details of all repos from es, keeping the response in redis once it is indexed.
      */
-    private Map assemblyData(String repo, String data, int page, int pageSize) throws JsonProcessingException {
-        Map allDataMap = objectMapper.readValue(data, Map.class);
-        List<Map> datas = (List) (((Map) allDataMap.get("hits")).get("hits"));
-        Stream<Map> source = datas.stream().filter(map -> {
-            Object source1 = map.get("_source");
-            if (map == null || ((Map) source1).size() <= 0) {
-                return false;
+    private VersionIndex fetchIndex(CustomPropertiesConfig queryConf, String community) throws Exception {
+        String url = esUrl + queryConf.getGiteeAllIndex() + "/_search";
+        long expire = Long.valueOf(env.getProperty("redis.keyExpire"));
+
+        RequestBuilder builder = asyncHttpUtil.getBuilder();
+        String bodyData = "{\"query\":{\"bool\":{\"filter\":[{\"query_string\":{\"analyze_wildcard\":true,\"query\":\"is_gitee_repo:1 AND !is_removed:1\"}}]}},\"_source\":[\"branch_detail\"],\"size\":10000}";
+        Request request = builder.setUrl(url).setBody(bodyData).build();
+        ListenableFuture<Response> future = EsAsyncHttpUtil.getClient().executeRequest(request);
+        Response response = future.get();
+        String responseBody = response.getResponseBody(StandardCharsets.UTF_8);
+        VersionIndex index = VersionIndex.build(responseBody, objectMapper.readTree(responseBody));
+        redisDao.set(community + redisKey, responseBody, expire);
+        return index;
+    }
+
+    /**
+     * Rebuild the index of every community requested so far, keeping the old one if es fails.
+     */
+    private void refreshIndexes() {
+        indexConfs.forEach((community, queryConf) -> {
+            try {
+                indexes.put(community, fetchIndex(queryConf, community));
+            } catch (Exception e) {
+                logger.error("version index refresh exception - {}", community, e);
             }
-            return true;
         });
-        if (StringUtils.isNotBlank(repo)) {
-            source = source.filter(map -> {
-                String id = map.get("_id").toString();
-                if (!id.contains("src-openeuler")){
-                 return false;
+    }
+
+    /**
+     * Immutable version index of one community. The {repo: branch_detail} items are rendered
+     * once, sorted by document id, and the src-openeuler items grouped by repo name.
+     */
+    private static final class VersionIndex {
+        private final PageSnapshot items;
+        private final Map<String, PageSnapshot> repoItems;
+        private final PageSnapshot empty;
+
+        private VersionIndex(PageSnapshot items, Map<String, PageSnapshot> repoItems, PageSnapshot empty) {
+            this.items = items;
+            this.repoItems = repoItems;
+            this.empty = empty;
+        }
+
+        static VersionIndex build(String data, JsonNode response) throws IOException {
+            JsonNode hits = response.at("/hits/hits");
+            if (!hits.isArray()) {
+                throw new IOException("no hits in version response");
+            }
+            TreeMap<String, String> sorted = new TreeMap<>();
+            for (JsonNode hit : hits) {
+                JsonNode source = hit.get("_source");
+                if (source == null || !source.isObject() || source.size() <= 0) {
+                    continue;
                 }
-                String repoName = id.substring(id.lastIndexOf("/") + 1);
-                if (repo.equals(repoName)) {
-                    return true;
-                } else {
-                    return false;
+                String id = hit.get("_id").asText();
+                ObjectNode item = objectMapper.createObjectNode();
+                item.set(repoName(id), normalizeBranches((ObjectNode) source));
+                sorted.put(id, item.toString());
+            }
+
+            HashMap<String, List<String>> byRepo = new HashMap<>();
+            for (Map.Entry<String, String> entry : sorted.entrySet()) {
+                if (entry.getKey().contains("src-openeuler")) {
+                    byRepo.computeIfAbsent(repoName(entry.getKey()), k -> new ArrayList<>()).add(entry.getValue());
                 }
-            });
+            }
+            String version = PageSnapshot.versionOf(data);
+            HashMap<String, PageSnapshot> repoItems = new HashMap<>();
+            byRepo.forEach((repo, list) -> repoItems.put(repo, new PageSnapshot(version, list)));
+            return new VersionIndex(new PageSnapshot(version, new ArrayList<>(sorted.values())),
+                    Collections.unmodifiableMap(repoItems), new PageSnapshot(version, Collections.emptyList()));
+        }
+
+        /**
+         * Items of a repo, or of all repos if repo is blank.
+         */
+        PageSnapshot snapshot(String repo) {
+            return StringUtils.isNotBlank(repo) ? repoItems.getOrDefault(repo, empty) : items;
+        }
+
+        private static String repoName(String id) {
+            return id.substring(id.lastIndexOf("/") + 1);
         }
-        List<Map> collect = source.collect(Collectors.toList());
-        for (Map map : collect) {
-            map.remove("_type");
-            map.remove("_score");
-            map.remove("_index");
-            String id = map.remove("_id").toString();
-            String repoName = id.substring(id.lastIndexOf("/") + 1);
-            Object sourceItem = map.remove("_source");
-            map.put(repoName, sourceItem);
-            //对description 进行下类型转换
-            List branches = (List) ((Map) sourceItem).get("branches");
-            if (branches != null && branches.size() > 0) {
-                for (Map branch : (List<Map>) branches) {
-                    Object de = branch.remove("description");
-                    List description = null;
-                    if (de instanceof List){
-                        description = (List) de;
-                    } else if (de instanceof  String){
-                        description = new ArrayList();
-                        description.add(de);
-                    }
-                    if (description == null) {
-                        branch.put("description", "");
-                    } else {
-                        branch.put("description", description.get(0));
-                    }
 
+        /**
+         * Descriptions are stored as a string or a list, keep the string or the first element.
+         */
+        private static ObjectNode normalizeBranches(ObjectNode source) {
+            JsonNode branches = source.get("branches");
+            if (branches == null || !branches.isArray()) {
+                return source;
+            }
+            for (JsonNode branch : branches) {
+                if (!branch.isObject()) {
+                    continue;
+                }
+                JsonNode de = ((ObjectNode) branch).remove("description");
+                JsonNode description;
+                if (de != null && de.isArray() && de.size() > 0) {
+                    description = de.get(0);
+                } else if (de != null && de.isTextual()) {
+                    description = de;
+                } else {
+                    description = TextNode.valueOf("");
                 }
+                ((ObjectNode) branch).set("description", description);
             }
-        }
-        if(pageSize==0||page==0){
-            Map map = new HashMap();
-            map.put("data",collect);
-            map.put("total",collect.size());
-            return map;
-        }else {
-            Map dataByPage = PageUtils.getDataByPage(page, pageSize, collect);
-            return dataByPage;
+            return source;
         }
     }
 
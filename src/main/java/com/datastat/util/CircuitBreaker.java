@@ -0,0 +1,134 @@
+/* This project is licensed under the Mulan PSL v2.
+ You can use this software according to the terms and conditions of the Mulan PSL v2.
+ You may obtain a copy of Mulan PSL v2 at:
+     http://license.coscl.org.cn/MulanPSL2
+ THIS SOFTWARE IS PROVIDED ON AN "AS IS" BASIS, WITHOUT WARRANTIES OF ANY KIND, EITHER EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO NON-INFRINGEMENT, MERCHANTABILITY OR FIT FOR A PARTICULAR
+ PURPOSE.
+ See the Mulan PSL v2 for more details.
+ Create: 2024
+*/
+
+package com.datastat.util;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Consecutive-failure circuit breaker. It opens after a number of failures in a row,
+ * rejects calls while open, then lets a single trial call through whose outcome decides
+ * whether it closes again.
+ */
+public final class CircuitBreaker {
+    private static final Logger logger = LoggerFactory.getLogger(CircuitBreaker.class);
+    private final String name;
+    private final int failureThreshold;
+    private final long openMillis;
+    private final AtomicInteger failures = new AtomicInteger();
+    private final AtomicBoolean trial = new AtomicBoolean();
+    private volatile long openedAt;
+
+    /**
+     * Create a closed breaker.
+     *
+     * @param name name used in logs.
+     * @param failureThreshold consecutive failures that open the breaker.
+     * @param openMillis time the breaker stays open before a trial call.
+     */
+    public CircuitBreaker(String name, int failureThreshold, long openMillis) {
+        this.name = name;
+        this.failureThreshold = failureThreshold;
+        this.openMillis = openMillis;
+    }
+
+    /**
+     * Permission given to a call.
+     */
+    public enum Permit {
+        /** The breaker is open, the call must not be made. */
+        REJECTED,
+        /** The breaker is closed. */
+        CALL,
+        /** The single trial call of a half-open breaker, only its outcome closes the breaker. */
+        TRIAL
+    }
+
+    /**
+     * Ask whether a call may go through now.
+     *
+     * @return CALL if closed, TRIAL for the single trial of a half-open breaker, else REJECTED.
+     */
+    public Permit acquire() {
+        long opened = openedAt;
+        if (opened == 0L) {
+            return Permit.CALL;
+        }
+        if (System.currentTimeMillis() - opened < openMillis) {
+            return Permit.REJECTED;
+        }
+        return trial.compareAndSet(false, true) ? Permit.TRIAL : Permit.REJECTED;
+    }
+
+    /**
+     * Record a successful call. A trial call closes the breaker, calls let through before it
+     * opened do not, they say nothing about the cluster now.
+     *
+     * @param permit permit the call was made with.
+     */
+    public void onSuccess(Permit permit) {
+        if (permit == Permit.TRIAL) {
+            failures.set(0);
+            openedAt = 0L;
+            trial.set(false);
+            logger.info("circuit {} closed", name);
+        } else if (openedAt == 0L) {
+            failures.set(0);
+        }
+    }
+
+    /**
+     * Record a failed call, opening the breaker after too many in a row.
+     *
+     * @param permit permit the call was made with.
+     */
+    public void onFailure(Permit permit) {
+        if (permit == Permit.TRIAL) {
+            // the trial call failed, stay open for another period
+            openedAt = System.currentTimeMillis();
+            trial.set(false);
+            return;
+        }
+        if (openedAt == 0L && failures.incrementAndGet() >= failureThreshold) {
+            openedAt = System.currentTimeMillis();
+            logger.warn("circuit {} opened after {} failures", name, failureThreshold);
+        }
+    }
+
+    /**
+     * Give a permit back without an outcome, e.g. for a call the caller cancelled or cut short.
+     * The failure count is kept and a trial permit can be taken again right away.
+     *
+     * @param permit permit the call was made with.
+     */
+    public void release(Permit permit) {
+        if (permit == Permit.TRIAL) {
+            trial.set(false);
+        }
+    }
+
+    /**
+     * Current state.
+     *
+     * @return closed, open or half_open.
+     */
+    public String getState() {
+        long opened = openedAt;
+        if (opened == 0L) {
+            return "closed";
+        }
+        return System.currentTimeMillis() - opened < openMillis ? "open" : "half_open";
+    }
+}
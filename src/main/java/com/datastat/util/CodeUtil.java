@@ -11,9 +11,9 @@
 
 package com.datastat.util;
 
-import com.mashape.unirest.http.HttpResponse;
-import com.mashape.unirest.http.JsonNode;
-import com.mashape.unirest.http.Unirest;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.StringEntity;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.core.env.Environment;
@@ -57,12 +57,11 @@ public class CodeUtil {
                     String body = buildSmsBody(msgsms_sender, account, msgsms_template_id,
                             templateParas, "", msgsms_signature);
                     // 发送短信
-                    HttpResponse<JsonNode> response = Unirest.post(msgsms_url)
-                            .header("Content-Type", "application/x-www-form-urlencoded")
-                            .header("Authorization", CodeUtil.AUTH_HEADER_VALUE)
-                            .header("X-WSSE", wsseHeader)
-                            .body(body)
-                            .asJson();
+                    HttpPost httpPost = new HttpPost(msgsms_url);
+                    httpPost.addHeader("Authorization", CodeUtil.AUTH_HEADER_VALUE);
+                    httpPost.addHeader("X-WSSE", wsseHeader);
+                    httpPost.setEntity(new StringEntity(body, ContentType.APPLICATION_FORM_URLENCODED));
+                    HttpClientUtils.HttpResult response = HttpClientUtils.execute(httpPost);
                     
                     if (response.getStatus() == 200) resMsg = "success";
                     break;
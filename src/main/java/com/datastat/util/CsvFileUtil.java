@@ -17,6 +17,7 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.FileReader;
+import java.io.IOException;
 import java.net.URLDecoder;
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -24,10 +25,9 @@ import java.util.List;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipInputStream;
 
+import org.apache.http.client.methods.HttpGet;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.http.ResponseEntity;
-import org.springframework.web.client.RestTemplate;
 
 import com.opencsv.CSVReader;
 
@@ -84,14 +84,18 @@ public class CsvFileUtil {
 
     public static List<HashMap<String, Object>> getZipFile(String zipUrl, String downloadDir) {
         try {
-            RestTemplate restTemplate = new RestTemplate();
             zipUrl = URLDecoder.decode(zipUrl, "UTF-8");
-
-            ResponseEntity<byte[]> response = restTemplate.getForEntity(zipUrl, byte[].class);
-            byte[] zipData = response.getBody();
-            try (FileOutputStream fos = new FileOutputStream(downloadDir + ".zip")) {
-                fos.write(zipData);
-            }
+            // stream the archive to disk instead of buffering it in memory
+            HttpClientUtils.execute(new HttpGet(zipUrl), response -> {
+                int status = response.getStatusLine().getStatusCode();
+                if (status != 200) {
+                    throw new IOException("zip download error - " + status);
+                }
+                try (FileOutputStream fos = new FileOutputStream(downloadDir + ".zip")) {
+                    response.getEntity().writeTo(fos);
+                }
+                return null;
+            });
         } catch (Exception e) {
             logger.error("getZipFile exception", e);
         }
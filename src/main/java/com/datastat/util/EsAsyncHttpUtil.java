@@ -11,24 +11,59 @@
 
 package com.datastat.util;
 
+import io.netty.buffer.ByteBuf;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.cookie.Cookie;
 import io.netty.handler.ssl.ClientAuth;
 import io.netty.handler.ssl.JdkSslContext;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.net.Socket;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.security.KeyManagementException;
 import java.security.NoSuchAlgorithmException;
 import java.security.SecureRandom;
 import java.security.cert.CertificateException;
 import java.security.cert.X509Certificate;
 import java.time.Duration;
+import java.util.ArrayList;
 import java.util.Base64;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
 import javax.net.ssl.*;
 
 import org.asynchttpclient.*;
+import org.asynchttpclient.uri.Uri;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
 import org.springframework.http.HttpHeaders;
 import org.springframework.stereotype.Service;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.hash.Hashing;
+
+import jakarta.annotation.PostConstruct;
 
 @Service
 public class EsAsyncHttpUtil {
@@ -38,14 +73,49 @@ public class EsAsyncHttpUtil {
     @Value("${es.password:pwd}")
     String esPassword;
 
+    @Value("${es.request.timeout:60000}")
+    long requestTimeout;
+
+    @Value("${es.breaker.failures:5}")
+    int breakerFailures;
+
+    @Value("${es.breaker.open:30000}")
+    long breakerOpenMillis;
+
+    @Value("${es.breaker.serve.stale:true}")
+    boolean serveStale;
+
+    @Value("${es.breaker.stale.queries:queryContributes,queryContributors,queryUsers,queryNoticeUsers,"
+            + "querySigs,queryCommunityMembers,queryDownload}")
+    List<String> staleQueries;
+
+    @Autowired
+    Environment env;
+
+    private static final Logger logger = LoggerFactory.getLogger(EsAsyncHttpUtil.class);
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final ThreadLocal<Long> DEADLINE = new ThreadLocal<>();
     static volatile AsyncHttpClient asyncHttpClient = null;
+    private final ConcurrentHashMap<String, CircuitBreaker> breakers = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Long> queryTimeouts = new ConcurrentHashMap<>();
+    private Cache<String, KeptResponse> lastResponses;
+
+    @PostConstruct
+    public void init() {
+        lastResponses = CacheBuilder.newBuilder()
+                .maximumWeight(Long.parseLong(env.getProperty("es.breaker.stale.bytes", "16777216")))
+                .<String, KeptResponse>weigher((key, kept) -> kept.response.getResponseBodyAsBytes().length)
+                .expireAfterWrite(Long.parseLong(env.getProperty("es.breaker.stale.expire", "300")), TimeUnit.SECONDS)
+                .build();
+    }
 
     public static synchronized AsyncHttpClient getClient() throws KeyManagementException, NoSuchAlgorithmException {
         if (asyncHttpClient == null) {
+            // upper bounds only, search and count requests set their own deadline
             asyncHttpClient = new DefaultAsyncHttpClient(new DefaultAsyncHttpClientConfig.Builder()
-                    .setConnectTimeout(Duration.ofSeconds(300))
-                    .setReadTimeout(Duration.ofSeconds(300))
-                    .setRequestTimeout(Duration.ofSeconds(300)).setSslContext(new JdkSslContext(skipSsl(), true, ClientAuth.NONE))
+                    .setConnectTimeout(Duration.ofSeconds(10))
+                    .setReadTimeout(Duration.ofSeconds(120))
+                    .setRequestTimeout(Duration.ofSeconds(120)).setSslContext(new JdkSslContext(skipSsl(), true, ClientAuth.NONE))
                     .build());
         }
 
@@ -108,24 +178,282 @@ public class EsAsyncHttpUtil {
         return sc;
     }
 
-    public ListenableFuture<Response> executeSearch(String esUrl, String index, String query) throws NoSuchAlgorithmException, KeyManagementException {
-        AsyncHttpClient client = getClient();
-        RequestBuilder builder = getBuilder();
+    /**
+     * Run a call whose es requests on this thread must finish before a deadline, each request
+     * timing out when the deadline passes.
+     *
+     * @param deadline epoch milliseconds.
+     * @param call the call.
+     * @return value of the call.
+     */
+    public static <T> T withDeadline(long deadline, Supplier<T> call) {
+        Long previous = DEADLINE.get();
+        DEADLINE.set(deadline);
+        try {
+            return call.get();
+        } finally {
+            if (previous == null) {
+                DEADLINE.remove();
+            } else {
+                DEADLINE.set(previous);
+            }
+        }
+    }
 
-        builder.setUrl(esUrl + index + "/_search");
-        builder.setBody(query);
+    public ListenableFuture<Response> executeSearch(String esUrl, String index, String query) throws NoSuchAlgorithmException, KeyManagementException {
+        return executeSearch(esUrl, index, query, null);
+    }
 
-        return client.executeRequest(builder.build());
+    /**
+     * Execute a search named after its query template.
+     *
+     * @param esUrl es url.
+     * @param index name of index.
+     * @param query query json.
+     * @param name query name for es.request.timeout.<name> and es.breaker.stale.queries, null for none.
+     * @return ListenableFuture<Response>.
+     */
+    public ListenableFuture<Response> executeSearch(String esUrl, String index, String query, String name)
+            throws NoSuchAlgorithmException, KeyManagementException {
+        return execute(esUrl, getBuilder(), index, "/_search", query, 0L, name);
     }
 
     public ListenableFuture<Response> executeCount(String esUrl, String index, String query) throws NoSuchAlgorithmException, KeyManagementException {
-        AsyncHttpClient client = getClient();
+        return executeCount(esUrl, index, query, null);
+    }
+
+    /**
+     * Execute a count named after its query template.
+     *
+     * @param esUrl es url.
+     * @param index name of index.
+     * @param query query json.
+     * @param name query name for es.request.timeout.<name> and es.breaker.stale.queries, null for none.
+     * @return ListenableFuture<Response>.
+     */
+    public ListenableFuture<Response> executeCount(String esUrl, String index, String query, String name)
+            throws NoSuchAlgorithmException, KeyManagementException {
+        return execute(esUrl, getBuilder(), index, "/_count", query, 0L, name);
+    }
+
+    /**
+     * Execute several searches in one _msearch request.
+     *
+     * @param esUrl es url.
+     * @param indexes index of each search.
+     * @param queries query of each search.
+     * @param deadline epoch milliseconds, 0 for the configured timeout only.
+     * @return ListenableFuture<Response> of the whole _msearch.
+     * @throws IOException if a query is not json.
+     */
+    public ListenableFuture<Response> executeMultiSearch(String esUrl, List<String> indexes, List<String> queries,
+            long deadline) throws IOException, NoSuchAlgorithmException, KeyManagementException {
+        return executeMultiSearch(esUrl, indexes, queries, deadline, null);
+    }
+
+    /**
+     * Execute several searches in one _msearch request named after its query templates.
+     *
+     * @param esUrl es url.
+     * @param indexes index of each search.
+     * @param queries query of each search.
+     * @param deadline epoch milliseconds, 0 for the configured timeout only.
+     * @param name query name for es.request.timeout.<name> and es.breaker.stale.queries, null for none.
+     * @return ListenableFuture<Response> of the whole _msearch.
+     * @throws IOException if a query is not json.
+     */
+    public ListenableFuture<Response> executeMultiSearch(String esUrl, List<String> indexes, List<String> queries,
+            long deadline, String name) throws IOException, NoSuchAlgorithmException, KeyManagementException {
+        if (indexes.size() != queries.size()) {
+            throw new IllegalArgumentException("indexes and queries differ in size");
+        }
+        // ndjson body, a header line and a single line query per search
+        StringBuilder body = new StringBuilder();
+        for (int i = 0; i < queries.size(); i++) {
+            body.append(MAPPER.createObjectNode().put("index", indexes.get(i))).append('\n');
+            body.append(MAPPER.readTree(queries.get(i))).append('\n');
+        }
         RequestBuilder builder = getBuilder();
+        builder.setHeader(HttpHeaders.CONTENT_TYPE, "application/x-ndjson");
+        return execute(esUrl, builder, "", "_msearch", body.toString(), deadline, name);
+    }
+
+    /**
+     * Run several searches on one index in a single _msearch request.
+     *
+     * @param esUrl es url.
+     * @param index name of index.
+     * @param queries query of each search.
+     * @return search response of each query, in order.
+     * @throws Exception if the request or any of the searches fails.
+     */
+    public List<JsonNode> multiSearch(String esUrl, String index, List<String> queries) throws Exception {
+        return multiSearch(esUrl, index, queries, null);
+    }
+
+    /**
+     * Run several searches on one index in a single _msearch request named after its query templates.
+     *
+     * @param esUrl es url.
+     * @param index name of index.
+     * @param queries query of each search.
+     * @param name query name for es.request.timeout.<name> and es.breaker.stale.queries, null for none.
+     * @return search response of each query, in order.
+     * @throws Exception if the request or any of the searches fails.
+     */
+    public List<JsonNode> multiSearch(String esUrl, String index, List<String> queries, String name) throws Exception {
+        return multiSearch(esUrl, Collections.nCopies(queries.size(), index), queries, 0L, name);
+    }
+
+    /**
+     * Run several searches in a single _msearch request.
+     *
+     * @param esUrl es url.
+     * @param indexes index of each search.
+     * @param queries query of each search.
+     * @param deadline epoch milliseconds, 0 for the configured timeout only.
+     * @return search response of each query, in order.
+     * @throws Exception if the request or any of the searches fails.
+     */
+    public List<JsonNode> multiSearch(String esUrl, List<String> indexes, List<String> queries, long deadline)
+            throws Exception {
+        return multiSearch(esUrl, indexes, queries, deadline, null);
+    }
+
+    /**
+     * Run several searches in a single _msearch request named after its query templates.
+     *
+     * @param esUrl es url.
+     * @param indexes index of each search.
+     * @param queries query of each search.
+     * @param deadline epoch milliseconds, 0 for the configured timeout only.
+     * @param name query name for es.request.timeout.<name> and es.breaker.stale.queries, null for none.
+     * @return search response of each query, in order.
+     * @throws Exception if the request or any of the searches fails.
+     */
+    public List<JsonNode> multiSearch(String esUrl, List<String> indexes, List<String> queries, long deadline,
+            String name) throws Exception {
+        List<JsonNode> results = new ArrayList<>(queries.size());
+        if (queries.isEmpty()) {
+            return results;
+        }
+        Response response = executeMultiSearch(esUrl, indexes, queries, deadline, name).get();
+        if (response.getStatusCode() != 200) {
+            throw new IOException("es msearch error - " + response.getStatusCode());
+        }
+        Iterator<JsonNode> items = EsBucketReader.buckets(response, "responses");
+        while (items.hasNext()) {
+            JsonNode item = items.next();
+            if (item.has("error")) {
+                throw new IOException("es msearch error in " + indexes.get(results.size()) + " - " + item.get("error"));
+            }
+            results.add(item);
+        }
+        if (results.size() != queries.size()) {
+            throw new IOException("es msearch returned " + results.size() + " of " + queries.size() + " responses");
+        }
+        return results;
+    }
 
-        builder.setUrl(esUrl + index + "/_count");
-        builder.setBody(query);
+    /**
+     * Circuit breaker state of every es cluster used so far.
+     *
+     * @return es url to closed, open or half_open.
+     */
+    public Map<String, String> getBreakerStates() {
+        Map<String, String> states = new LinkedHashMap<>();
+        breakers.forEach((cluster, breaker) -> states.put(cluster, breaker.getState()));
+        return states;
+    }
+
+    /**
+     * Send a request through the circuit breaker of its cluster with a bounded request timeout.
+     * The caller names the request after its query template. The timeout is
+     * es.request.timeout.<name> if set, else es.request.timeout.<index>, else es.request.timeout,
+     * shortened to the deadline or else to the one set by withDeadline. While the breaker is open
+     * the last successful response of a query listed in es.breaker.stale.queries is returned if it
+     * is younger than es.breaker.stale.expire, marked with Warning and Age headers, otherwise the
+     * future fails immediately. A request cancelled by its caller or timed out at the caller's
+     * deadline says nothing about the cluster and does not count as a failure.
+     */
+    private ListenableFuture<Response> execute(String esUrl, RequestBuilder builder, String index, String path,
+            String query, long deadline, String name) throws NoSuchAlgorithmException, KeyManagementException {
+        String url = esUrl + index + path;
+        CircuitBreaker breaker = breakers.computeIfAbsent(esUrl,
+                k -> new CircuitBreaker(k, breakerFailures, breakerOpenMillis));
+        String responseKey = serveStale && name != null && staleQueries.contains(name)
+                ? Hashing.sha256().hashString(url + "\n" + query, StandardCharsets.UTF_8).toString()
+                : null;
+        CircuitBreaker.Permit permit = breaker.acquire();
+        if (permit == CircuitBreaker.Permit.REJECTED) {
+            KeptResponse last = responseKey == null ? null : lastResponses.getIfPresent(responseKey);
+            if (last != null) {
+                logger.warn("es circuit open - {}, serving stale {}", esUrl, name);
+                return new CompletedResponse(new StaleResponse(last));
+            }
+            return new ListenableFuture.CompletedFailure<>(new IllegalStateException("es circuit open - " + esUrl));
+        }
+
+        try {
+            long timeout = getTimeout(name, index);
+            if (deadline <= 0L && DEADLINE.get() != null) {
+                deadline = DEADLINE.get();
+            }
+            boolean shortened = false;
+            if (deadline > 0L) {
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0L) {
+                    breaker.release(permit);
+                    return new ListenableFuture.CompletedFailure<>(new TimeoutException("es deadline exceeded - " + url));
+                }
+                shortened = remaining < timeout;
+                timeout = Math.min(timeout, remaining);
+            }
+            builder.setUrl(url);
+            builder.setBody(query);
+            builder.setRequestTimeout(Duration.ofMillis(timeout));
+
+            boolean callerTimeout = shortened;
+            ListenableFuture<Response> future = getClient().executeRequest(builder.build());
+            future.toCompletableFuture().whenComplete((response, e) -> {
+                if (e != null) {
+                    Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+                    if (cause instanceof CancellationException || callerTimeout && cause instanceof TimeoutException) {
+                        breaker.release(permit);
+                    } else {
+                        breaker.onFailure(permit);
+                    }
+                    return;
+                }
+                if (response.getStatusCode() >= 500) {
+                    breaker.onFailure(permit);
+                    return;
+                }
+                breaker.onSuccess(permit);
+                if (responseKey != null && response.getStatusCode() == 200) {
+                    lastResponses.put(responseKey, new KeptResponse(response, System.currentTimeMillis()));
+                }
+            });
+            return future;
+        } catch (Exception e) {
+            // a trial permit that is never settled would keep the breaker open for good
+            breaker.onFailure(permit);
+            throw e;
+        }
+    }
 
-        return client.executeRequest(builder.build());
+    /**
+     * Request timeout of a query template, falling back to its index and then the default.
+     */
+    private long getTimeout(String name, String index) {
+        String indexKey = index == null ? "" : index;
+        return queryTimeouts.computeIfAbsent((name == null ? "" : name) + "|" + indexKey, k -> {
+            String timeout = name == null ? null : env.getProperty("es.request.timeout." + name);
+            if (timeout == null) {
+                timeout = env.getProperty("es.request.timeout." + indexKey, String.valueOf(requestTimeout));
+            }
+            return Long.parseLong(timeout);
+        });
     }
 
     /**
@@ -154,12 +482,217 @@ public class EsAsyncHttpUtil {
      */
     public ListenableFuture<Response> executeElasticSearch(String esUrl, String auth, String index,
             String query) throws NoSuchAlgorithmException, KeyManagementException {
-        AsyncHttpClient client = getClient();
-        RequestBuilder builder = getEsBuilder(auth);
+        return executeElasticSearch(esUrl, auth, index, query, null);
+    }
+
+    /**
+     * Execute search based on query, named after its query template.
+     *
+     * @param esUrl es url.
+     * @param auth auth info.
+     * @param index name of index.
+     * @param query string.
+     * @param name query name for es.request.timeout.<name> and es.breaker.stale.queries, null for none.
+     * @return ListenableFuture<Response>.
+     */
+    public ListenableFuture<Response> executeElasticSearch(String esUrl, String auth, String index,
+            String query, String name) throws NoSuchAlgorithmException, KeyManagementException {
+        return execute(esUrl, getEsBuilder(auth), index, "/_search", query, 0L, name);
+    }
+
+    /**
+     * Successful response kept to be served while the breaker is open.
+     */
+    private static final class KeptResponse {
+        private final Response response;
+        private final long keptAt;
+
+        KeptResponse(Response response, long keptAt) {
+            this.response = response;
+            this.keptAt = keptAt;
+        }
+    }
+
+    /**
+     * Kept response served in place of a live one, with a Warning 110 header and its Age in seconds.
+     */
+    private static final class StaleResponse implements Response {
+        private final Response response;
+        private final io.netty.handler.codec.http.HttpHeaders headers;
+
+        StaleResponse(KeptResponse kept) {
+            this.response = kept.response;
+            this.headers = kept.response.getHeaders().copy()
+                    .set(HttpHeaderNames.WARNING, "110 - \"Response is Stale\"")
+                    .set(HttpHeaderNames.AGE, (System.currentTimeMillis() - kept.keptAt) / 1000L);
+        }
+
+        @Override
+        public int getStatusCode() {
+            return response.getStatusCode();
+        }
+
+        @Override
+        public String getStatusText() {
+            return response.getStatusText();
+        }
+
+        @Override
+        public byte[] getResponseBodyAsBytes() {
+            return response.getResponseBodyAsBytes();
+        }
+
+        @Override
+        public ByteBuffer getResponseBodyAsByteBuffer() {
+            return response.getResponseBodyAsByteBuffer();
+        }
+
+        @Override
+        public ByteBuf getResponseBodyAsByteBuf() {
+            return response.getResponseBodyAsByteBuf();
+        }
+
+        @Override
+        public InputStream getResponseBodyAsStream() {
+            return response.getResponseBodyAsStream();
+        }
+
+        @Override
+        public String getResponseBody(Charset charset) {
+            return response.getResponseBody(charset);
+        }
+
+        @Override
+        public String getResponseBody() {
+            return response.getResponseBody();
+        }
+
+        @Override
+        public Uri getUri() {
+            return response.getUri();
+        }
+
+        @Override
+        public String getContentType() {
+            return response.getContentType();
+        }
+
+        @Override
+        public String getHeader(CharSequence name) {
+            return headers.get(name);
+        }
+
+        @Override
+        public List<String> getHeaders(CharSequence name) {
+            return headers.getAll(name);
+        }
+
+        @Override
+        public io.netty.handler.codec.http.HttpHeaders getHeaders() {
+            return headers;
+        }
+
+        @Override
+        public boolean isRedirected() {
+            return response.isRedirected();
+        }
+
+        @Override
+        public List<Cookie> getCookies() {
+            return response.getCookies();
+        }
+
+        @Override
+        public boolean hasResponseStatus() {
+            return response.hasResponseStatus();
+        }
+
+        @Override
+        public boolean hasResponseHeaders() {
+            return response.hasResponseHeaders();
+        }
+
+        @Override
+        public boolean hasResponseBody() {
+            return response.hasResponseBody();
+        }
+
+        @Override
+        public SocketAddress getRemoteAddress() {
+            return response.getRemoteAddress();
+        }
+
+        @Override
+        public SocketAddress getLocalAddress() {
+            return response.getLocalAddress();
+        }
+
+        @Override
+        public String toString() {
+            return "stale " + response;
+        }
+    }
+
+    /**
+     * Already completed future of a kept response.
+     */
+    private static final class CompletedResponse implements ListenableFuture<Response> {
+        private final Response response;
+
+        CompletedResponse(Response response) {
+            this.response = response;
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            return false;
+        }
 
-        builder.setUrl(esUrl + index + "/_search");
-        builder.setBody(query);
+        @Override
+        public boolean isCancelled() {
+            return false;
+        }
+
+        @Override
+        public boolean isDone() {
+            return true;
+        }
 
-        return client.executeRequest(builder.build());
+        @Override
+        public Response get() {
+            return response;
+        }
+
+        @Override
+        public Response get(long timeout, TimeUnit unit) {
+            return response;
+        }
+
+        @Override
+        public void done() {
+        }
+
+        @Override
+        public void abort(Throwable t) {
+        }
+
+        @Override
+        public void touch() {
+        }
+
+        @Override
+        public ListenableFuture<Response> addListener(Runnable listener, Executor exec) {
+            if (exec == null) {
+                listener.run();
+            } else {
+                exec.execute(listener);
+            }
+            return this;
+        }
+
+        @Override
+        public CompletableFuture<Response> toCompletableFuture() {
+            return CompletableFuture.completedFuture(response);
+        }
     }
 }
\ No newline at end of file
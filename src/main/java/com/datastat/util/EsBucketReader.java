@@ -0,0 +1,175 @@
+/* This project is licensed under the Mulan PSL v2.
+ You can use this software according to the terms and conditions of the Mulan PSL v2.
+ You may obtain a copy of Mulan PSL v2 at:
+     http://license.coscl.org.cn/MulanPSL2
+ THIS SOFTWARE IS PROVIDED ON AN "AS IS" BASIS, WITHOUT WARRANTIES OF ANY KIND, EITHER EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO NON-INFRINGEMENT, MERCHANTABILITY OR FIT FOR A PARTICULAR
+ PURPOSE.
+ See the Mulan PSL v2 for more details.
+ Create: 2024
+*/
+
+package com.datastat.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.function.Consumer;
+
+import org.asynchttpclient.Response;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Streaming reader of aggregation buckets in ES responses. The response bytes are parsed
+ * with a JsonParser and only one bucket is materialized as a tree at a time.
+ */
+public final class EsBucketReader {
+    /**
+     * Path of the buckets of the group_field terms aggregation most queries use.
+     */
+    public static final String GROUP_FIELD_BUCKETS = "aggregations.group_field.buckets";
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private EsBucketReader() {
+    }
+
+    /**
+     * Iterate the buckets of aggregations.group_field.
+     *
+     * @param response es response.
+     * @return lazy bucket iterator.
+     * @throws IOException if the response is not json or has no such aggregation.
+     */
+    public static Iterator<JsonNode> groupFieldBuckets(Response response) throws IOException {
+        return buckets(response, GROUP_FIELD_BUCKETS);
+    }
+
+    /**
+     * Iterate the buckets of aggregations.group_field of an already parsed search response,
+     * e.g. one of the responses of a _msearch.
+     *
+     * @param response parsed search response.
+     * @return bucket iterator.
+     * @throws IOException if the response has no such aggregation.
+     */
+    public static Iterator<JsonNode> groupFieldBuckets(JsonNode response) throws IOException {
+        JsonNode buckets = response.at("/" + GROUP_FIELD_BUCKETS.replace('.', '/'));
+        if (!buckets.isArray()) {
+            throw new IOException("no array at " + GROUP_FIELD_BUCKETS);
+        }
+        return buckets.elements();
+    }
+
+    /**
+     * Iterate the elements of the array at a dotted path of the response.
+     *
+     * @param response es response.
+     * @param path dotted object path to an array, e.g. aggregations.group_field.buckets.
+     * @return lazy bucket iterator.
+     * @throws IOException if the response is not json or the path is not an array.
+     */
+    public static Iterator<JsonNode> buckets(Response response, String path) throws IOException {
+        return buckets(response.getResponseBodyAsStream(), path);
+    }
+
+    /**
+     * Iterate the elements of the array at a dotted path of a json stream.
+     *
+     * @param body json stream, closed when the iteration ends.
+     * @param path dotted object path to an array.
+     * @return lazy bucket iterator.
+     * @throws IOException if the body is not json or the path is not an array.
+     */
+    public static Iterator<JsonNode> buckets(InputStream body, String path) throws IOException {
+        JsonParser parser = MAPPER.getFactory().createParser(body);
+        if (!moveTo(parser, path.split("\\.")) || parser.currentToken() != JsonToken.START_ARRAY) {
+            parser.close();
+            throw new IOException("no array at " + path);
+        }
+        return new BucketIterator(parser);
+    }
+
+    /**
+     * Call the consumer with each bucket at a dotted path of the response.
+     *
+     * @param response es response.
+     * @param path dotted object path to an array.
+     * @param consumer bucket callback.
+     * @throws IOException if the response is not json or the path is not an array.
+     */
+    public static void forEachBucket(Response response, String path, Consumer<JsonNode> consumer) throws IOException {
+        buckets(response, path).forEachRemaining(consumer);
+    }
+
+    private static boolean moveTo(JsonParser parser, String[] keys) throws IOException {
+        JsonToken token = parser.nextToken();
+        for (String key : keys) {
+            if (token != JsonToken.START_OBJECT) {
+                return false;
+            }
+            boolean found = false;
+            while ((token = parser.nextToken()) == JsonToken.FIELD_NAME) {
+                String name = parser.currentName();
+                token = parser.nextToken();
+                if (key.equals(name)) {
+                    found = true;
+                    break;
+                }
+                parser.skipChildren();
+            }
+            if (!found) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static final class BucketIterator implements Iterator<JsonNode> {
+        private final JsonParser parser;
+        private JsonNode next;
+        private boolean finished;
+
+        BucketIterator(JsonParser parser) {
+            this.parser = parser;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (next != null) {
+                return true;
+            }
+            if (finished) {
+                return false;
+            }
+            try {
+                JsonToken token = parser.nextToken();
+                if (token == null || token == JsonToken.END_ARRAY) {
+                    finished = true;
+                    parser.close();
+                    return false;
+                }
+                next = MAPPER.readTree(parser);
+                return true;
+            } catch (IOException e) {
+                finished = true;
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        public JsonNode next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            JsonNode bucket = next;
+            next = null;
+            return bucket;
+        }
+    }
+}
@@ -0,0 +1,164 @@
+/* This project is licensed under the Mulan PSL v2.
+ You can use this software according to the terms and conditions of the Mulan PSL v2.
+ You may obtain a copy of Mulan PSL v2 at:
+     http://license.coscl.org.cn/MulanPSL2
+ THIS SOFTWARE IS PROVIDED ON AN "AS IS" BASIS, WITHOUT WARRANTIES OF ANY KIND, EITHER EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO NON-INFRINGEMENT, MERCHANTABILITY OR FIT FOR A PARTICULAR
+ PURPOSE.
+ See the Mulan PSL v2 for more details.
+ Create: 2024
+*/
+
+package com.datastat.util;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+/**
+ * Writes exported documents as NDJSON lines or CSV rows. Every record carries the cursor
+ * to resume after it, in a "_cursor" field or last column.
+ */
+public final class EsExportWriter implements EsQueryUtils.ExportConsumer {
+    /**
+     * Name of the cursor field and column.
+     */
+    public static final String CURSOR = "_cursor";
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private final Writer writer;
+    private final boolean csv;
+    private List<String> columns;
+    private boolean headerWritten;
+
+    private EsExportWriter(Writer writer, boolean csv, List<String> columns) {
+        this.writer = writer;
+        this.csv = csv;
+        this.columns = columns;
+    }
+
+    /**
+     * Create a writer.
+     *
+     * @param format ndjson or csv.
+     * @param out output stream, not closed by the writer.
+     * @param columns csv columns, null for the sorted fields of the first document.
+     * @return EsExportWriter.
+     * @throws IllegalArgumentException if the format is not supported.
+     */
+    public static EsExportWriter of(String format, OutputStream out, List<String> columns) {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        if ("ndjson".equalsIgnoreCase(format)) {
+            return new EsExportWriter(writer, false, null);
+        }
+        if ("csv".equalsIgnoreCase(format)) {
+            return new EsExportWriter(writer, true, columns);
+        }
+        throw new IllegalArgumentException("unsupported export format - " + format);
+    }
+
+    /**
+     * Whether a format can be written.
+     *
+     * @param format requested format.
+     * @return true for ndjson and csv.
+     */
+    public static boolean isSupported(String format) {
+        return "ndjson".equalsIgnoreCase(format) || "csv".equalsIgnoreCase(format);
+    }
+
+    /**
+     * Content type of a format.
+     *
+     * @param format ndjson or csv.
+     * @return content type.
+     */
+    public static String contentType(String format) {
+        return "csv".equalsIgnoreCase(format) ? "text/csv;charset=UTF-8" : "application/x-ndjson;charset=UTF-8";
+    }
+
+    @Override
+    public void accept(Map<String, Object> source, String cursor) throws IOException {
+        if (!csv) {
+            ObjectNode line = MAPPER.valueToTree(source);
+            line.put(CURSOR, cursor);
+            writer.write(line.toString());
+            writer.write('\n');
+            return;
+        }
+        if (columns == null) {
+            columns = new ArrayList<>(new TreeSet<>(source.keySet()));
+        }
+        if (!headerWritten) {
+            List<String> header = new ArrayList<>(columns);
+            header.add(CURSOR);
+            writeRow(header);
+            headerWritten = true;
+        }
+        List<String> row = new ArrayList<>(columns.size() + 1);
+        for (String column : columns) {
+            row.add(neutralize(toCell(source.get(column))));
+        }
+        row.add(cursor);
+        writeRow(row);
+    }
+
+    /**
+     * Flush the buffered records to the output stream.
+     *
+     * @throws IOException if the output cannot be written.
+     */
+    public void flush() throws IOException {
+        writer.flush();
+    }
+
+    private void writeRow(List<String> cells) throws IOException {
+        for (int i = 0; i < cells.size(); i++) {
+            if (i > 0) {
+                writer.write(',');
+            }
+            String cell = cells.get(i);
+            if (cell.indexOf(',') >= 0 || cell.indexOf('"') >= 0 || cell.indexOf('\n') >= 0 || cell.indexOf('\r') >= 0) {
+                writer.write('"');
+                writer.write(cell.replace("\"", "\"\""));
+                writer.write('"');
+            } else {
+                writer.write(cell);
+            }
+        }
+        writer.write("\r\n");
+    }
+
+    /**
+     * Prefix cells starting with =, +, - or @ with a quote so spreadsheets do not run them as formulas.
+     *
+     * @param cell cell text.
+     * @return cell text safe to open in a spreadsheet.
+     */
+    static String neutralize(String cell) {
+        if (!cell.isEmpty() && "=+-@".indexOf(cell.charAt(0)) >= 0) {
+            return "'" + cell;
+        }
+        return cell;
+    }
+
+    private static String toCell(Object value) throws IOException {
+        if (value == null) {
+            return "";
+        }
+        if (value instanceof Map || value instanceof Collection) {
+            return MAPPER.writeValueAsString(value);
+        }
+        return value.toString();
+    }
+}
@@ -15,33 +15,80 @@ import com.datastat.result.ReturnCode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.datastat.model.UserTagInfo;
 import com.datastat.model.vo.PrReviewerVo;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 
 import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 import org.apache.commons.lang3.StringUtils;
+import org.apache.http.util.EntityUtils;
 import org.elasticsearch.action.admin.indices.delete.DeleteIndexRequest;
 import org.elasticsearch.action.search.*;
 import org.elasticsearch.action.support.master.AcknowledgedResponse;
+import org.elasticsearch.client.Request;
 import org.elasticsearch.client.RequestOptions;
+import org.elasticsearch.client.Response;
 import org.elasticsearch.client.RestHighLevelClient;
+import org.elasticsearch.client.core.CountRequest;
+import org.elasticsearch.client.core.CountResponse;
 import org.elasticsearch.client.indices.GetIndexRequest;
 import org.elasticsearch.common.unit.TimeValue;
 import org.elasticsearch.index.query.*;
 import org.elasticsearch.index.reindex.DeleteByQueryRequest;
 import org.elasticsearch.search.SearchHit;
 import org.elasticsearch.search.SearchHits;
+import org.elasticsearch.search.builder.PointInTimeBuilder;
 import org.elasticsearch.search.builder.SearchSourceBuilder;
+import org.elasticsearch.search.slice.SliceBuilder;
 import org.elasticsearch.search.sort.SortOrder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 public class EsQueryUtils {
     private static final int MAXSIZE = 10000;
     private static final int MAXPAGESIZE = 5000;
+    private static final String EXPORT_KEEP_ALIVE = "1m";
     private static final ObjectMapper objectMapper = new ObjectMapper();
     private static final Logger logger = LoggerFactory.getLogger(EsQueryUtils.class);
+    private final ExecutorService scrollExecutor;
+    private final int maxSlices;
+    private final long sliceDocs;
+    private final TimeValue scrollKeepAlive;
+    // slice count of each index and query, counted again once it expires
+    private final Cache<String, Integer> sliceCounts = CacheBuilder.newBuilder()
+            .maximumSize(1000)
+            .expireAfterWrite(10, TimeUnit.MINUTES)
+            .build();
+
+    /**
+     * Create with single-slice scrolls on the calling thread.
+     */
+    public EsQueryUtils() {
+        this(null, 1, Long.MAX_VALUE, TimeValue.timeValueMinutes(2));
+    }
+
+    /**
+     * Create with sliced scrolls.
+     *
+     * @param scrollExecutor bounded executor the slices of a scroll run on.
+     * @param maxSlices most slices of one scroll.
+     * @param sliceDocs documents per slice, smaller reads use fewer slices.
+     * @param scrollKeepAlive keep-alive of a scroll context between two pages.
+     */
+    public EsQueryUtils(ExecutorService scrollExecutor, int maxSlices, long sliceDocs, TimeValue scrollKeepAlive) {
+        this.scrollExecutor = scrollExecutor;
+        this.maxSlices = maxSlices;
+        this.sliceDocs = Math.max(1L, sliceDocs);
+        this.scrollKeepAlive = scrollKeepAlive;
+    }
 
     public boolean deleteByQuery(RestHighLevelClient client, String indexName, DeleteByQueryRequest deleteByQueryRequest) {
         try {
@@ -112,49 +159,17 @@ public class EsQueryUtils {
     }
 
     public String esScroll(RestHighLevelClient client, String item, String indexName) {
-        SearchRequest request = new SearchRequest(indexName);
-        request.scroll(TimeValue.timeValueMinutes(1));
         SearchSourceBuilder builder = new SearchSourceBuilder();
-        builder.size(MAXSIZE);
         builder.sort("created_at", SortOrder.ASC);
         builder.query(QueryBuilders.matchAllQuery());
-        request.source(builder);
 
         ArrayList<Object> list = new ArrayList<>();
-        long totalCount = 0L;
-        String scrollId = null;
+        long totalCount;
         try {
-            SearchResponse response = client.search(request, RequestOptions.DEFAULT);
-            totalCount = response.getHits().getTotalHits().value;
-            scrollId = response.getScrollId();
-
-            for (SearchHit hit : response.getHits().getHits()) {
-                Map<String, Object> sourceAsMap = hit.getSourceAsMap();
-                list.add(sourceAsMap);
-            }
-            while (true) {
-                SearchScrollRequest scrollRequest = new SearchScrollRequest(scrollId);
-                scrollRequest.scroll(TimeValue.timeValueMinutes(1));
-                SearchResponse scroll = client.scroll(scrollRequest, RequestOptions.DEFAULT);
-                SearchHit[] hits = scroll.getHits().getHits();
-                if (hits == null || hits.length < 10) break;
-                for (SearchHit hit : hits) {
-                    Map<String, Object> sourceAsMap = hit.getSourceAsMap();
-                    list.add(sourceAsMap);
-                }
-            }
-
+            totalCount = scrollSources(client, indexName, MAXSIZE, builder, list);
         } catch (Exception ex) {
             logger.error("exception", ex);
             return resultJsonStr(400, item, ReturnCode.RC400.getMessage(), ReturnCode.RC400.getMessage());
-        } finally {
-            ClearScrollRequest clearScrollRequest = new ClearScrollRequest();
-            clearScrollRequest.addScrollId(scrollId);
-            try {
-                client.clearScroll(clearScrollRequest, RequestOptions.DEFAULT);
-            } catch (IOException e) {
-                logger.error("exception", e);
-            }
         }
 
         String s = objectMapper.valueToTree(list).toString();
@@ -163,52 +178,212 @@ public class EsQueryUtils {
 
     public ArrayList<Object> esScroll(RestHighLevelClient restHighLevelClient, String item, String indexName,
                            int pageSize, SearchSourceBuilder sourceBuilder) {
-        SearchRequest request = new SearchRequest(indexName);
-        request.scroll(TimeValue.timeValueMinutes(2));
-
         if (pageSize > MAXPAGESIZE) pageSize = MAXPAGESIZE;
-        sourceBuilder.size(pageSize);
-        request.source(sourceBuilder);
-
         ArrayList<Object> reslist = new ArrayList<>();
-        long totalCount = 0L;
-        String scrollId = null;
         try {
-            SearchResponse response = restHighLevelClient.search(request, RequestOptions.DEFAULT);
-            totalCount = response.getHits().getTotalHits().value;
-            scrollId = response.getScrollId();
+            scrollSources(restHighLevelClient, indexName, pageSize, sourceBuilder, reslist);
+        } catch (Exception ex) {
+            logger.error("exception", ex);
+            reslist = null;
+        }
+        return reslist;
+    }
 
-            for (SearchHit hit : response.getHits().getHits()) {
-                Map<String, Object> sourceAsMap = hit.getSourceAsMap();
-                reslist.add(sourceAsMap);
+    /**
+     * Receives the pages of a sliced scroll. The pages of one slice arrive in order on one thread,
+     * different slices call it concurrently.
+     */
+    @FunctionalInterface
+    public interface SliceConsumer {
+        void accept(int slice, SearchHit[] hits) throws IOException;
+    }
+
+    /**
+     * Scroll all matching documents, split into slices read in parallel on the scroll executor.
+     * The slice count is the smallest of the configured maximum, the shard count of the index
+     * and the document count divided by the documents per slice.
+     *
+     * @param client es client.
+     * @param indexName name of index.
+     * @param pageSize hits per scroll page.
+     * @param sourceBuilder query and sorts, not modified.
+     * @param consumer page callback.
+     * @return total hits of all slices.
+     * @throws IOException if a slice fails.
+     */
+    public long esScrollSlices(RestHighLevelClient client, String indexName, int pageSize,
+            SearchSourceBuilder sourceBuilder, SliceConsumer consumer) throws IOException {
+        if (pageSize <= 0) pageSize = MAXPAGESIZE;
+        int slices = sliceCount(client, indexName, sourceBuilder);
+        AtomicBoolean failed = new AtomicBoolean();
+        if (slices == 1) {
+            return scrollSlice(client, indexName, sourceBuilder.shallowCopy().size(pageSize), 0, failed, consumer);
+        }
+
+        List<Future<Long>> futures = new ArrayList<>(slices);
+        try {
+            for (int i = 0; i < slices; i++) {
+                SearchSourceBuilder builder = sourceBuilder.shallowCopy().size(pageSize).slice(new SliceBuilder(i, slices));
+                int slice = i;
+                futures.add(scrollExecutor.submit(() -> scrollSlice(client, indexName, builder, slice, failed, consumer)));
+            }
+            long totalCount = 0L;
+            for (Future<Long> future : futures) {
+                totalCount += future.get();
             }
+            return totalCount;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("scroll of " + indexName + " interrupted", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            throw cause instanceof IOException ? (IOException) cause : new IOException(cause);
+        } finally {
+            // stops the slices still running after a failure, no-op once all are done
+            failed.set(true);
+            futures.forEach(future -> future.cancel(false));
+        }
+    }
 
-            while (true) {
-                SearchScrollRequest scrollRequest = new SearchScrollRequest(scrollId);
-                scrollRequest.scroll(TimeValue.timeValueMinutes(2));
-                SearchResponse scroll = restHighLevelClient.scroll(scrollRequest, RequestOptions.DEFAULT);
-                SearchHit[] hits = scroll.getHits().getHits();
-                if (hits == null || hits.length < 1) break;
-                for (SearchHit hit : hits) {
-                    Map<String, Object> sourceAsMap = hit.getSourceAsMap();
-                    reslist.add(sourceAsMap);
+    /**
+     * Scroll the sources of all matching documents into the list. Each page is reduced to its
+     * sources, and to their sort values when sorted, as it arrives. Without sorts the slices are
+     * appended in slice order, with sorts they are merged by the sort values of the hits.
+     */
+    private long scrollSources(RestHighLevelClient client, String indexName, int pageSize,
+            SearchSourceBuilder sourceBuilder, List<Object> list) throws IOException {
+        List<SortOrder> orders = new ArrayList<>();
+        if (sourceBuilder.sorts() != null) {
+            sourceBuilder.sorts().forEach(sort -> orders.add(sort.order()));
+        }
+        boolean sorted = !orders.isEmpty();
+        Map<Integer, SliceSources> bySlice = new ConcurrentHashMap<>();
+        long totalCount = esScrollSlices(client, indexName, pageSize, sourceBuilder,
+                (slice, hits) -> bySlice.computeIfAbsent(slice, k -> new SliceSources()).add(hits, sorted));
+
+        List<SliceSources> slices = new ArrayList<>(new TreeMap<>(bySlice).values());
+        if (!sorted || slices.size() == 1) {
+            slices.forEach(slice -> list.addAll(slice.sources));
+            return totalCount;
+        }
+
+        // k-way merge, each slice is already sorted
+        int[] positions = new int[slices.size()];
+        PriorityQueue<Integer> heads = new PriorityQueue<>((a, b) -> compareSortValues(
+                slices.get(a).sortValues.get(positions[a]), slices.get(b).sortValues.get(positions[b]), orders));
+        for (int i = 0; i < slices.size(); i++) {
+            heads.add(i);
+        }
+        while (!heads.isEmpty()) {
+            int slice = heads.poll();
+            SliceSources sources = slices.get(slice);
+            list.add(sources.sources.get(positions[slice]));
+            // drop merged entries so that only the output list holds them
+            sources.sources.set(positions[slice], null);
+            sources.sortValues.set(positions[slice], null);
+            if (++positions[slice] < sources.sources.size()) {
+                heads.add(slice);
+            }
+        }
+        return totalCount;
+    }
+
+    /**
+     * Sources of the hits read so far by one slice, with their sort values when sorted.
+     */
+    private static final class SliceSources {
+        private final ArrayList<Map<String, Object>> sources = new ArrayList<>();
+        private final ArrayList<Object[]> sortValues = new ArrayList<>();
+
+        void add(SearchHit[] hits, boolean sorted) {
+            for (SearchHit hit : hits) {
+                sources.add(hit.getSourceAsMap());
+                if (sorted) {
+                    sortValues.add(hit.getSortValues());
                 }
             }
+        }
+    }
 
-        } catch (Exception ex) {
-            logger.error("exception", ex);
-            reslist = null;
+    /**
+     * Slice count of a scroll, the count of matching documents is cached per index and query.
+     */
+    private int sliceCount(RestHighLevelClient client, String indexName, SearchSourceBuilder sourceBuilder) throws IOException {
+        if (scrollExecutor == null || maxSlices <= 1) return 1;
+        QueryBuilder query = sourceBuilder.query() == null ? QueryBuilders.matchAllQuery() : sourceBuilder.query();
+        String key = indexName + "\n" + query;
+        Integer cached = sliceCounts.getIfPresent(key);
+        if (cached != null) {
+            return cached;
+        }
+        CountRequest request = new CountRequest(indexName);
+        request.query(query);
+        CountResponse response = client.count(request, RequestOptions.DEFAULT);
+        long bySize = response.getCount() / sliceDocs + (response.getCount() % sliceDocs == 0 ? 0 : 1);
+        int slices = (int) Math.max(1L, Math.min(Math.min(maxSlices, response.getTotalShards()), bySize));
+        sliceCounts.put(key, slices);
+        return slices;
+    }
+
+    private long scrollSlice(RestHighLevelClient client, String indexName, SearchSourceBuilder builder, int slice,
+            AtomicBoolean failed, SliceConsumer consumer) throws IOException {
+        SearchRequest request = new SearchRequest(indexName);
+        request.scroll(scrollKeepAlive);
+        request.source(builder);
+
+        String scrollId = null;
+        try {
+            SearchResponse response = client.search(request, RequestOptions.DEFAULT);
+            scrollId = response.getScrollId();
+            long totalCount = response.getHits().getTotalHits() == null ? 0L : response.getHits().getTotalHits().value;
+            SearchHit[] hits = response.getHits().getHits();
+            // a slice stopped by the failure of another one returns quietly, the failure is reported by its own slice
+            while (hits != null && hits.length > 0 && !failed.get()) {
+                consumer.accept(slice, hits);
+                SearchScrollRequest scrollRequest = new SearchScrollRequest(scrollId);
+                scrollRequest.scroll(scrollKeepAlive);
+                response = client.scroll(scrollRequest, RequestOptions.DEFAULT);
+                scrollId = response.getScrollId();
+                hits = response.getHits().getHits();
+            }
+            return totalCount;
+        } catch (IOException | RuntimeException e) {
+            failed.set(true);
+            throw e;
         } finally {
-            ClearScrollRequest clearScrollRequest = new ClearScrollRequest();
-            clearScrollRequest.addScrollId(scrollId);
-            try {
-                restHighLevelClient.clearScroll(clearScrollRequest, RequestOptions.DEFAULT);
-            } catch (IOException e) {
-                logger.error("exception", e);
+            if (scrollId != null) {
+                ClearScrollRequest clearScrollRequest = new ClearScrollRequest();
+                clearScrollRequest.addScrollId(scrollId);
+                try {
+                    client.clearScroll(clearScrollRequest, RequestOptions.DEFAULT);
+                } catch (IOException e) {
+                    logger.error("exception", e);
+                }
             }
         }
+    }
 
-        return reslist;
+    private static int compareSortValues(Object[] a, Object[] b, List<SortOrder> orders) {
+        for (int i = 0; i < Math.min(a.length, b.length); i++) {
+            int c = compareSortValue(a[i], b[i]);
+            if (c != 0) {
+                return i < orders.size() && orders.get(i) == SortOrder.DESC ? -c : c;
+            }
+        }
+        return 0;
+    }
+
+    private static int compareSortValue(Object a, Object b) {
+        if (a == null || b == null) {
+            return a == null ? (b == null ? 0 : -1) : 1;
+        }
+        if (a instanceof Long && b instanceof Long) {
+            return Long.compare((Long) a, (Long) b);
+        }
+        if (a instanceof Number && b instanceof Number) {
+            return Double.compare(((Number) a).doubleValue(), ((Number) b).doubleValue());
+        }
+        return a.toString().compareTo(b.toString());
     }
 
     public String esScrollFromId(RestHighLevelClient client, String item, int pageSize, String indexName, String lastCursor, SearchSourceBuilder sourceBuilder) {
@@ -290,6 +465,79 @@ public class EsQueryUtils {
     }
 
 
+    /**
+     * Export callback, called with the source of each hit and the cursor to resume after it.
+     */
+    @FunctionalInterface
+    public interface ExportConsumer {
+        void accept(Map<String, Object> source, String cursor) throws IOException;
+    }
+
+    /**
+     * Read the matching documents page by page in created_at, _id order with search_after over a
+     * point in time, handing each hit to the consumer as soon as its page arrives. Only one page is
+     * held at a time. The point in time is opened and closed through the low level client, the high
+     * level client of this version has no api for it. The cursors have the same format as esFromId.
+     *
+     * @param client es client.
+     * @param indexName name of index.
+     * @param query query of the documents.
+     * @param pageSize hits per search.
+     * @param lastCursor cursor to resume after, null or empty to start from the first document.
+     * @param consumer hit callback.
+     * @return number of exported documents.
+     * @throws IOException if a search fails or the consumer cannot write.
+     */
+    public long esExport(RestHighLevelClient client, String indexName, QueryBuilder query, int pageSize,
+            String lastCursor, ExportConsumer consumer) throws IOException {
+        if (pageSize <= 0 || pageSize > MAXPAGESIZE) pageSize = MAXPAGESIZE;
+        Object[] searchAfter = null;
+        if (lastCursor != null && !lastCursor.isEmpty()) {
+            searchAfter = new String(Base64.getDecoder().decode(lastCursor)).split(",");
+        }
+
+        Request open = new Request("POST", "/" + indexName + "/_pit");
+        open.addParameter("keep_alive", EXPORT_KEEP_ALIVE);
+        Response opened = client.getLowLevelClient().performRequest(open);
+        String pitId = objectMapper.readTree(EntityUtils.toString(opened.getEntity())).get("id").asText();
+        long count = 0L;
+        try {
+            while (true) {
+                SearchSourceBuilder builder = new SearchSourceBuilder();
+                builder.query(query);
+                builder.size(pageSize);
+                builder.sort("created_at", SortOrder.ASC);
+                builder.sort("_id", SortOrder.ASC);
+                builder.pointInTimeBuilder(new PointInTimeBuilder(pitId)
+                        .setKeepAlive(TimeValue.parseTimeValue(EXPORT_KEEP_ALIVE, "keep_alive")));
+                if (searchAfter != null) builder.searchAfter(searchAfter);
+
+                // a point in time search names no index and cannot minimize roundtrips
+                SearchRequest request = new SearchRequest().source(builder);
+                request.setCcsMinimizeRoundtrips(false);
+                SearchResponse response = client.search(request, RequestOptions.DEFAULT);
+                if (response.pointInTimeId() != null) pitId = response.pointInTimeId();
+                SearchHit[] hits = response.getHits().getHits();
+                for (SearchHit hit : hits) {
+                    searchAfter = hit.getSortValues();
+                    String cursor = Arrays.stream(searchAfter).map(String::valueOf).collect(Collectors.joining(","));
+                    consumer.accept(hit.getSourceAsMap(), Base64.getEncoder().encodeToString(cursor.getBytes()));
+                    count++;
+                }
+                if (hits.length < pageSize) break;
+            }
+        } finally {
+            try {
+                Request close = new Request("DELETE", "/_pit");
+                close.setJsonEntity(objectMapper.createObjectNode().put("id", pitId).toString());
+                client.getLowLevelClient().performRequest(close);
+            } catch (IOException e) {
+                logger.warn("close point in time of {} failed - {}", indexName, e.getMessage());
+            }
+        }
+        return count;
+    }
+
     public String esUserCountFromId(RestHighLevelClient client, String lastCursor, int pageSize, String indexName,
                                     String user, String sig, ArrayList<Object> params) {
         SearchRequest request = new SearchRequest(indexName);
@@ -11,6 +11,7 @@
 
 package com.datastat.util;
 
+import java.io.IOException;
 import java.io.Serializable;
 import java.nio.charset.StandardCharsets;
 import java.security.KeyManagementException;
@@ -19,26 +20,29 @@ import java.security.SecureRandom;
 import java.security.cert.CertificateException;
 import java.security.cert.X509Certificate;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import javax.net.ssl.SSLContext;
 import javax.net.ssl.TrustManager;
 import javax.net.ssl.X509TrustManager;
 
 import org.apache.http.HeaderElement;
 import org.apache.http.HeaderElementIterator;
-import org.apache.http.HttpHost;
-import org.apache.http.HttpResponse;
 import org.apache.http.auth.AuthScope;
 import org.apache.http.auth.UsernamePasswordCredentials;
 import org.apache.http.client.CredentialsProvider;
-import org.apache.http.client.HttpClient;
+import org.apache.http.client.ResponseHandler;
+import org.apache.http.client.config.RequestConfig;
 import org.apache.http.client.methods.HttpGet;
 import org.apache.http.client.methods.HttpPost;
+import org.apache.http.client.methods.HttpUriRequest;
 import org.apache.http.config.Registry;
 import org.apache.http.config.RegistryBuilder;
 import org.apache.http.conn.ConnectionKeepAliveStrategy;
 import org.apache.http.conn.socket.ConnectionSocketFactory;
 import org.apache.http.conn.socket.PlainConnectionSocketFactory;
-import org.apache.http.conn.ssl.NoopHostnameVerifier;
 import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
 import org.apache.http.entity.StringEntity;
 import org.apache.http.impl.client.BasicCredentialsProvider;
@@ -46,11 +50,9 @@ import org.apache.http.impl.client.CloseableHttpClient;
 import org.apache.http.impl.client.HttpClients;
 import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
 import org.apache.http.message.BasicHeaderElementIterator;
+import org.apache.http.pool.PoolStats;
 import org.apache.http.protocol.HTTP;
 import org.apache.http.util.EntityUtils;
-import org.elasticsearch.client.RestClient;
-import org.elasticsearch.client.RestClientBuilder;
-import org.elasticsearch.client.RestHighLevelClient;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -59,6 +61,16 @@ public class HttpClientUtils implements Serializable {
     static ConnectionKeepAliveStrategy myStrategy;
     static CredentialsProvider credentialsProvider;
     private static final Logger logger = LoggerFactory.getLogger(HttpClientUtils.class);
+    private static final AtomicLong REQUESTS = new AtomicLong();
+    private static final AtomicLong FAILURES = new AtomicLong();
+    private static final AtomicLong ELAPSED = new AtomicLong();
+    static PoolingHttpClientConnectionManager sharedConnectionManager;
+    static volatile CloseableHttpClient sharedClient;
+    private static RequestConfig sharedRequestConfig = RequestConfig.custom()
+            .setConnectTimeout(5000)
+            .setSocketTimeout(30000)
+            .setConnectionRequestTimeout(5000)
+            .build();
 
     static {
         SSLContext sslcontext = null;
@@ -93,12 +105,130 @@ public class HttpClientUtils implements Serializable {
         credentialsProvider = new BasicCredentialsProvider();
         credentialsProvider.setCredentials(AuthScope.ANY,
                 new UsernamePasswordCredentials("admin", "xxx"));
+
+        // 第三方接口共用的连接池，证书按系统信任校验
+        sharedConnectionManager = new PoolingHttpClientConnectionManager(
+                RegistryBuilder.<ConnectionSocketFactory>create()
+                        .register("http", PlainConnectionSocketFactory.getSocketFactory())
+                        .register("https", SSLConnectionSocketFactory.getSocketFactory())
+                        .build());
+        sharedConnectionManager.setMaxTotal(200);
+        sharedConnectionManager.setDefaultMaxPerRoute(20);
+        sharedConnectionManager.setValidateAfterInactivity(10000);
+    }
+
+    /**
+     * Size the shared pool and set the timeouts of the shared client, see HttpClientConfig.
+     * The client is built on first use, so settings applied at startup need no rebuild.
+     *
+     * @param maxTotal most connections of the pool.
+     * @param maxPerRoute most connections to one host.
+     * @param connectTimeout connect timeout in milliseconds.
+     * @param socketTimeout read timeout in milliseconds.
+     * @param poolTimeout wait for a pooled connection in milliseconds.
+     */
+    public static synchronized void configure(int maxTotal, int maxPerRoute, int connectTimeout,
+            int socketTimeout, int poolTimeout) {
+        sharedConnectionManager.setMaxTotal(maxTotal);
+        sharedConnectionManager.setDefaultMaxPerRoute(maxPerRoute);
+        sharedRequestConfig = RequestConfig.custom()
+                .setConnectTimeout(connectTimeout)
+                .setSocketTimeout(socketTimeout)
+                .setConnectionRequestTimeout(poolTimeout)
+                .build();
+        if (sharedClient != null) {
+            // the replaced client is not closed, closing it would shut the shared pool down
+            sharedClient = buildSharedClient();
+        }
+    }
+
+    private static CloseableHttpClient buildSharedClient() {
+        return HttpClients.custom()
+                .setConnectionManager(sharedConnectionManager)
+                .setKeepAliveStrategy(myStrategy)
+                .setDefaultRequestConfig(sharedRequestConfig)
+                .evictExpiredConnections()
+                .evictIdleConnections(60, TimeUnit.SECONDS)
+                .build();
     }
 
     public static CloseableHttpClient getClient() {
         return HttpClients.custom().setConnectionManager(connectionManager).build();
     }
 
+    /**
+     * Shared pooled client of all outbound third-party calls.
+     *
+     * @return CloseableHttpClient, must not be closed by callers.
+     */
+    public static CloseableHttpClient getSharedClient() {
+        CloseableHttpClient client = sharedClient;
+        if (client == null) {
+            synchronized (HttpClientUtils.class) {
+                if (sharedClient == null) {
+                    sharedClient = buildSharedClient();
+                }
+                client = sharedClient;
+            }
+        }
+        return client;
+    }
+
+    /**
+     * Execute a request on the shared client, the connection is released once the handler returns.
+     *
+     * @param request http request.
+     * @param handler reads the response.
+     * @param <T> result type.
+     * @return handler result.
+     * @throws IOException if the request fails.
+     */
+    public static <T> T execute(HttpUriRequest request, ResponseHandler<? extends T> handler) throws IOException {
+        long start = System.currentTimeMillis();
+        REQUESTS.incrementAndGet();
+        try {
+            return getSharedClient().execute(request, handler);
+        } catch (IOException | RuntimeException e) {
+            FAILURES.incrementAndGet();
+            logger.error("http request {} {} failed - {}", request.getMethod(), request.getURI().getHost(), e.getMessage());
+            throw e;
+        } finally {
+            ELAPSED.addAndGet(System.currentTimeMillis() - start);
+        }
+    }
+
+    /**
+     * Execute a request on the shared client and read the body as UTF-8 text.
+     *
+     * @param request http request.
+     * @return status and body.
+     * @throws IOException if the request fails.
+     */
+    public static HttpResult execute(HttpUriRequest request) throws IOException {
+        return execute(request, response -> new HttpResult(response.getStatusLine().getStatusCode(),
+                response.getEntity() == null ? "" : EntityUtils.toString(response.getEntity(), StandardCharsets.UTF_8)));
+    }
+
+    /**
+     * Pool and request metrics of the shared client.
+     *
+     * @return metric name to value.
+     */
+    public static Map<String, Long> getStats() {
+        PoolStats pool = sharedConnectionManager.getTotalStats();
+        long requests = REQUESTS.get();
+        Map<String, Long> stats = new LinkedHashMap<>();
+        stats.put("leased", (long) pool.getLeased());
+        stats.put("available", (long) pool.getAvailable());
+        stats.put("pending", (long) pool.getPending());
+        stats.put("max", (long) pool.getMax());
+        stats.put("routes", (long) sharedConnectionManager.getRoutes().size());
+        stats.put("requests", requests);
+        stats.put("failures", FAILURES.get());
+        stats.put("avgMillis", requests == 0 ? 0L : ELAPSED.get() / requests);
+        return stats;
+    }
+
     public static SSLContext skipSsl() throws NoSuchAlgorithmException, KeyManagementException {
         SSLContext sc = SSLContext.getInstance("TLSv1.2");
 
@@ -126,36 +256,6 @@ public class HttpClientUtils implements Serializable {
         return sc;
     }
 
-    public static RestHighLevelClient restClient(String host, int port, String scheme, String user, String password) {
-        RestHighLevelClient client = null;
-        try {
-            BasicCredentialsProvider credentialsProvider = new BasicCredentialsProvider();
-            credentialsProvider.setCredentials(AuthScope.ANY, new UsernamePasswordCredentials(user, password));
-
-            RestClientBuilder builder = RestClient.builder(new HttpHost(host, port, scheme));
-
-            builder.setHttpClientConfigCallback(httpAsyncClientBuilder -> {
-                httpAsyncClientBuilder.setDefaultCredentialsProvider(credentialsProvider);
-                SSLContext sc = null;
-                try {
-                    sc = skipSsl();
-                } catch (NoSuchAlgorithmException | KeyManagementException e) {
-                    logger.error("exception", e);
-                }
-                return httpAsyncClientBuilder.setSSLContext(sc).setSSLHostnameVerifier(NoopHostnameVerifier.INSTANCE);
-            });
-            builder.setRequestConfigCallback(requestConfigBuilder -> {
-                requestConfigBuilder.setConnectTimeout(5000);
-                requestConfigBuilder.setSocketTimeout(60000);
-                return requestConfigBuilder;
-            });
-            client = new RestHighLevelClient(builder);
-        } catch (Exception e) {
-            logger.error("exception", e);
-        }
-        return client;
-    }
-
     public static HashMap<String, Boolean> getConfigCookieInfo(String domainsStr, String securesStr) {
         HashMap<String, Boolean> res = new HashMap<>();
         String[] domains = domainsStr.split(";");
@@ -175,7 +275,6 @@ public class HttpClientUtils implements Serializable {
     }
 
     public static String getHttpClient(String uri, String token, String userToken, String cookie) {
-        HttpClient httpClient = HttpClients.createDefault();
         HttpGet httpGet = new HttpGet(uri);
 
         if (token != null) httpGet.addHeader("token", token);
@@ -183,24 +282,21 @@ public class HttpClientUtils implements Serializable {
         if (cookie != null) httpGet.addHeader("Cookie", "_Y_G_=" + cookie);
 
         try {
-            HttpResponse response = httpClient.execute(httpGet);
-            String responseBody = EntityUtils.toString(response.getEntity());
-            return responseBody;
+            return execute(httpGet).getBody();
         } catch (Exception e) {
             throw new RuntimeException("Unauthorized");
         }
     }
 
     public static String postHttpClient(String uri, String requestBody) {
-        HttpClient httpClient = HttpClients.createDefault();
         HttpPost httpPost = new HttpPost(uri);
         try {
             httpPost.setHeader("Content-Type", "application/json;charset=UTF-8");
             StringEntity stringEntity = new StringEntity(requestBody, StandardCharsets.UTF_8);
             httpPost.setEntity(stringEntity);
-            HttpResponse response = httpClient.execute(httpPost);
-            String responseBody = EntityUtils.toString(response.getEntity());
-            int code = response.getStatusLine().getStatusCode();
+            HttpResult response = execute(httpPost);
+            String responseBody = response.getBody();
+            int code = response.getStatus();
             if (code != 200 && code != 201) {
                 logger.info(responseBody);
             }          
@@ -209,4 +305,25 @@ public class HttpClientUtils implements Serializable {
             throw new RuntimeException("Unauthorized");
         }
     }
+
+    /**
+     * Status and text body of a response.
+     */
+    public static final class HttpResult {
+        private final int status;
+        private final String body;
+
+        HttpResult(int status, String body) {
+            this.status = status;
+            this.body = body;
+        }
+
+        public int getStatus() {
+            return status;
+        }
+
+        public String getBody() {
+            return body;
+        }
+    }
 }
@@ -1,5 +1,8 @@
 package com.datastat.util;
 
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.StringEntity;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -7,8 +10,6 @@ import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ArrayNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
-import com.mashape.unirest.http.HttpResponse;
-import com.mashape.unirest.http.Unirest;
 
 import lombok.SneakyThrows;
 
@@ -19,13 +20,10 @@ public class ModerationUtil {
     public static String getHuaweiCloudToken(String body, String username, String password, String domain, String endpoint) {
         try {
             body = String.format(body, username, password, domain);
-            HttpResponse<com.mashape.unirest.http.JsonNode> response = Unirest
-                    .post(endpoint)
-                    .header("Content-Type", "application/json")
-                    .body(body)
-                    .asJson();
-
-            String token = response.getHeaders().get("X-Subject-Token").get(0);
+            HttpPost httpPost = new HttpPost(endpoint);
+            httpPost.setEntity(new StringEntity(body, ContentType.APPLICATION_JSON));
+            String token = HttpClientUtils.execute(httpPost,
+                    response -> response.getFirstHeader("X-Subject-Token").getValue());
             return token;
         } catch (Exception e) {
             return null;
@@ -48,11 +46,10 @@ public class ModerationUtil {
         bodyNode.set("items", itemsNode);
         String body = objectMapper.writeValueAsString(bodyNode);
 
-        HttpResponse<String> response = Unirest.post(url)
-                .header("X-Auth-Token", token)
-                .header("Content-Type", "application/json")
-                .body(body)
-                .asString();
+        HttpPost httpPost = new HttpPost(url);
+        httpPost.addHeader("X-Auth-Token", token);
+        httpPost.setEntity(new StringEntity(body, ContentType.APPLICATION_JSON));
+        HttpClientUtils.HttpResult response = HttpClientUtils.execute(httpPost);
         JsonNode resp = objectMapper.readTree(response.getBody());
         if (response.getStatus() == 200 && resp.get("result").get("suggestion").asText().equals("pass"))
             return true;
@@ -0,0 +1,157 @@
+/* This project is licensed under the Mulan PSL v2.
+ You can use this software according to the terms and conditions of the Mulan PSL v2.
+ You may obtain a copy of Mulan PSL v2 at:
+     http://license.coscl.org.cn/MulanPSL2
+ THIS SOFTWARE IS PROVIDED ON AN "AS IS" BASIS, WITHOUT WARRANTIES OF ANY KIND, EITHER EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO NON-INFRINGEMENT, MERCHANTABILITY OR FIT FOR A PARTICULAR
+ PURPOSE.
+ See the Mulan PSL v2 for more details.
+ Create: 2024
+*/
+
+package com.datastat.util;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.List;
+
+/**
+ * Immutable presorted result list with its items rendered as json, built once per cache
+ * generation. Pages are cut by offset or by an opaque cursor that carries the snapshot version,
+ * so a cursor of an older generation is detected instead of silently shifting the page.
+ */
+public final class PageSnapshot {
+    private static final String[] EMPTY = new String[0];
+    private final String version;
+    private final String[] items;
+
+    /**
+     * Create a snapshot.
+     *
+     * @param version version tag, see versionOf.
+     * @param items rendered json items in page order.
+     */
+    public PageSnapshot(String version, List<String> items) {
+        this.version = version;
+        this.items = items.toArray(EMPTY);
+    }
+
+    /**
+     * Version tag of the data a snapshot is built from, equal on every instance for equal data.
+     *
+     * @param source cached json the items come from.
+     * @return version tag.
+     */
+    public static String versionOf(String source) {
+        return Integer.toHexString(source.length()) + Integer.toHexString(source.hashCode());
+    }
+
+    /**
+     * Offset of a page number.
+     *
+     * @param page page number from 1.
+     * @param pageSize items per page.
+     * @return offset, -1 if page or page size is not positive.
+     */
+    public static int offsetOf(int page, int pageSize) {
+        if (page <= 0 || pageSize <= 0) {
+            return -1;
+        }
+        long offset = (long) (page - 1) * pageSize;
+        return offset > Integer.MAX_VALUE ? Integer.MAX_VALUE : (int) offset;
+    }
+
+    public String getVersion() {
+        return version;
+    }
+
+    public int size() {
+        return items.length;
+    }
+
+    /**
+     * Json array of the items from an offset.
+     *
+     * @param offset first item.
+     * @param limit most items.
+     * @return json array, null if the offset is past the end.
+     */
+    public String page(int offset, int limit) {
+        if (offset < 0 || limit < 0 || offset > items.length) {
+            return null;
+        }
+        int end = (int) Math.min(items.length, (long) offset + limit);
+        StringBuilder sb = new StringBuilder("[");
+        for (int i = offset; i < end; i++) {
+            if (i > offset) {
+                sb.append(',');
+            }
+            sb.append(items[i]);
+        }
+        return sb.append(']').toString();
+    }
+
+    /**
+     * Json array of all items.
+     *
+     * @return json array.
+     */
+    public String all() {
+        return page(0, items.length);
+    }
+
+    /**
+     * Page object {data, total, version, cursor} of the items from an offset.
+     *
+     * @param offset first item.
+     * @param limit most items.
+     * @return json object, the cursor is empty after the last page.
+     */
+    public String pageObject(int offset, int limit) {
+        return "{\"data\":" + page(offset, limit) + ",\"total\":" + items.length
+                + ",\"version\":\"" + version + "\",\"cursor\":\"" + nextCursor(offset, limit) + "\"}";
+    }
+
+    /**
+     * Cursor of the page after the one from an offset.
+     *
+     * @param offset first item of the current page.
+     * @param limit items per page.
+     * @return cursor, empty after the last page.
+     */
+    public String nextCursor(int offset, int limit) {
+        long next = (long) offset + limit;
+        return offset < 0 || limit <= 0 || next >= items.length ? "" : cursor((int) next);
+    }
+
+    /**
+     * Opaque cursor of an offset in this snapshot.
+     *
+     * @param offset item offset.
+     * @return cursor.
+     */
+    public String cursor(int offset) {
+        String value = version + ":" + offset;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Offset a cursor points to.
+     *
+     * @param cursor cursor from a page of this data.
+     * @return offset, -1 if the cursor is invalid or from another version.
+     */
+    public int offsetOf(String cursor) {
+        try {
+            String value = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int colon = value.lastIndexOf(':');
+            if (colon < 0 || !version.equals(value.substring(0, colon))) {
+                return -1;
+            }
+            int offset = Integer.parseInt(value.substring(colon + 1));
+            return offset < 0 || offset > items.length ? -1 : offset;
+        } catch (IllegalArgumentException e) {
+            return -1;
+        }
+    }
+}
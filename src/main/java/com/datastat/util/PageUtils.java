@@ -22,13 +22,13 @@ public class PageUtils {
     private static final Logger logger = LoggerFactory.getLogger(PageUtils.class);
     public static Map getDataByPage(int currentPage, int pageSize, List data) {
         int dataSize = data.size();
-        int totalPage = dataSize / pageSize + 1;
+        int totalPage = pageSize <= 0 ? 0 : (dataSize + pageSize - 1) / pageSize;
 
         HashMap<Object, Object> resultMap = new HashMap<>();
-        int startIndex = multiplyExact(currentPage - 1, pageSize);
-        int endIndex = multiplyExact(currentPage, pageSize);
         try {
-            List list = currentPage >= totalPage ? data.subList(startIndex, dataSize) : data.subList(startIndex, endIndex);
+            int startIndex = multiplyExact(currentPage - 1, pageSize);
+            int endIndex = currentPage >= totalPage ? dataSize : multiplyExact(currentPage, pageSize);
+            List list = data.subList(startIndex, endIndex);
             resultMap.put("data", list);
             resultMap.put("total", dataSize);
         } catch (Exception e) {
@@ -1,134 +0,0 @@
-package com.datastat.util;
-
-import org.apache.http.HttpHost;
-import org.apache.http.auth.AuthScope;
-import org.apache.http.auth.UsernamePasswordCredentials;
-import org.apache.http.client.CredentialsProvider;
-import org.apache.http.impl.client.BasicCredentialsProvider;
-import org.apache.http.impl.nio.client.HttpAsyncClientBuilder;
-import org.apache.http.nio.conn.ssl.SSLIOSessionStrategy;
-import org.elasticsearch.action.admin.cluster.health.ClusterHealthRequest;
-import org.elasticsearch.action.admin.cluster.health.ClusterHealthResponse;
-import org.elasticsearch.client.RequestOptions;
-import org.elasticsearch.client.RestClient;
-import org.elasticsearch.client.RestClientBuilder;
-import org.elasticsearch.client.RestHighLevelClient;
-import org.elasticsearch.common.Nullable;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
-
-import javax.net.ssl.*;
-import java.io.IOException;
-import java.security.KeyManagementException;
-import java.security.NoSuchAlgorithmException;
-import java.security.SecureRandom;
-import java.security.cert.CertificateException;
-import java.security.cert.X509Certificate;
-import java.util.List;
-import java.util.Objects;
-
-/**
- * Rest High Level连接安全集群（不使用证书）
- */
-public class RestHighLevelClientUtil {
-    /**
-     * 创建客户端的类，定义create函数用于创建客户端。
-     */
-    private static final Logger logger = LoggerFactory.getLogger(RestHighLevelClientUtil.class);
-    public static RestHighLevelClient create(List<String> host, int port, String protocol,
-                                             String username, String password) throws IOException {
-        final CredentialsProvider credentialsProvider = new BasicCredentialsProvider();
-        credentialsProvider.setCredentials(AuthScope.ANY, new UsernamePasswordCredentials(username, password));
-
-        SSLContext sc = null;
-        try {
-            sc = SSLContext.getInstance("TLSv1.2");
-            SecureRandom secureRandom = SecureRandom.getInstanceStrong();
-            sc.init(null, trustAllCerts, secureRandom);
-        } catch (KeyManagementException | NoSuchAlgorithmException e) {
-            logger.error("exception", e);
-        }
-
-        SSLIOSessionStrategy sessionStrategy = new SSLIOSessionStrategy(sc, new NullHostNameVerifier());
-        SecuredHttpClientConfigCallback httpClientConfigCallback = new SecuredHttpClientConfigCallback(sessionStrategy,
-                credentialsProvider);
-
-        RestClientBuilder builder = RestClient.builder(constructHttpHosts(host, port, protocol))
-                .setRequestConfigCallback(requestConfig -> requestConfig.setConnectTimeout(5000)
-                        .setConnectionRequestTimeout(-1)
-                        .setSocketTimeout(60000))
-                .setHttpClientConfigCallback(httpClientConfigCallback);
-        final RestHighLevelClient client = new RestHighLevelClient(builder);
-
-        ClusterHealthRequest request = new ClusterHealthRequest();
-        ClusterHealthResponse response = client.cluster().health(request, RequestOptions.DEFAULT);
-        return client;
-    }
-
-    /**
-     * constructHttpHosts函数转换host集群节点ip列表。
-     */
-    public static HttpHost[] constructHttpHosts(List<String> host, int port, String protocol) {
-        return host.stream().map(p -> new HttpHost(p, port, protocol)).toArray(HttpHost[]::new);
-    }
-
-    /**
-     * trustAllCerts忽略证书配置。
-     */
-    public static TrustManager[] trustAllCerts = new TrustManager[]{
-            new X509TrustManager() {
-                @Override
-                public void checkClientTrusted(X509Certificate[] chain, String authType) throws CertificateException {
-                }
-
-                @Override
-                public void checkServerTrusted(X509Certificate[] chain, String authType) throws CertificateException {
-                }
-
-                @Override
-                public X509Certificate[] getAcceptedIssuers() {
-                    return new X509Certificate[0];
-                }
-            }
-    };
-
-    static class SecuredHttpClientConfigCallback implements RestClientBuilder.HttpClientConfigCallback {
-        @Nullable
-        private final CredentialsProvider credentialsProvider;
-
-        private final SSLIOSessionStrategy sslStrategy;
-
-        SecuredHttpClientConfigCallback(final SSLIOSessionStrategy sslStrategy,
-                                        @Nullable final CredentialsProvider credentialsProvider) {
-            this.sslStrategy = Objects.requireNonNull(sslStrategy);
-            this.credentialsProvider = credentialsProvider;
-        }
-
-        @Nullable
-        CredentialsProvider getCredentialsProvider() {
-            return credentialsProvider;
-        }
-
-        SSLIOSessionStrategy getSSLStrategy() {
-            return sslStrategy;
-        }
-
-        @Override
-        public HttpAsyncClientBuilder customizeHttpClient(final HttpAsyncClientBuilder httpClientBuilder) {
-            // enable SSL / TLS
-            httpClientBuilder.setSSLStrategy(sslStrategy);
-            // enable user authentication
-            if (credentialsProvider != null) {
-                httpClientBuilder.setDefaultCredentialsProvider(credentialsProvider);
-            }
-            return httpClientBuilder;
-        }
-    }
-
-    public static class NullHostNameVerifier implements HostnameVerifier {
-        @Override
-        public boolean verify(String arg0, SSLSession arg1) {
-            return true;
-        }
-    }
-}
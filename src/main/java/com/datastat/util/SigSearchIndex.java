@@ -0,0 +1,235 @@
+/* This project is licensed under the Mulan PSL v2.
+ You can use this software according to the terms and conditions of the Mulan PSL v2.
+ You may obtain a copy of Mulan PSL v2 at:
+     http://license.coscl.org.cn/MulanPSL2
+ THIS SOFTWARE IS PROVIDED ON AN "AS IS" BASIS, WITHOUT WARRANTIES OF ANY KIND, EITHER EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO NON-INFRINGEMENT, MERCHANTABILITY OR FIT FOR A PARTICULAR
+ PURPOSE.
+ See the Mulan PSL v2 for more details.
+ Create: 2024
+*/
+
+package com.datastat.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+/**
+ * Immutable substring index over sig names, repo names and maintainer ids. Every field has
+ * a trigram to sig posting list, a query intersects the postings of its trigrams and checks
+ * the few candidates left. Matches rank exact before prefix before substring, then by sig name.
+ */
+public final class SigSearchIndex {
+    private static final int GRAM = 3;
+    private static final int EXACT = 0;
+    private static final int PREFIX = 1;
+    private static final int SUBSTRING = 2;
+    private static final int NO_MATCH = -1;
+
+    private final String source;
+    private final String[] items;
+    private final String[][][] values;
+    private final List<Map<String, int[]>> grams;
+    private volatile long checkedAt;
+
+    private SigSearchIndex(String source, String[] items, String[][][] values, List<Map<String, int[]>> grams) {
+        this.source = source;
+        this.items = items;
+        this.values = values;
+        this.grams = grams;
+        this.checkedAt = System.currentTimeMillis();
+    }
+
+    /**
+     * Build the index of a sig list.
+     *
+     * @param source json the sigs were read from, kept to detect refreshed data.
+     * @param sigs array of {sig_name, repos, maintainers, ...}.
+     * @return SigSearchIndex.
+     */
+    public static SigSearchIndex build(String source, JsonNode sigs) {
+        List<JsonNode> sorted = new ArrayList<>();
+        sigs.forEach(sorted::add);
+        sorted.sort(Comparator.comparing(sig -> sig.path("sig_name").asText().toLowerCase(Locale.ROOT)));
+
+        int size = sorted.size();
+        String[] items = new String[size];
+        String[][][] values = new String[3][size][];
+        for (int i = 0; i < size; i++) {
+            JsonNode sig = sorted.get(i);
+            items[i] = sig.toString();
+            values[0][i] = new String[] {sig.path("sig_name").asText().toLowerCase(Locale.ROOT)};
+            values[1][i] = lowerCaseValues(sig.get("repos"));
+            values[2][i] = lowerCaseValues(sig.get("maintainers"));
+        }
+        List<Map<String, int[]>> grams = new ArrayList<>(values.length);
+        for (String[][] field : values) {
+            grams.add(postings(field));
+        }
+        return new SigSearchIndex(source, items, values, grams);
+    }
+
+    /**
+     * Find the sigs whose name, repos and maintainers contain the given strings, case insensitive.
+     *
+     * @param sig part of the sig name, null for any.
+     * @param repo part of a repo name, null for any.
+     * @param user part of a maintainer id, null for any.
+     * @return sig json objects in rank order.
+     */
+    public List<String> search(String sig, String repo, String user) {
+        String[] queries = {lowerCase(sig), lowerCase(repo), lowerCase(user)};
+        int[] candidates = null;
+        for (int field = 0; field < queries.length; field++) {
+            if (queries[field] != null && queries[field].length() >= GRAM) {
+                candidates = intersect(candidates, candidates(field, queries[field]));
+            }
+        }
+
+        List<int[]> matches = new ArrayList<>();
+        int count = candidates == null ? items.length : candidates.length;
+        for (int i = 0; i < count; i++) {
+            int ordinal = candidates == null ? i : candidates[i];
+            int score = 0;
+            for (int field = 0; field < queries.length && score >= 0; field++) {
+                if (queries[field] != null) {
+                    int rank = rank(values[field][ordinal], queries[field]);
+                    score = rank == NO_MATCH ? NO_MATCH : score + rank;
+                }
+            }
+            if (score >= 0) {
+                matches.add(new int[] {score, ordinal});
+            }
+        }
+        matches.sort(Comparator.<int[]>comparingInt(m -> m[0]).thenComparingInt(m -> m[1]));
+
+        List<String> result = new ArrayList<>(matches.size());
+        for (int[] match : matches) {
+            result.add(items[match[1]]);
+        }
+        return result;
+    }
+
+    /**
+     * Json the index was built from.
+     *
+     * @return source json.
+     */
+    public String getSource() {
+        return source;
+    }
+
+    /**
+     * Time the source was last compared with the stored sig data.
+     *
+     * @return epoch millis.
+     */
+    public long getCheckedAt() {
+        return checkedAt;
+    }
+
+    /**
+     * Record that the stored sig data is still the source of this index.
+     */
+    public void markChecked() {
+        checkedAt = System.currentTimeMillis();
+    }
+
+    private int[] candidates(int field, String query) {
+        Map<String, int[]> postings = grams.get(field);
+        int[] result = null;
+        for (int i = 0; i + GRAM <= query.length(); i++) {
+            int[] posting = postings.get(query.substring(i, i + GRAM));
+            if (posting == null) {
+                return new int[0];
+            }
+            result = intersect(result, posting);
+            if (result.length == 0) {
+                break;
+            }
+        }
+        return result;
+    }
+
+    private static int rank(String[] fieldValues, String query) {
+        if (fieldValues == null) {
+            return NO_MATCH;
+        }
+        int best = NO_MATCH;
+        for (String value : fieldValues) {
+            int rank = value.equals(query) ? EXACT
+                    : value.startsWith(query) ? PREFIX
+                    : value.contains(query) ? SUBSTRING : NO_MATCH;
+            if (rank != NO_MATCH && (best == NO_MATCH || rank < best)) {
+                best = rank;
+            }
+        }
+        return best;
+    }
+
+    private static int[] intersect(int[] a, int[] b) {
+        if (a == null) {
+            return b;
+        }
+        int[] result = new int[Math.min(a.length, b.length)];
+        int n = 0;
+        for (int i = 0, j = 0; i < a.length && j < b.length;) {
+            if (a[i] == b[j]) {
+                result[n++] = a[i];
+                i++;
+                j++;
+            } else if (a[i] < b[j]) {
+                i++;
+            } else {
+                j++;
+            }
+        }
+        return Arrays.copyOf(result, n);
+    }
+
+    /**
+     * Trigram postings of a field, the ordinals of each list ascending and distinct.
+     */
+    private static Map<String, int[]> postings(String[][] field) {
+        HashMap<String, List<Integer>> lists = new HashMap<>();
+        for (int ordinal = 0; ordinal < field.length; ordinal++) {
+            if (field[ordinal] == null) {
+                continue;
+            }
+            for (String value : field[ordinal]) {
+                for (int i = 0; i + GRAM <= value.length(); i++) {
+                    List<Integer> list = lists.computeIfAbsent(value.substring(i, i + GRAM), k -> new ArrayList<>());
+                    if (list.isEmpty() || list.get(list.size() - 1) != ordinal) {
+                        list.add(ordinal);
+                    }
+                }
+            }
+        }
+        HashMap<String, int[]> postings = new HashMap<>(lists.size() * 2);
+        lists.forEach((gram, list) -> postings.put(gram, list.stream().mapToInt(Integer::intValue).toArray()));
+        return Collections.unmodifiableMap(postings);
+    }
+
+    private static String[] lowerCaseValues(JsonNode array) {
+        if (array == null || !array.isArray()) {
+            return null;
+        }
+        String[] result = new String[array.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = array.get(i).asText().toLowerCase(Locale.ROOT);
+        }
+        return result;
+    }
+
+    private static String lowerCase(String query) {
+        return query == null ? null : query.toLowerCase(Locale.ROOT);
+    }
+}
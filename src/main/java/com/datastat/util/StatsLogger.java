@@ -0,0 +1,80 @@
+/* This project is licensed under the Mulan PSL v2.
+ You can use this software according to the terms and conditions of the Mulan PSL v2.
+ You may obtain a copy of Mulan PSL v2 at:
+     http://license.coscl.org.cn/MulanPSL2
+ THIS SOFTWARE IS PROVIDED ON AN "AS IS" BASIS, WITHOUT WARRANTIES OF ANY KIND, EITHER EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO NON-INFRINGEMENT, MERCHANTABILITY OR FIT FOR A PARTICULAR
+ PURPOSE.
+ See the Mulan PSL v2 for more details.
+ Create: 2024
+*/
+
+package com.datastat.util;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Logs the stats of every registered cache or limiter every stats.log.period seconds
+ * on a single shared thread. A period of 0 turns the logging off.
+ */
+@Component
+public class StatsLogger {
+    @Value("${stats.log.period:300}")
+    private long period;
+
+    private static final Logger logger = LoggerFactory.getLogger(StatsLogger.class);
+    private final Map<String, Supplier<?>> sources = new ConcurrentSkipListMap<>();
+    private ScheduledExecutorService service;
+
+    @PostConstruct
+    public void init() {
+        if (period <= 0) {
+            return;
+        }
+        service = Executors.newSingleThreadScheduledExecutor(
+                new ThreadFactoryBuilder().setNameFormat("stats-logger-%d").setDaemon(true).build());
+        service.scheduleAtFixedRate(this::logAll, period, period, TimeUnit.SECONDS);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (service != null) {
+            service.shutdownNow();
+        }
+    }
+
+    /**
+     * Log the stats of a source from now on.
+     *
+     * @param name name of the source in the log.
+     * @param stats current stats of the source.
+     */
+    public void register(String name, Supplier<?> stats) {
+        sources.put(name, stats);
+    }
+
+    private void logAll() {
+        sources.forEach((name, stats) -> {
+            try {
+                logger.info("{} stats - {}", name, stats.get());
+            } catch (RuntimeException e) {
+                logger.error("{} stats exception", name, e);
+            }
+        });
+    }
+}
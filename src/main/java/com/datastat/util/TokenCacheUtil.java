@@ -0,0 +1,99 @@
+/* This project is licensed under the Mulan PSL v2.
+ You can use this software according to the terms and conditions of the Mulan PSL v2.
+ You may obtain a copy of Mulan PSL v2 at:
+     http://license.coscl.org.cn/MulanPSL2
+ THIS SOFTWARE IS PROVIDED ON AN "AS IS" BASIS, WITHOUT WARRANTIES OF ANY KIND, EITHER EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO NON-INFRINGEMENT, MERCHANTABILITY OR FIT FOR A PARTICULAR
+ PURPOSE.
+ See the Mulan PSL v2 for more details.
+ Create: 2024
+*/
+
+package com.datastat.util;
+
+import java.nio.charset.StandardCharsets;
+import java.security.interfaces.RSAPrivateKey;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import com.auth0.jwt.JWT;
+import com.auth0.jwt.JWTVerifier;
+import com.auth0.jwt.algorithms.Algorithm;
+import com.auth0.jwt.interfaces.DecodedJWT;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.hash.Hashing;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+
+/**
+ * Caches of parsed rsa private keys, jwt verifiers and decrypted tokens.
+ */
+public final class TokenCacheUtil {
+    /**
+     * Decrypted tokens live this long, signature and expiry are still checked by the callers.
+     */
+    private static final long TOKEN_TTL_SECONDS = 60L;
+    private static final Cache<String, RSAPrivateKey> PRIVATE_KEYS = CacheBuilder.newBuilder()
+            .maximumSize(64)
+            .build();
+    private static final Cache<String, JWTVerifier> VERIFIERS = CacheBuilder.newBuilder()
+            .maximumSize(10000)
+            .expireAfterAccess(1, TimeUnit.HOURS)
+            .build();
+    private static final Cache<String, DecodedJWT> TOKENS = CacheBuilder.newBuilder()
+            .maximumSize(10000)
+            .expireAfterWrite(TOKEN_TTL_SECONDS, TimeUnit.SECONDS)
+            .build();
+
+    private TokenCacheUtil() {
+    }
+
+    /**
+     * Get the parsed private key of a base64 pkcs8 key string.
+     *
+     * @param privateKey base64 encoded private key.
+     * @return RSAPrivateKey.
+     * @throws Exception if the key cannot be parsed.
+     */
+    public static RSAPrivateKey getPrivateKey(String privateKey) throws Exception {
+        return load(PRIVATE_KEYS, hash(privateKey), () -> RSAUtil.getPrivateKey(privateKey));
+    }
+
+    /**
+     * Get a HMAC256 verifier of the password.
+     *
+     * @param password signing password.
+     * @return JWTVerifier.
+     * @throws Exception if the verifier cannot be built.
+     */
+    public static JWTVerifier getVerifier(String password) throws Exception {
+        return load(VERIFIERS, hash(password), () -> JWT.require(Algorithm.HMAC256(password)).build());
+    }
+
+    /**
+     * Decrypt a rsa encrypted jwt and decode it, reusing the result for a short time.
+     *
+     * @param cipherText rsa encrypted token.
+     * @param privateKey base64 encoded private key.
+     * @return DecodedJWT, getToken() returns the decrypted token.
+     * @throws Exception if the token cannot be decrypted or decoded.
+     */
+    public static DecodedJWT decodeToken(String cipherText, String privateKey) throws Exception {
+        return load(TOKENS, hash(privateKey + ":" + cipherText),
+                () -> JWT.decode(RSAUtil.privateDecrypt(cipherText, getPrivateKey(privateKey))));
+    }
+
+    private static String hash(String value) {
+        return Hashing.sha256().hashString(value, StandardCharsets.UTF_8).toString();
+    }
+
+    private static <T> T load(Cache<String, T> cache, String key, Callable<T> loader) throws Exception {
+        try {
+            return cache.get(key, loader);
+        } catch (ExecutionException | UncheckedExecutionException e) {
+            Throwable cause = e.getCause();
+            throw cause instanceof Exception ? (Exception) cause : e;
+        }
+    }
+}
@@ -0,0 +1,87 @@
+/* This project is licensed under the Mulan PSL v2.
+ You can use this software according to the terms and conditions of the Mulan PSL v2.
+ You may obtain a copy of Mulan PSL v2 at:
+     http://license.coscl.org.cn/MulanPSL2
+ THIS SOFTWARE IS PROVIDED ON AN "AS IS" BASIS, WITHOUT WARRANTIES OF ANY KIND, EITHER EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO NON-INFRINGEMENT, MERCHANTABILITY OR FIT FOR A PARTICULAR
+ PURPOSE.
+ See the Mulan PSL v2 for more details.
+ Create: 2024
+*/
+
+package com.datastat.util;
+
+import java.io.File;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Memoized tables built from local yaml files, rebuilt when the file changes on disk.
+ */
+public final class YamlTableCache {
+    private static final Logger logger = LoggerFactory.getLogger(YamlTableCache.class);
+    /**
+     * Minimum interval between two file stats of the same table, in milliseconds.
+     */
+    private static final long CHECK_INTERVAL = 10000L;
+    private static final ConcurrentHashMap<String, Entry> TABLES = new ConcurrentHashMap<>();
+
+    private YamlTableCache() {
+    }
+
+    /**
+     * Get a table, building it with the loader on first use and after the file changed.
+     * The previous table is kept if a rebuild fails.
+     *
+     * @param name table name.
+     * @param yamlFile local yaml file.
+     * @param loader builds the table from the file, should return an immutable value.
+     * @param <T> table type.
+     * @return table, null if it was never built successfully.
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> T get(String name, String yamlFile, Function<String, T> loader) {
+        String key = name + ":" + yamlFile;
+        Entry entry = TABLES.get(key);
+        long now = System.currentTimeMillis();
+        if (entry != null && now - entry.checkedAt < CHECK_INTERVAL) {
+            return (T) entry.value;
+        }
+        entry = TABLES.compute(key, (k, old) -> {
+            File file = new File(yamlFile);
+            long lastModified = file.lastModified();
+            long length = file.length();
+            if (old != null && old.lastModified == lastModified && old.length == length) {
+                return new Entry(old.value, lastModified, length, now);
+            }
+            try {
+                T value = loader.apply(yamlFile);
+                if (value != null) {
+                    logger.info("yaml table {} loaded from {}", name, yamlFile);
+                    return new Entry(value, lastModified, length, now);
+                }
+            } catch (Exception e) {
+                logger.error("exception", e);
+            }
+            return old == null ? null : new Entry(old.value, old.lastModified, old.length, now);
+        });
+        return entry == null ? null : (T) entry.value;
+    }
+
+    private static final class Entry {
+        private final Object value;
+        private final long lastModified;
+        private final long length;
+        private final long checkedAt;
+
+        Entry(Object value, long lastModified, long length, long checkedAt) {
+            this.value = value;
+            this.lastModified = lastModified;
+            this.length = length;
+            this.checkedAt = checkedAt;
+        }
+    }
+}
@@ -12,9 +12,11 @@
 package com.datastat.ds.unit;
 
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.ArgumentMatchers.isNull;
 import static org.mockito.Mockito.when;
 
+import java.io.ByteArrayInputStream;
 import java.nio.charset.StandardCharsets;
 
 import org.asynchttpclient.ListenableFuture;
@@ -95,11 +97,13 @@ public class DaoUnitTests {
                 + "\"type\":{\"buckets\":[{\"key\":\"maintainers\",\"doc_count\":1609}]}},"
                 + "{\"key\":\"shinwell_hu\",\"type\":{\"buckets\":[{\"key\":\"maintainers\",\"doc_count\":1609}]}}]}}]}}}";
 
-        when(esAsyncHttpUtil.executeSearch(anyString(), isNull(), isNull())).thenReturn(mockFuture);
+        when(esAsyncHttpUtil.executeSearch(anyString(), isNull(), isNull(), eq("queryUserOwnerType"))).thenReturn(mockFuture);
         when(mockFuture.get()).thenReturn(mockResponse);
         when(mockResponse.getStatusCode()).thenReturn(200);
         when(mockResponse.getStatusText()).thenReturn("OK");
         when(mockResponse.getResponseBody(StandardCharsets.UTF_8)).thenReturn(respBody);
+        when(mockResponse.getResponseBodyAsStream())
+                .thenAnswer(invocation -> new ByteArrayInputStream(respBody.getBytes(StandardCharsets.UTF_8)));
         String community = "openubmc";
         String user = "user";
         when(queryDaoContext.getQueryDao(community)).thenReturn(queryDao);
@@ -118,11 +122,13 @@ public class DaoUnitTests {
     @Test()
     void testViewCountDao() throws Exception {
         String respBody = "{\"aggregations\":{\"group_field\":{\"buckets\":[{\"key\":\"3828\",\"doc_count\":1609}]}}}";
-        when(esAsyncHttpUtil.executeSearch(anyString(), isNull(), anyString())).thenReturn(mockFuture);
+        when(esAsyncHttpUtil.executeSearch(anyString(), isNull(), anyString(), eq("getViewCount"))).thenReturn(mockFuture);
         when(mockFuture.get()).thenReturn(mockResponse);
         when(mockResponse.getStatusCode()).thenReturn(200);
         when(mockResponse.getStatusText()).thenReturn("OK");
         when(mockResponse.getResponseBody(StandardCharsets.UTF_8)).thenReturn(respBody);
+        when(mockResponse.getResponseBodyAsStream())
+                .thenAnswer(invocation -> new ByteArrayInputStream(respBody.getBytes(StandardCharsets.UTF_8)));
         String community = "foundry";
         RequestParams params = new RequestParams();
         params.setStart("2024-01-01");
@@ -0,0 +1,622 @@
+/* This project is licensed under the Mulan PSL v2.
+ You can use this software according to the terms and conditions of the Mulan PSL v2.
+ You may obtain a copy of Mulan PSL v2 at:
+     http://license.coscl.org.cn/MulanPSL2
+ THIS SOFTWARE IS PROVIDED ON AN "AS IS" BASIS, WITHOUT WARRANTIES OF ANY KIND, EITHER EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO NON-INFRINGEMENT, MERCHANTABILITY OR FIT FOR A PARTICULAR
+ PURPOSE.
+ See the Mulan PSL v2 for more details.
+ Create: 2024
+*/
+
+package com.datastat.ds.unit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeoutException;
+
+import org.asynchttpclient.ListenableFuture;
+import org.asynchttpclient.Response;
+import org.elasticsearch.client.RestHighLevelClient;
+import org.elasticsearch.common.bytes.BytesArray;
+import org.elasticsearch.search.DocValueFormat;
+import org.elasticsearch.search.SearchHit;
+import org.elasticsearch.search.builder.SearchSourceBuilder;
+import org.elasticsearch.search.sort.SortOrder;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.datastat.aop.LimitRequest;
+import com.datastat.aop.RequestLimiter;
+import com.datastat.dao.RedisDao;
+import com.datastat.dao.metric.MetricDao;
+import com.datastat.dao.metric.MetricResultCache;
+import com.datastat.model.CustomPropertiesConfig;
+import com.datastat.model.DatastatRequestBody;
+import com.datastat.service.VersionService;
+import com.datastat.util.CircuitBreaker;
+import com.datastat.util.EsAsyncHttpUtil;
+import com.datastat.util.EsBucketReader;
+import com.datastat.util.EsExportWriter;
+import com.datastat.util.EsQueryUtils;
+import com.datastat.util.PageSnapshot;
+import com.datastat.util.PageUtils;
+import com.datastat.util.SigSearchIndex;
+import com.datastat.util.StatsLogger;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+public class UtilUnitTests {
+    private static final long HOUR = 3600000L;
+    private static final long DAY = 86400000L;
+    // 2024-01-01T00:00:00Z
+    private static final long JAN_1 = 1704067200000L;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private MetricResultCache metricResultCache;
+
+    private RequestLimiter requestLimiter;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        metricResultCache = new MetricResultCache();
+        ReflectionTestUtils.setField(metricResultCache, "env", new MockEnvironment());
+        ReflectionTestUtils.setField(metricResultCache, "objectMapper", objectMapper);
+        metricResultCache.init();
+
+        requestLimiter = new RequestLimiter();
+        ReflectionTestUtils.setField(requestLimiter, "env", new MockEnvironment());
+        ReflectionTestUtils.setField(requestLimiter, "statsLogger", mock(StatsLogger.class));
+        requestLimiter.init();
+    }
+
+    @Test()
+    void testBucketReaderStreamsArrayAtPath() throws Exception {
+        String body = "{\"took\":3,\"hits\":{\"hits\":[{\"_id\":\"x\"}]},"
+                + "\"aggregations\":{\"other\":{\"buckets\":[{\"key\":\"y\"}]},"
+                + "\"group_field\":{\"buckets\":[{\"key\":\"a\",\"doc_count\":2},{\"key\":\"b\",\"doc_count\":1}]}}}";
+        Iterator<JsonNode> buckets = EsBucketReader.buckets(stream(body), EsBucketReader.GROUP_FIELD_BUCKETS);
+
+        List<String> keys = new ArrayList<>();
+        buckets.forEachRemaining(bucket -> keys.add(bucket.get("key").asText()));
+        assertEquals(Arrays.asList("a", "b"), keys);
+    }
+
+    @Test()
+    void testBucketReaderMissingPath() {
+        assertThrows(IOException.class,
+                () -> EsBucketReader.buckets(stream("{\"aggregations\":{}}"), EsBucketReader.GROUP_FIELD_BUCKETS));
+        assertThrows(IOException.class,
+                () -> EsBucketReader.buckets(stream("{\"aggregations\":{\"group_field\":{\"buckets\":{}}}}"),
+                        EsBucketReader.GROUP_FIELD_BUCKETS));
+    }
+
+    @Test()
+    void testBucketReaderParsedResponse() throws Exception {
+        JsonNode response = objectMapper.readTree("{\"aggregations\":{\"group_field\":{\"buckets\":[{\"key\":\"a\"}]}}}");
+        assertEquals("a", EsBucketReader.groupFieldBuckets(response).next().get("key").asText());
+        assertThrows(IOException.class, () -> EsBucketReader.groupFieldBuckets(objectMapper.readTree("{}")));
+    }
+
+    @Test()
+    void testMultiSearchSplitsResponses() throws Exception {
+        EsAsyncHttpUtil esAsyncHttpUtil = mockMultiSearch(200,
+                "{\"took\":5,\"responses\":[{\"hits\":{\"total\":1}},{\"hits\":{\"total\":2}}]}");
+
+        List<JsonNode> results = esAsyncHttpUtil.multiSearch("url", Arrays.asList("a", "b"), Arrays.asList("{}", "{}"), 0L);
+        assertEquals(2, results.size());
+        assertEquals(1, results.get(0).at("/hits/total").asInt());
+        assertEquals(2, results.get(1).at("/hits/total").asInt());
+        assertTrue(esAsyncHttpUtil.multiSearch("url", "a", new ArrayList<>()).isEmpty());
+    }
+
+    @Test()
+    void testMultiSearchFailsOnErrorItem() throws Exception {
+        EsAsyncHttpUtil esAsyncHttpUtil = mockMultiSearch(200,
+                "{\"responses\":[{\"hits\":{\"total\":1}},{\"error\":{\"type\":\"index_not_found_exception\"}}]}");
+
+        IOException e = assertThrows(IOException.class,
+                () -> esAsyncHttpUtil.multiSearch("url", Arrays.asList("a", "b"), Arrays.asList("{}", "{}"), 0L));
+        assertTrue(e.getMessage().contains(" b "));
+    }
+
+    @Test()
+    void testMultiSearchFailsOnMissingResponses() throws Exception {
+        EsAsyncHttpUtil esAsyncHttpUtil = mockMultiSearch(200, "{\"responses\":[{\"hits\":{\"total\":1}}]}");
+
+        assertThrows(IOException.class,
+                () -> esAsyncHttpUtil.multiSearch("url", Arrays.asList("a", "b"), Arrays.asList("{}", "{}"), 0L));
+    }
+
+    @Test()
+    void testMultiSearchFailsOnErrorStatus() throws Exception {
+        EsAsyncHttpUtil esAsyncHttpUtil = mockMultiSearch(503, "{}");
+
+        assertThrows(IOException.class,
+                () -> esAsyncHttpUtil.multiSearch("url", "a", Arrays.asList("{}")));
+    }
+
+    @Test()
+    void testCircuitBreakerOpensAfterConsecutiveFailures() throws Exception {
+        CircuitBreaker breaker = new CircuitBreaker("es", 3, 60000L);
+
+        assertEquals(CircuitBreaker.Permit.CALL, breaker.acquire());
+        breaker.onFailure(CircuitBreaker.Permit.CALL);
+        breaker.onFailure(CircuitBreaker.Permit.CALL);
+        // a success in between resets the count
+        breaker.onSuccess(CircuitBreaker.Permit.CALL);
+        breaker.onFailure(CircuitBreaker.Permit.CALL);
+        breaker.onFailure(CircuitBreaker.Permit.CALL);
+        assertEquals("closed", breaker.getState());
+        breaker.onFailure(CircuitBreaker.Permit.CALL);
+        assertEquals("open", breaker.getState());
+        assertEquals(CircuitBreaker.Permit.REJECTED, breaker.acquire());
+
+        // calls let through before it opened do not close it
+        breaker.onSuccess(CircuitBreaker.Permit.CALL);
+        assertEquals("open", breaker.getState());
+    }
+
+    @Test()
+    void testCircuitBreakerTrial() throws Exception {
+        CircuitBreaker breaker = new CircuitBreaker("es", 1, 20L);
+        breaker.onFailure(CircuitBreaker.Permit.CALL);
+        assertEquals(CircuitBreaker.Permit.REJECTED, breaker.acquire());
+
+        // a single trial once the open period is over, a failed trial opens it again
+        Thread.sleep(30L);
+        assertEquals("half_open", breaker.getState());
+        assertEquals(CircuitBreaker.Permit.TRIAL, breaker.acquire());
+        assertEquals(CircuitBreaker.Permit.REJECTED, breaker.acquire());
+        breaker.onFailure(CircuitBreaker.Permit.TRIAL);
+        assertEquals("open", breaker.getState());
+
+        // a released trial can be taken again, only a successful trial closes it
+        Thread.sleep(30L);
+        assertEquals(CircuitBreaker.Permit.TRIAL, breaker.acquire());
+        breaker.release(CircuitBreaker.Permit.TRIAL);
+        assertEquals("half_open", breaker.getState());
+        assertEquals(CircuitBreaker.Permit.TRIAL, breaker.acquire());
+        breaker.onSuccess(CircuitBreaker.Permit.TRIAL);
+        assertEquals("closed", breaker.getState());
+        assertEquals(CircuitBreaker.Permit.CALL, breaker.acquire());
+    }
+
+    @Test()
+    void testEsDeadlineIsNotAClusterFailure() throws Exception {
+        EsAsyncHttpUtil esAsyncHttpUtil = new EsAsyncHttpUtil();
+        ReflectionTestUtils.setField(esAsyncHttpUtil, "env", new MockEnvironment());
+        ReflectionTestUtils.setField(esAsyncHttpUtil, "requestTimeout", 60000L);
+        ReflectionTestUtils.setField(esAsyncHttpUtil, "breakerFailures", 1);
+        ReflectionTestUtils.setField(esAsyncHttpUtil, "breakerOpenMillis", 60000L);
+
+        long deadline = System.currentTimeMillis() - 1L;
+        for (int i = 0; i < 3; i++) {
+            ListenableFuture<Response> future = EsAsyncHttpUtil.withDeadline(deadline, () -> {
+                try {
+                    return esAsyncHttpUtil.executeSearch("http://localhost:9200/", "index", "{}", "querySigs");
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+            });
+            ExecutionException e = assertThrows(ExecutionException.class, future::get);
+            assertTrue(e.getCause() instanceof TimeoutException);
+        }
+        assertEquals("closed", esAsyncHttpUtil.getBreakerStates().get("http://localhost:9200/"));
+    }
+
+    @Test()
+    void testMetricHistogramSplitAndMerge() throws Exception {
+        MetricDao dao = histogramDao();
+        List<long[]> calls = new ArrayList<>();
+        MetricDao.MetricOperation operation = (queryConf, start, end, body) -> {
+            calls.add(new long[] {start, end});
+            return dailyHistogram(dao, start, end, 0L);
+        };
+
+        // two closed days and half of the third
+        String res = metricResultCache.query(dao, "openEuler", null, histogramBody(JAN_1 + HOUR, JAN_1 + 2 * DAY + DAY / 2), operation);
+        JsonNode data = objectMapper.readTree(res).get("data");
+        assertEquals(3, data.size());
+        assertEquals(JAN_1, data.get(0).get("date").asLong());
+        assertEquals(Arrays.asList(1L, 2L, 3L), Arrays.asList(data.get(0).get("total").asLong(),
+                data.get(1).get("total").asLong(), data.get(2).get("total").asLong()));
+        assertEquals(2, calls.size());
+        assertEquals(JAN_1, calls.get(0)[0]);
+        assertEquals(JAN_1 + 2 * DAY - 1, calls.get(0)[1]);
+        assertEquals(JAN_1 + 2 * DAY, calls.get(1)[0]);
+
+        // a later end in the same day is served from the cache, the community is case insensitive
+        metricResultCache.query(dao, "openeuler", null, histogramBody(JAN_1, JAN_1 + 2 * DAY + DAY / 2 + 60000L), operation);
+        assertEquals(2, calls.size());
+
+        // another community is not served from the cache
+        metricResultCache.query(dao, "mindspore", null, histogramBody(JAN_1, JAN_1 + 2 * DAY + DAY / 2), operation);
+        assertEquals(4, calls.size());
+    }
+
+    @Test()
+    void testMetricUnmergeableResultIsQueriedWhole() throws Exception {
+        MetricDao dao = histogramDao();
+        List<long[]> calls = new ArrayList<>();
+        MetricDao.MetricOperation operation = (queryConf, start, end, body) -> {
+            calls.add(new long[] {start, end});
+            return dao.resultJsonStr(200, end - start, "ok");
+        };
+
+        DatastatRequestBody body = histogramBody(JAN_1, JAN_1 + 2 * DAY + DAY / 2);
+        String res = metricResultCache.query(dao, "openeuler", null, body, operation);
+        assertEquals(body.getEnd() - body.getStart(), objectMapper.readTree(res).get("data").asLong());
+        assertEquals(3, calls.size());
+
+        // no longer split
+        metricResultCache.query(dao, "openeuler", null, histogramBody(JAN_1, JAN_1 + 3 * DAY + DAY / 2), operation);
+        assertEquals(4, calls.size());
+        assertEquals(JAN_1, calls.get(3)[0]);
+    }
+
+    @Test()
+    void testMetricBucketsOfAnotherZoneAreQueriedWhole() throws Exception {
+        MetricDao dao = histogramDao();
+        List<long[]> calls = new ArrayList<>();
+        // es buckets at +08:00 while the cache aligns to utc
+        MetricDao.MetricOperation operation = (queryConf, start, end, body) -> {
+            calls.add(new long[] {start, end});
+            return dailyHistogram(dao, start, end, -8 * HOUR);
+        };
+
+        String res = metricResultCache.query(dao, "openeuler", null, histogramBody(JAN_1, JAN_1 + 2 * DAY + DAY / 2), operation);
+        JsonNode data = objectMapper.readTree(res).get("data");
+        assertEquals(3, calls.size());
+        assertEquals(JAN_1, calls.get(2)[0]);
+        // the whole result, without the bucket split at the utc day
+        assertEquals(3, data.size());
+        assertEquals(JAN_1 + DAY + 16 * HOUR, data.get(2).get("date").asLong());
+        assertEquals(3L, data.get(2).get("total").asLong());
+    }
+
+    @Test()
+    void testExportCsvQuotesCells() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        EsExportWriter writer = EsExportWriter.of("csv", out, null);
+        Map<String, Object> source = new HashMap<>();
+        source.put("title", "a, \"b\"");
+        source.put("body", "line1\nline2");
+        source.put("tags", Arrays.asList("x", "y"));
+        source.put("id", 1);
+        writer.accept(source, "Y3Vyc29y");
+        writer.flush();
+
+        assertEquals("body,id,tags,title,_cursor\r\n"
+                + "\"line1\nline2\",1,\"[\"\"x\"\",\"\"y\"\"]\",\"a, \"\"b\"\"\",Y3Vyc29y\r\n",
+                out.toString(StandardCharsets.UTF_8.name()));
+    }
+
+    @Test()
+    void testExportCsvNeutralizesFormulas() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        EsExportWriter writer = EsExportWriter.of("csv", out, Arrays.asList("a", "b", "c", "d", "e", "f"));
+        Map<String, Object> source = new HashMap<>();
+        source.put("a", "=SUM(A1:A2)");
+        source.put("b", "+1");
+        source.put("c", "-1");
+        source.put("d", "@cmd");
+        source.put("e", "a=b");
+        writer.accept(source, "Yw==");
+        writer.flush();
+
+        assertEquals("a,b,c,d,e,f,_cursor\r\n'=SUM(A1:A2),'+1,'-1,'@cmd,a=b,,Yw==\r\n",
+                out.toString(StandardCharsets.UTF_8.name()));
+    }
+
+    @Test()
+    void testExportNdjsonCarriesCursor() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        EsExportWriter writer = EsExportWriter.of("ndjson", out, null);
+        writer.accept(Map.of("title", "=x"), "Yw==");
+        writer.flush();
+
+        JsonNode line = objectMapper.readTree(out.toString(StandardCharsets.UTF_8.name()));
+        assertEquals("=x", line.get("title").asText());
+        assertEquals("Yw==", line.get(EsExportWriter.CURSOR).asText());
+        assertThrows(IllegalArgumentException.class, () -> EsExportWriter.of("xlsx", out, null));
+    }
+
+    @Test()
+    void testScrollMergesSortedSlices() throws Exception {
+        Map<Integer, List<SearchHit[]>> pages = new LinkedHashMap<>();
+        pages.put(1, Arrays.asList(hits(2, 3), hits(5, 7)));
+        pages.put(0, Arrays.asList(hits(1), hits(4, 6)));
+        pages.put(2, Collections.singletonList(hits(8)));
+        EsQueryUtils esQueryUtils = slicedScroll(pages);
+
+        SearchSourceBuilder ascending = new SearchSourceBuilder().sort("n", SortOrder.ASC);
+        assertEquals(Arrays.asList(1L, 2L, 3L, 4L, 5L, 6L, 7L, 8L),
+                sourceValues(esQueryUtils.esScroll(null, "item", "index", 10, ascending)));
+
+        pages.replaceAll((slice, sliceHits) -> {
+            List<SearchHit[]> reversed = new ArrayList<>();
+            for (int i = sliceHits.size() - 1; i >= 0; i--) {
+                SearchHit[] page = sliceHits.get(i).clone();
+                Collections.reverse(Arrays.asList(page));
+                reversed.add(page);
+            }
+            return reversed;
+        });
+        SearchSourceBuilder descending = new SearchSourceBuilder().sort("n", SortOrder.DESC);
+        assertEquals(Arrays.asList(8L, 7L, 6L, 5L, 4L, 3L, 2L, 1L),
+                sourceValues(esQueryUtils.esScroll(null, "item", "index", 10, descending)));
+    }
+
+    @Test()
+    void testScrollAppendsUnsortedSlicesInSliceOrder() throws Exception {
+        Map<Integer, List<SearchHit[]>> pages = new LinkedHashMap<>();
+        pages.put(1, Arrays.asList(hits(2, 3), hits(5)));
+        pages.put(0, Arrays.asList(hits(4), hits(1)));
+
+        assertEquals(Arrays.asList(4L, 1L, 2L, 3L, 5L),
+                sourceValues(slicedScroll(pages).esScroll(null, "item", "index", 10, new SearchSourceBuilder())));
+    }
+
+    @Test()
+    void testVersionIndexNormalizesDescriptions() throws Exception {
+        String response = "{\"hits\":{\"hits\":["
+                + "{\"_id\":\"https://gitee.com/src-openeuler/b\",\"_source\":{\"branches\":["
+                + "{\"name\":\"master\",\"description\":[\"first\",\"second\"]},"
+                + "{\"name\":\"dev\"},"
+                + "{\"name\":\"old\",\"description\":[]}]}},"
+                + "{\"_id\":\"https://gitee.com/src-openeuler/a\",\"_source\":{\"branches\":["
+                + "{\"name\":\"master\",\"description\":\"text\"},\"stray\"]}},"
+                + "{\"_id\":\"https://gitee.com/openeuler/c\",\"_source\":{\"branches\":\"none\"}},"
+                + "{\"_id\":\"https://gitee.com/openeuler/d\",\"_source\":{}}]}}";
+        CustomPropertiesConfig queryConf = new CustomPropertiesConfig();
+        VersionService versionService = new VersionService();
+        ReflectionTestUtils.setField(versionService, "redisDao", new RedisDao() {
+            @Override
+            public Object get(String key) {
+                return response;
+            }
+        });
+
+        JsonNode all = objectMapper.readTree(versionService.getVersionByRepoBranch(queryConf, "openeuler", null, 0, 0, null));
+        assertEquals(3, all.get("total").asInt());
+        List<String> repos = new ArrayList<>();
+        all.get("data").forEach(item -> repos.add(item.fieldNames().next()));
+        assertEquals(Arrays.asList("c", "a", "b"), repos);
+        assertEquals("none", all.at("/data/0/c/branches").asText());
+
+        JsonNode b = objectMapper.readTree(versionService.getVersionByRepoBranch(queryConf, "openeuler", "b", 0, 0, null));
+        assertEquals(1, b.get("total").asInt());
+        JsonNode branches = b.at("/data/0/b/branches");
+        assertEquals("first", branches.at("/0/description").asText());
+        assertEquals("", branches.at("/1/description").asText());
+        assertTrue(branches.at("/1/description").isTextual());
+        assertEquals("", branches.at("/2/description").asText());
+
+        JsonNode a = objectMapper.readTree(versionService.getVersionByRepoBranch(queryConf, "openeuler", "a", 0, 0, null));
+        assertEquals("text", a.at("/data/0/a/branches/0/description").asText());
+        assertEquals("stray", a.at("/data/0/a/branches/1").asText());
+        assertEquals(0, objectMapper.readTree(versionService.getVersionByRepoBranch(queryConf, "openeuler", "c", 0, 0, null))
+                .get("total").asInt());
+    }
+
+    @Test()
+    void testSigSearchRanking() throws Exception {
+        JsonNode sigs = objectMapper.readTree("["
+                + "{\"sig_name\":\"sig-ai\",\"repos\":[\"src/ai\"],\"maintainers\":[\"Alice\"]},"
+                + "{\"sig_name\":\"AI\",\"repos\":[\"src/model\"],\"maintainers\":[\"bob\"]},"
+                + "{\"sig_name\":\"openai\",\"repos\":[],\"maintainers\":[\"carol\"]},"
+                + "{\"sig_name\":\"ai-infra\",\"repos\":[\"src/infra\"],\"maintainers\":[\"alice\"]},"
+                + "{\"sig_name\":\"kernel\",\"repos\":[\"src/kernel\"],\"maintainers\":[\"dave\"]}]");
+        SigSearchIndex index = SigSearchIndex.build(sigs.toString(), sigs);
+
+        // exact, prefix, then substring matches, by sig name within a rank
+        assertEquals(Arrays.asList("AI", "ai-infra", "openai", "sig-ai"), sigNames(index.search("ai", null, null)));
+        assertEquals(Arrays.asList("ai-infra"), sigNames(index.search("INFRA", null, null)));
+        assertEquals(Arrays.asList("ai-infra", "sig-ai"), sigNames(index.search(null, null, "alice")));
+        assertEquals(Arrays.asList("sig-ai"), sigNames(index.search("ai", "src/ai", "ali")));
+        assertEquals(Arrays.asList("AI", "ai-infra", "kernel", "sig-ai"), sigNames(index.search(null, "src/", null)));
+        assertTrue(index.search("net", null, null).isEmpty());
+        assertTrue(index.search(null, "model", "carol").isEmpty());
+        assertEquals(5, index.search(null, null, null).size());
+        assertEquals(sigs.toString(), index.getSource());
+    }
+
+    @Test()
+    void testPageSnapshotCursor() throws Exception {
+        PageSnapshot snapshot = new PageSnapshot(PageSnapshot.versionOf("[1,2,3,4,5]"), Arrays.asList("1", "2", "3", "4", "5"));
+
+        JsonNode first = objectMapper.readTree(snapshot.pageObject(0, 2));
+        assertEquals("[1,2]", first.get("data").toString());
+        assertEquals(5, first.get("total").asInt());
+        int offset = snapshot.offsetOf(first.get("cursor").asText());
+        assertEquals(2, offset);
+        assertEquals("[3,4]", snapshot.page(offset, 2));
+        assertEquals("", snapshot.nextCursor(3, 2));
+        assertEquals("", objectMapper.readTree(snapshot.pageObject(4, 2)).get("cursor").asText());
+        assertEquals("[1,2,3,4,5]", snapshot.all());
+
+        // a cursor of another version or garbage is refused
+        PageSnapshot refreshed = new PageSnapshot(PageSnapshot.versionOf("[1,2,3,4,5,6]"), Arrays.asList("1", "2", "3", "4", "5", "6"));
+        assertEquals(-1, refreshed.offsetOf(first.get("cursor").asText()));
+        assertEquals(-1, snapshot.offsetOf("not a cursor"));
+        assertEquals(-1, snapshot.offsetOf(snapshot.cursor(9)));
+        assertNull(snapshot.page(6, 2));
+        assertEquals(-1, PageSnapshot.offsetOf(0, 10));
+        assertEquals(20, PageSnapshot.offsetOf(3, 10));
+        assertEquals(Integer.MAX_VALUE, PageSnapshot.offsetOf(Integer.MAX_VALUE, 10));
+    }
+
+    @Test()
+    void testPageUtilsLastPage() throws Exception {
+        List<Integer> data = Arrays.asList(1, 2, 3, 4, 5);
+        assertEquals(Arrays.asList(3, 4), PageUtils.getDataByPage(2, 2, data).get("data"));
+        assertEquals(Arrays.asList(5), PageUtils.getDataByPage(3, 2, data).get("data"));
+        assertEquals(Arrays.asList(3, 4), PageUtils.getDataByPage(2, 2, data.subList(0, 4)).get("data"));
+        assertEquals(data, PageUtils.getDataByPage(1, 5, data).get("data"));
+        assertEquals(data, PageUtils.getDataByPage(1, 10, data).get("data"));
+        assertEquals(5, PageUtils.getDataByPage(1, 10, data).get("total"));
+        assertNull(PageUtils.getDataByPage(4, 2, data).get("data"));
+    }
+
+    @Test()
+    @LimitRequest(callTime = 60, callCount = 2, burst = 1)
+    void testRequestLimiterTokenBucket() throws Exception {
+        LimitRequest limit = UtilUnitTests.class.getDeclaredMethod("testRequestLimiterTokenBucket")
+                .getAnnotation(LimitRequest.class);
+
+        // capacity is callCount + burst, the next token comes after 30 seconds
+        assertTrue(requestLimiter.tryAcquire("query", "ip:1.1.1.1", limit));
+        assertTrue(requestLimiter.tryAcquire("query", "ip:1.1.1.1", limit));
+        assertTrue(requestLimiter.tryAcquire("query", "ip:1.1.1.1", limit));
+        assertFalse(requestLimiter.tryAcquire("query", "ip:1.1.1.1", limit));
+        assertTrue(requestLimiter.tryAcquire("query", "ip:2.2.2.2", limit));
+        assertTrue(requestLimiter.tryAcquire("other", "ip:1.1.1.1", limit));
+
+        Map<String, Long> stats = requestLimiter.getStats();
+        assertEquals(5L, (long) stats.get("allowed"));
+        assertEquals(1L, (long) stats.get("rejected.query"));
+    }
+
+    @Test()
+    @LimitRequest(callTime = 1, callCount = 1000)
+    void testRequestLimiterRefill() throws Exception {
+        LimitRequest limit = UtilUnitTests.class.getDeclaredMethod("testRequestLimiterRefill")
+                .getAnnotation(LimitRequest.class);
+
+        int allowed = 0;
+        for (int i = 0; i < 1000; i++) {
+            allowed += requestLimiter.tryAcquire("query", "user:a", limit) ? 1 : 0;
+        }
+        assertEquals(1000, allowed);
+        // one token per millisecond
+        Thread.sleep(20L);
+        assertTrue(requestLimiter.tryAcquire("query", "user:a", limit));
+    }
+
+    private static InputStream stream(String body) {
+        return new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private List<String> sigNames(List<String> items) throws Exception {
+        List<String> names = new ArrayList<>();
+        for (String item : items) {
+            names.add(objectMapper.readTree(item).get("sig_name").asText());
+        }
+        return names;
+    }
+
+    private static EsQueryUtils slicedScroll(Map<Integer, List<SearchHit[]>> pages) {
+        return new EsQueryUtils() {
+            @Override
+            public long esScrollSlices(RestHighLevelClient client, String indexName, int pageSize,
+                    SearchSourceBuilder sourceBuilder, SliceConsumer consumer) throws IOException {
+                long totalCount = 0L;
+                for (Map.Entry<Integer, List<SearchHit[]>> slice : pages.entrySet()) {
+                    for (SearchHit[] hits : slice.getValue()) {
+                        consumer.accept(slice.getKey(), hits);
+                        totalCount += hits.length;
+                    }
+                }
+                return totalCount;
+            }
+        };
+    }
+
+    private static SearchHit[] hits(long... values) {
+        SearchHit[] hits = new SearchHit[values.length];
+        for (int i = 0; i < values.length; i++) {
+            hits[i] = new SearchHit((int) values[i]);
+            hits[i].sourceRef(new BytesArray("{\"n\":" + values[i] + "}"));
+            hits[i].sortValues(new Object[] {values[i]}, new DocValueFormat[] {DocValueFormat.RAW});
+        }
+        return hits;
+    }
+
+    private static List<Long> sourceValues(List<Object> sources) {
+        List<Long> values = new ArrayList<>();
+        for (Object source : sources) {
+            values.add(((Number) ((Map<?, ?>) source).get("n")).longValue());
+        }
+        return values;
+    }
+
+    private static MetricDao histogramDao() {
+        MetricDao dao = mock(MetricDao.class);
+        when(dao.isHistogramOperation("increase")).thenReturn(true);
+        when(dao.resultJsonStr(anyInt(), any(), anyString())).thenCallRealMethod();
+        return dao;
+    }
+
+    private static DatastatRequestBody histogramBody(long start, long end) {
+        DatastatRequestBody body = new DatastatRequestBody();
+        body.setOperation("increase");
+        HashMap<String, Object> variables = new HashMap<>();
+        variables.put("interval", "day");
+        body.setVariables(variables);
+        body.setStart(start);
+        body.setEnd(end);
+        return body;
+    }
+
+    /**
+     * One bucket per day from the day of start, days starting at the offset from utc midnight.
+     * The total counts from the start.
+     */
+    private String dailyHistogram(MetricDao dao, long start, long end, long offset) {
+        ArrayNode buckets = objectMapper.createArrayNode();
+        long total = 0L;
+        for (long date = Math.floorDiv(start - offset, DAY) * DAY + offset; date <= end; date += DAY) {
+            total++;
+            ObjectNode bucket = buckets.addObject();
+            bucket.put("date", date);
+            bucket.put("count", 1);
+            bucket.put("total", total);
+        }
+        return dao.resultJsonStr(200, buckets, "ok");
+    }
+
+    @SuppressWarnings("unchecked")
+    private EsAsyncHttpUtil mockMultiSearch(int status, String body) throws Exception {
+        Response response = mock(Response.class);
+        when(response.getStatusCode()).thenReturn(status);
+        when(response.getResponseBodyAsStream()).thenReturn(stream(body));
+        ListenableFuture<Response> future = mock(ListenableFuture.class);
+        when(future.get()).thenReturn(response);
+        EsAsyncHttpUtil esAsyncHttpUtil = spy(new EsAsyncHttpUtil());
+        doReturn(future).when(esAsyncHttpUtil).executeMultiSearch(anyString(), anyList(), anyList(), anyLong(), any());
+        return esAsyncHttpUtil;
+    }
+}